@@ -0,0 +1,68 @@
+package com.jutjubic.config;
+
+import lombok.Data;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * CRDT replication over a fanout exchange: every replica publishes its counter
+ * deltas to the exchange and consumes everyone's from its own queue, so replicas
+ * join and leave without any peer list.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "replicas.fanout")
+public class CrdtSyncConfig {
+
+    private boolean enabled = false;
+
+    private String exchange = "crdt.sync.exchange";
+
+    // per-replica queue name = prefix + replica id
+    private String queuePrefix = "crdt.sync.";
+
+    // queue of a replica that is gone for this long is deleted by the broker
+    private long queueExpiresMs = 86_400_000L;
+
+    private long heartbeatMs = 15_000L;
+
+    // a replica not heard from for this long is no longer counted as a member
+    private long memberTimeoutMs = 60_000L;
+
+    // base URL other replicas reach this one at for anti-entropy; empty = not advertised
+    private String advertisedUrl = "";
+
+    // EXCHANGE
+
+    @Bean
+    @ConditionalOnProperty(prefix = "replicas.fanout", name = "enabled", havingValue = "true")
+    public FanoutExchange crdtSyncExchange() {
+        return new FanoutExchange(exchange, true, false);
+    }
+
+    // QUEUE
+
+    @Bean
+    @ConditionalOnProperty(prefix = "replicas.fanout", name = "enabled", havingValue = "true")
+    public Queue crdtSyncQueue(@Value("${replica.id}") String replicaId) {
+        return QueueBuilder.durable(queuePrefix + replicaId)
+                .expires((int) queueExpiresMs)
+                .build();
+    }
+
+    // BINDING
+
+    @Bean
+    @ConditionalOnProperty(prefix = "replicas.fanout", name = "enabled", havingValue = "true")
+    public Binding crdtSyncBinding(Queue crdtSyncQueue, FanoutExchange crdtSyncExchange) {
+        return BindingBuilder.bind(crdtSyncQueue).to(crdtSyncExchange);
+    }
+}
@@ -1,6 +1,7 @@
 package com.jutjubic.config;
 
 import jakarta.servlet.MultipartConfigElement;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,10 +11,19 @@ import org.springframework.web.multipart.support.MultipartFilter;
 @Configuration
 public class MultipartConfig {
 
+    private static final String STREAMING_UPLOAD_PATH = "/api/posts";
+
     @Bean
     public FilterRegistrationBean<MultipartFilter> multipartFilterRegistration() {
         FilterRegistrationBean<MultipartFilter> registration = new FilterRegistrationBean<>();
-        registration.setFilter(new MultipartFilter());
+        registration.setFilter(new MultipartFilter() {
+            // POST /api/posts parses its own body as a stream (StreamingUploadService) -
+            // resolving it here would make the container spool the whole video first
+            @Override
+            protected boolean shouldNotFilter(HttpServletRequest request) {
+                return "POST".equals(request.getMethod()) && STREAMING_UPLOAD_PATH.equals(request.getRequestURI());
+            }
+        });
         registration.addUrlPatterns("/*");
         registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
         return registration;
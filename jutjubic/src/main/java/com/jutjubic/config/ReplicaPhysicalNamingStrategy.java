@@ -36,7 +36,8 @@ public class ReplicaPhysicalNamingStrategy implements PhysicalNamingStrategy {
         Identifier result = delegate.toPhysicalTableName(logicalName, context);
         String tableName = result.getText();
 
-        if ("video_view_crdt".equals(tableName)) {
+        if ("video_view_crdt".equals(tableName) || "video_view_total".equals(tableName)
+                || "video_viewer_sketch".equals(tableName)) {
             String newName = tableName + "_" + tableSuffix;
             return Identifier.toIdentifier(newName);
         }
@@ -4,6 +4,10 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
 @Getter @Setter
 @ConfigurationProperties(prefix = "app.transcoding")
 public class TranscodingProps {
@@ -11,4 +15,28 @@ public class TranscodingProps {
     private String exchange;
     private String routingKey;
     private String outputDir;
+    private String hlsDir;
+    private int segmentSeconds;
+
+    // videos longer than this are split into keyframe-aligned chunks encoded on separate workers
+    private int chunkThresholdSeconds;
+    private int chunkSeconds;
+
+    // rendition whose progressive mp4 replaces Post.videoUrl
+    private String defaultRendition;
+
+    // bitrate ladder - one transcode job per entry, processed in parallel by the workers
+    private List<Rendition> renditions = new ArrayList<>();
+
+    public Optional<Rendition> findRendition(String name) {
+        return renditions.stream().filter(r -> r.getName().equals(name)).findFirst();
+    }
+
+    @Getter @Setter
+    public static class Rendition {
+        private String name;
+        private int height;
+        private String videoBitrate;
+        private String audioBitrate;
+    }
 }
@@ -4,5 +4,5 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
-@EnableConfigurationProperties({UploadProperties.class, TranscodingProps.class})
+@EnableConfigurationProperties({UploadProperties.class, TranscodingProps.class, ViewCounterProps.class})
 public class UploadConfig {}
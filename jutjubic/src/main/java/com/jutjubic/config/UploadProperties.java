@@ -17,4 +17,10 @@ public class UploadProperties {
     private String tmpDir;            // app.upload.tmp-dir
     private long timeoutSeconds;      // app.upload.timeout-seconds
 
+    private long maxVideoSizeBytes = 4L * 1024 * 1024 * 1024;  // app.upload.max-video-size-bytes, both upload paths
+
+    // resumable uploads (/api/uploads) - no single request carries the whole file
+    private int chunkSizeBytes = 8 * 1024 * 1024;              // app.upload.chunk-size-bytes
+    private long sessionTtlHours = 24;                         // app.upload.session-ttl-hours
+
 }
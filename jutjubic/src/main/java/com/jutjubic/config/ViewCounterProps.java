@@ -0,0 +1,38 @@
+package com.jutjubic.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter @Setter
+@ConfigurationProperties(prefix = "app.views")
+public class ViewCounterProps {
+
+    // flushed batches are journaled here until their DB transaction commits
+    private String journalDir = "view-journal";
+
+    // merged per-video totals kept in memory for feed reads; the map is reset when it grows past this
+    private int totalsCacheSize = 50_000;
+
+    private Dedup dedup = new Dedup();
+
+    @Getter @Setter
+    public static class Dedup {
+
+        // repeat views of the same viewer on the same video within the window are not counted
+        private boolean enabled = false;
+
+        private Duration window = Duration.ofMinutes(30);
+
+        // distinct (viewer, video) pairs expected per window - sizes the in-memory filter
+        private long expectedViewsPerWindow = 1_000_000;
+
+        // chance that a first view is wrongly taken for a repeat
+        private double falsePositiveRate = 0.01;
+
+        // the filter is rotated every window / (generations - 1)
+        private int generations = 4;
+    }
+}
@@ -1,18 +1,27 @@
 package com.jutjubic.controller;
 
+import com.jutjubic.dto.CrdtCounterDto;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
 import com.jutjubic.dto.CrdtSyncMessageDto;
+import com.jutjubic.dto.MerkleNodesDto;
+import com.jutjubic.dto.ViewerSketchDto;
+import com.jutjubic.service.CrdtAntiEntropyService;
 import com.jutjubic.service.VideoViewCrdtService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/crdt")
 public class CrdtSyncController {
 
     private final VideoViewCrdtService crdtService;
+    private final CrdtAntiEntropyService antiEntropy;
 
-    public CrdtSyncController(VideoViewCrdtService crdtService) {
+    public CrdtSyncController(VideoViewCrdtService crdtService, CrdtAntiEntropyService antiEntropy) {
         this.crdtService = crdtService;
+        this.antiEntropy = antiEntropy;
     }
 
     @PostMapping("/broadcast/{videoId}")
@@ -30,4 +39,33 @@ public class CrdtSyncController {
         );
         return ResponseEntity.ok().build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Delta-state batch from a peer - all its changed counters, merged in one transaction.
+     */
+    @PostMapping("/sync/batch")
+    public ResponseEntity<Void> receiveBatch(@RequestBody CrdtDeltaBatchDto batch) {
+        crdtService.mergeBatch(batch);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Merkle hashes for anti-entropy: the root for level 0, otherwise the children of the given parents.
+     */
+    @GetMapping("/merkle")
+    public ResponseEntity<MerkleNodesDto> merkleNodes(
+            @RequestParam int level,
+            @RequestParam(required = false) List<Integer> parents) {
+        return ResponseEntity.ok(antiEntropy.nodes(level, parents));
+    }
+
+    @PostMapping("/merkle/buckets")
+    public ResponseEntity<List<CrdtCounterDto>> bucketCounters(@RequestBody List<Integer> buckets) {
+        return ResponseEntity.ok(antiEntropy.countersInBuckets(buckets));
+    }
+
+    @PostMapping("/merkle/sketches")
+    public ResponseEntity<List<ViewerSketchDto>> bucketSketches(@RequestBody List<Integer> buckets) {
+        return ResponseEntity.ok(antiEntropy.sketchesInBuckets(buckets));
+    }
+}
@@ -0,0 +1,157 @@
+package com.jutjubic.controller;
+
+import com.jutjubic.config.UploadProperties;
+import com.jutjubic.domain.Post;
+import com.jutjubic.dto.RenditionDto;
+import com.jutjubic.repository.PostRenditionRepository;
+import com.jutjubic.repository.PostRepository;
+import com.jutjubic.service.HlsPackagingService;
+import com.jutjubic.service.MediaStreamingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * HLS playlists, segments and the rendition manifest for a post.
+ *
+ * Segments and media playlists are immutable once packaging finishes, so they are
+ * served with a one-year "immutable" Cache-Control and absorbed by nginx/CDN caches.
+ * The master playlist gets a short max-age because renditions can still be added.
+ */
+@RestController
+@RequestMapping("/api/posts/{postId}")
+@CrossOrigin
+public class HlsController {
+
+    private static final MediaType PLAYLIST = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    private static final MediaType SEGMENT = MediaType.parseMediaType("video/mp2t");
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl MASTER = CacheControl.maxAge(Duration.ofSeconds(30)).cachePublic();
+
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9]+)?");
+
+    private final PostRepository postRepository;
+    private final PostRenditionRepository postRenditionRepository;
+    private final UploadProperties uploadProperties;
+    private final MediaStreamingService mediaStreamingService;
+
+    public HlsController(
+            PostRepository postRepository,
+            PostRenditionRepository postRenditionRepository,
+            UploadProperties uploadProperties,
+            MediaStreamingService mediaStreamingService
+    ) {
+        this.postRepository = postRepository;
+        this.postRenditionRepository = postRenditionRepository;
+        this.uploadProperties = uploadProperties;
+        this.mediaStreamingService = mediaStreamingService;
+    }
+
+    /**
+     * Rendition manifest for the player - lowest to highest bandwidth.
+     */
+    @GetMapping("/renditions")
+    public List<RenditionDto> renditions(@PathVariable Long postId) {
+        return postRenditionRepository.findByPostIdOrderByBandwidthAsc(postId).stream()
+                .map(r -> new RenditionDto(
+                        r.getRendition(),
+                        r.getHeight(),
+                        r.getBandwidth(),
+                        r.getAverageBandwidth(),
+                        r.getVideoUrl(),
+                        "/api/posts/" + postId + "/hls/" + r.getRendition() + "/" + HlsPackagingService.MEDIA_PLAYLIST
+                ))
+                .toList();
+    }
+
+    @GetMapping("/hls/" + HlsPackagingService.MASTER_PLAYLIST)
+    public void masterPlaylist(
+            @PathVariable Long postId,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws Exception {
+        Path hlsRoot = resolveHlsRoot(postId);
+        serve(hlsRoot.resolve(HlsPackagingService.MASTER_PLAYLIST), PLAYLIST, request, response, MASTER);
+    }
+
+    @GetMapping("/hls/{rendition}/{fileName}")
+    public void renditionFile(
+            @PathVariable Long postId,
+            @PathVariable String rendition,
+            @PathVariable String fileName,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws Exception {
+        if (!SAFE_NAME.matcher(rendition).matches() || !SAFE_NAME.matcher(fileName).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid HLS path");
+        }
+
+        MediaType type;
+        if (fileName.endsWith(".m3u8")) {
+            type = PLAYLIST;
+        } else if (fileName.endsWith(".ts")) {
+            type = SEGMENT;
+        } else {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        Path hlsRoot = resolveHlsRoot(postId);
+
+        // only renditions recorded in the manifest are finished - anything else may still be packaging
+        if (postRenditionRepository.findByPostIdAndRendition(postId, rendition).isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Rendition not available");
+        }
+
+        serve(hlsRoot.resolve(rendition).resolve(fileName), type, request, response, IMMUTABLE);
+    }
+
+    private void serve(Path file, MediaType type, HttpServletRequest request, HttpServletResponse response,
+                       CacheControl cacheControl) throws Exception {
+        if (!Files.isRegularFile(file)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "HLS file not found");
+        }
+        mediaStreamingService.stream(file, type, request, response, cacheControl);
+    }
+
+    private Path resolveHlsRoot(Long postId) {
+        Post post = postRepository.findById(postId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
+
+        if (post.getScheduledAt() != null && Instant.now().isBefore(post.getScheduledAt())) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN,
+                    "Video is scheduled for " + post.getScheduledAt() + " and is not yet available"
+            );
+        }
+
+        String hlsUrl = post.getHlsMasterUrl();
+        if (hlsUrl == null || hlsUrl.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "HLS is not available for this post");
+        }
+
+        String relativePath = hlsUrl.startsWith("/media/") ? hlsUrl.substring(7) : hlsUrl;
+
+        Path baseDir = Paths.get(uploadProperties.getDir());
+        if (!baseDir.isAbsolute()) {
+            baseDir = Paths.get(System.getProperty("user.dir")).resolve(baseDir);
+        }
+
+        return baseDir.resolve(relativePath)
+                .toAbsolutePath()
+                .normalize()
+                .getParent();
+    }
+}
@@ -3,8 +3,9 @@ package com.jutjubic.controller;
 import com.jutjubic.domain.PopularVideo;
 import com.jutjubic.dto.PostViewDto;
 import com.jutjubic.repository.PopularVideoRepository;
-import com.jutjubic.repository.PostRepository;
+import com.jutjubic.repository.PostCardRepository;
 import com.jutjubic.service.PopularVideoETLService;
+import com.jutjubic.service.VideoViewCrdtService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,8 +18,9 @@ import java.util.List;
 public class PopularVideoController {
 
     private final PopularVideoRepository popularVideoRepository;
-    private final PostRepository postRepository;
+    private final PostCardRepository postCardRepository;
     private final PopularVideoETLService popularVideoETLService;
+    private final VideoViewCrdtService videoViewCrdtService;
 
     @GetMapping
     public List<PostViewDto> getPopularVideos() {
@@ -34,7 +36,7 @@ public class PopularVideoController {
 
                     if (ids.isEmpty()) return List.<PostViewDto>of();
 
-                    return postRepository.findPopularPostsByIds(ids);
+                    return videoViewCrdtService.withViewCounts(postCardRepository.findAllByIdsInOrder(ids));
                 })
                 .orElse(List.of());
     }
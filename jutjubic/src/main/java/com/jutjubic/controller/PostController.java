@@ -5,21 +5,25 @@ import com.jutjubic.domain.Post;
 import com.jutjubic.dto.*;
 import com.jutjubic.repository.PostRepository;
 import com.jutjubic.service.CommentService;
+import com.jutjubic.service.FeedService;
+import com.jutjubic.service.KeyframeIndexService;
+import com.jutjubic.service.LikedPostsService;
+import com.jutjubic.service.MediaStreamingService;
+import com.jutjubic.service.PostLikeService;
 import com.jutjubic.service.PostService;
 import com.jutjubic.service.PostUploadService;
+import com.jutjubic.service.StreamingUploadService;
 import com.jutjubic.service.ThumbnailService;
 import com.jutjubic.service.VideoViewCrdtService;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletRequestWrapper;
-import jakarta.servlet.http.Part;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.multipart.MultipartHttpServletRequest;
 import org.springframework.web.server.ResponseStatusException;
 import com.jutjubic.domain.*;
 import com.jutjubic.repository.*;
@@ -31,6 +35,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.stream.Collectors;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
@@ -42,9 +47,6 @@ import java.time.Duration;
 
 
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -56,162 +58,132 @@ import java.util.List;
 @CrossOrigin
 public class PostController {
 
+    private static final MediaType VIDEO_MP4 = MediaType.parseMediaType("video/mp4");
+    private static final CacheControl THUMBNAIL_CACHE = CacheControl.maxAge(Duration.ofHours(1)).cachePublic();
+
     private final PostRepository postRepository;
+    private final PostCardRepository postCardRepository;
     private final CommentService commentService;
     private final ThumbnailService thumbnailService;
     private final PostUploadService postUploadService;
     private final UploadProperties uploadProperties;
     private final UserRepository userRepository;
-    private final PostLikeRepository postLikeRepository;
     private final PostService postService;
     private final VideoViewCrdtService videoViewCrdtService;
+    private final MediaStreamingService mediaStreamingService;
+    private final KeyframeIndexService keyframeIndexService;
+    private final StreamingUploadService streamingUploadService;
+    private final FeedService feedService;
+    private final PostLikeService postLikeService;
+    private final LikedPostsService likedPostsService;
 
     public PostController(
             PostRepository postRepository,
+            PostCardRepository postCardRepository,
             CommentService commentService,
             ThumbnailService thumbnailService,
             PostUploadService postUploadService,
             UploadProperties uploadProperties,
             UserRepository userRepository,
-            PostLikeRepository postLikeRepository,
             PostService postService,
-            VideoViewCrdtService videoViewCrdtService) {
+            VideoViewCrdtService videoViewCrdtService,
+            MediaStreamingService mediaStreamingService,
+            KeyframeIndexService keyframeIndexService,
+            StreamingUploadService streamingUploadService,
+            FeedService feedService,
+            PostLikeService postLikeService,
+            LikedPostsService likedPostsService) {
         this.postRepository = postRepository;
+        this.postCardRepository = postCardRepository;
         this.commentService = commentService;
         this.thumbnailService = thumbnailService;
         this.postUploadService = postUploadService;
         this.uploadProperties = uploadProperties;
         this.userRepository = userRepository;
-        this.postLikeRepository = postLikeRepository;
         this.postService = postService;
         this.videoViewCrdtService = videoViewCrdtService;
+        this.mediaStreamingService = mediaStreamingService;
+        this.keyframeIndexService = keyframeIndexService;
+        this.streamingUploadService = streamingUploadService;
+        this.feedService = feedService;
+        this.postLikeService = postLikeService;
+        this.likedPostsService = likedPostsService;
     }
 
 
     @GetMapping("/{postId}/thumbnail")
-    public ResponseEntity<byte[]> getThumbnail(@PathVariable Long postId) throws Exception {
+    public ResponseEntity<?> getThumbnail(
+            @PathVariable Long postId,
+            @RequestHeader HttpHeaders requestHeaders
+    ) throws Exception {
+        var validators = mediaStreamingService.validators(thumbnailService.resolveThumbnailPath(postId));
+        if (mediaStreamingService.isNotModified(requestHeaders, validators)) {
+            return mediaStreamingService.notModified(validators, THUMBNAIL_CACHE);
+        }
+
         byte[] bytes = thumbnailService.getThumbnailBytes(postId);
         return ResponseEntity.ok()
                 .contentType(MediaType.IMAGE_JPEG)
+                .eTag(validators.etag())
+                .lastModified(validators.lastModified())
+                .cacheControl(THUMBNAIL_CACHE)
                 .body(bytes);
     }
 
+    /**
+     * Multipart upload parsed as a stream - the video part goes straight into its
+     * temp file (see {@link StreamingUploadService}), the servlet container never spools it.
+     */
     @PostMapping
     public ResponseEntity<?> createPost(HttpServletRequest request) throws Exception {
 
-        MultipartHttpServletRequest multipartRequest = null;
-        HttpServletRequest currentRequest = request;
-
-        while (currentRequest != null) {
-            if (currentRequest instanceof MultipartHttpServletRequest) {
-                multipartRequest = (MultipartHttpServletRequest) currentRequest;
-                break;
-            }
-            if (currentRequest instanceof HttpServletRequestWrapper) {
-                currentRequest = (HttpServletRequest) ((HttpServletRequestWrapper) currentRequest).getRequest();
-            } else {
-                break;
-            }
-        }
-
-        if (multipartRequest == null) {
-            return ResponseEntity.badRequest().body("Cannot process multipart request");
-        }
-
-        MultipartFile thumbnail = null;
-        MultipartFile video = null;
-
+        StreamingUploadService.IngestedUpload upload;
         try {
-            Part thumbnailPart = request.getPart("thumbnail");
-            Part videoPart = request.getPart("video");
-
-            if (thumbnailPart != null) {
-                thumbnail = convertPartToMultipartFile(thumbnailPart);
-            }
-            if (videoPart != null) {
-                video = convertPartToMultipartFile(videoPart);
-            }
-        } catch (Exception e) {
+            upload = streamingUploadService.ingest(request.getInputStream(), request.getContentType());
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body("Error processing file uploads: " + e.getMessage());
         }
 
-        String title = request.getParameter("title");
-        String description = request.getParameter("description");
-        String tags = request.getParameter("tags");
+        Map<String, String> fields = upload.fields();
+        String title = fields.get("title");
+        String description = fields.get("description");
+        String tags = fields.get("tags");
 
         Double locationLat = null;
         Double locationLon = null;
-
-        String latParam = request.getParameter("locationLat");
-        String lonParam = request.getParameter("locationLon");
-
-        if (latParam != null && !latParam.isBlank()) {
-            locationLat = Double.parseDouble(latParam);
-        }
-        if (lonParam != null && !lonParam.isBlank()) {
-            locationLon = Double.parseDouble(lonParam);
-        }
-        String scheduledAtParam = request.getParameter("scheduledAt");
-
         Instant scheduledAt = null;
 
-        if (scheduledAtParam != null && !scheduledAtParam.isBlank()) {
-            scheduledAt = Instant.parse(scheduledAtParam);
-        }
-
-
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-
-        var created = postUploadService.createPost(
-                email, title, description, tags, locationLat, locationLon, scheduledAt, thumbnail, video
-        );
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
-    }
-
-    private MultipartFile convertPartToMultipartFile(Part part) {
-        return new MultipartFile() {
-            @Override
-            public String getName() {
-                return part.getName();
-            }
+        try {
+            String latParam = fields.get("locationLat");
+            String lonParam = fields.get("locationLon");
 
-            @Override
-            public String getOriginalFilename() {
-                return part.getSubmittedFileName();
+            if (latParam != null && !latParam.isBlank()) {
+                locationLat = Double.parseDouble(latParam);
             }
-
-            @Override
-            public String getContentType() {
-                return part.getContentType();
+            if (lonParam != null && !lonParam.isBlank()) {
+                locationLon = Double.parseDouble(lonParam);
             }
+            String scheduledAtParam = fields.get("scheduledAt");
 
-            @Override
-            public boolean isEmpty() {
-                return part.getSize() == 0;
+            if (scheduledAtParam != null && !scheduledAtParam.isBlank()) {
+                scheduledAt = Instant.parse(scheduledAtParam);
             }
+        } catch (RuntimeException e) {
+            streamingUploadService.discard(upload);
+            return ResponseEntity.badRequest().body("Invalid field value: " + e.getMessage());
+        }
 
-            @Override
-            public long getSize() {
-                return part.getSize();
-            }
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String email = auth.getName();
 
-            @Override
-            public byte[] getBytes() throws IOException {
-                return part.getInputStream().readAllBytes();
-            }
+        Double durationSeconds = upload.metadata() != null ? upload.metadata().durationSeconds() : null;
 
-            @Override
-            public InputStream getInputStream() throws IOException {
-                return part.getInputStream();
-            }
+        var created = postUploadService.createPostFromStream(
+                email, title, description, tags, locationLat, locationLon, scheduledAt,
+                upload.temp(), durationSeconds, upload.videoSha256()
+        );
 
-            @Override
-            public void transferTo(File dest) throws IOException {
-                part.write(dest.getAbsolutePath());
-            }
-        };
+        return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
     private boolean isPremiereEnded(Post post) {
@@ -231,9 +203,10 @@ public class PostController {
     }
 
     @GetMapping("/{postId}/video")
-    public ResponseEntity<byte[]> streamVideo(
+    public void streamVideo(
             @PathVariable Long postId,
-            @RequestHeader(value = "Range", required = false) String rangeHeader
+            HttpServletRequest request,
+            HttpServletResponse response
     ) throws Exception {
 
         Post post = postRepository.findById(postId)
@@ -255,6 +228,44 @@ public class PostController {
             }
         }
 
+        mediaStreamingService.stream(resolveVideoPath(post), VIDEO_MP4, request, response);
+    }
+
+    /**
+     * Premiere join point for a late viewer. The player loads /video as usual, and once
+     * metadata is in, sets currentTime to keyframeSeconds: its next request is then an
+     * ordinary Range request starting at keyframeByteOffset, so the part of the video
+     * already shown is never downloaded.
+     */
+    @GetMapping("/{postId}/premiere")
+    public PremiereJoinDto premiereJoin(@PathVariable Long postId) throws Exception {
+        Post post = postRepository.findById(postId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
+
+        Instant now = Instant.now();
+        if (post.getScheduledAt() == null || isPremiereEnded(post)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No premiere in progress");
+        }
+        if (now.isBefore(post.getScheduledAt())) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN,
+                    "Video is scheduled for " + post.getScheduledAt() + " and is not yet available"
+            );
+        }
+
+        long offsetSeconds = Duration.between(post.getScheduledAt(), now).getSeconds();
+        String videoUrl = "/api/posts/" + postId + "/video";
+
+        var keyframe = keyframeIndexService.get(resolveVideoPath(post))
+                .flatMap(index -> index.floor(offsetSeconds * 1_000_000L))
+                .orElse(null);
+        if (keyframe == null) {
+            return new PremiereJoinDto(offsetSeconds, null, null, videoUrl);
+        }
+        return new PremiereJoinDto(offsetSeconds, keyframe.timeMicros() / 1_000_000.0, keyframe.byteOffset(), videoUrl);
+    }
+
+    private Path resolveVideoPath(Post post) {
         String videoUrl = post.getVideoUrl();
 
         String relativePath = videoUrl.startsWith("/media/")
@@ -273,47 +284,21 @@ public class PostController {
         if (!Files.exists(filePath)) {
             throw new RuntimeException("Video file not found: " + filePath);
         }
-
-        long fileSize = Files.size(filePath);
-
-        long offsetSeconds = 0;
-        if (post.getScheduledAt() != null && !isPremiereEnded(post)) {
-            Instant scheduled = post.getScheduledAt();
-            Instant now = Instant.now();
-            if (now.isAfter(scheduled)) {
-                offsetSeconds = Duration.between(scheduled, now).getSeconds();
-            }
-        }
-
-        long startByte = 0;
-        long endByte = fileSize - 1;
-
-        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-            String[] parts = rangeHeader.substring(6).split("-");
-            startByte = Long.parseLong(parts[0]);
-            if (parts.length > 1 && !parts[1].isEmpty()) {
-                endByte = Long.parseLong(parts[1]);
-            }
-        }
-
-        long contentLength = endByte - startByte + 1;
-
-        try (InputStream in = Files.newInputStream(filePath)) {
-            in.skip(startByte);
-            byte[] buffer = in.readNBytes((int) contentLength);
-
-            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                    .header("Content-Type", "video/mp4")
-                    .header("Accept-Ranges", "bytes")
-                    .header("Content-Range", "bytes " + startByte + "-" + endByte + "/" + fileSize)
-                    .header("Content-Length", String.valueOf(buffer.length))
-                    .body(buffer);
-        }
+        return filePath;
     }
 
     @PostMapping("/{postId}/view")
-    public ResponseEntity<Void> incrementView(@PathVariable Long postId) {
-        videoViewCrdtService.incrementViewForReplica(postId);
+    public ResponseEntity<Void> incrementView(@PathVariable Long postId, Authentication auth,
+                                              HttpServletRequest request) {
+        // the endpoint is public: never buffer (or create counter rows for) made-up ids
+        if (!postRepository.existsById(postId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found");
+        }
+        // only a hash of this ends up in the unique-viewer sketch
+        String viewerKey = (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken))
+                ? "user:" + auth.getName()
+                : "ip:" + request.getRemoteAddr();
+        videoViewCrdtService.incrementViewForReplica(postId, viewerKey);
         return ResponseEntity.ok().build();
     }
 
@@ -339,15 +324,23 @@ public class PostController {
         return ResponseEntity.ok(Map.of(
                 "videoId", postId,
                 "totalViews", totalViews,
+                "uniqueViewers", videoViewCrdtService.getUniqueViewerCount(postId),
                 "currentReplica", currentReplicaId,
                 "countersPerReplica", formattedCounters
         ));
     }
 
+    /**
+     * Reads the materialized total; {@code sync=true} additionally asks every replica
+     * to push its counter (asynchronously - later reads see the result).
+     */
     @GetMapping("/{postId}/view-statistics")
-    public ResponseEntity<?> viewStatistics(@PathVariable Long postId) {
+    public ResponseEntity<?> viewStatistics(@PathVariable Long postId,
+                                            @RequestParam(defaultValue = "false") boolean sync) {
 
-        videoViewCrdtService.hardSyncAllReplicas(postId);
+        if (sync) {
+            videoViewCrdtService.hardSyncAllReplicas(postId);
+        }
 
         Long totalViews = videoViewCrdtService.getTotalViewCount(postId);
         var counters = videoViewCrdtService.getAllCountersForVideo(postId);
@@ -355,6 +348,7 @@ public class PostController {
         return ResponseEntity.ok(Map.of(
                 "videoId", postId,
                 "totalViews", totalViews,
+                "uniqueViewers", videoViewCrdtService.getUniqueViewerCount(postId),
                 "countersPerReplica", counters.stream().map(c -> Map.of(
                         "replicaId", c.getId().getReplicaId(),
                         "viewCount", c.getViewCount()
@@ -362,16 +356,18 @@ public class PostController {
         ));
     }
 
+    /**
+     * Home feed, newest first. Pass the returned nextCursor back as {@code cursor}
+     * for the following page; size is capped at 50.
+     */
     @GetMapping
-    public List<PostViewDto> getAllPosts(Authentication auth) {
+    public FeedPageDto getFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            Authentication auth
+    ) {
         String currentUsername = (auth != null) ? auth.getName() : null;
-        List<PostViewDto> list = postRepository.findAllPostViewsNewestFirst(currentUsername);
-
-        for (PostViewDto dto : list) {
-            Long total = videoViewCrdtService.getTotalViewCount(dto.getId());
-            dto.setViewCount(total != null ? total : 0L);
-        }
-        return list;
+        return feedService.page(cursor, size, currentUsername);
     }
 
 
@@ -400,18 +396,18 @@ public class PostController {
     @GetMapping("/by-user/{username}")
     public List<PostViewDto> postsByUser(@PathVariable String username, Authentication auth) {
         String currentUsername = (auth != null) ? auth.getName() : null;
-        return postRepository.findAllPostViewsByUsernameNewestFirst(username, currentUsername);
+        List<PostViewDto> posts = postCardRepository.findByAuthorNewestFirst(username);
+        likedPostsService.withLikedByMe(posts, currentUsername);
+        return videoViewCrdtService.withViewCounts(posts);
     }
 
     @GetMapping("/{postId}")
     public ResponseEntity<PostViewDto> getPost(@PathVariable Long postId, Authentication auth) {
         String currentUsername = (auth != null) ? auth.getName() : null;
 
-        return postRepository.findPostViewByPostId(postId, currentUsername)
-                .map(dto -> {
-                    dto.setViewCount(videoViewCrdtService.getTotalViewCount(postId));
-                    return ResponseEntity.ok(dto);
-                })
+        return postCardRepository.findById(postId)
+                .map(dto -> likedPostsService.withLikedByMe(List.of(dto), currentUsername))
+                .map(dto -> ResponseEntity.ok(videoViewCrdtService.withViewCounts(dto).get(0)))
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -421,25 +417,32 @@ public class PostController {
         if (auth == null || !auth.isAuthenticated()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        return likeResponse(postLikeService.toggle(postId, auth.getName()));
+    }
 
-        User user = userRepository.findByEmailAdress(auth.getName())
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found"));
-
-        PostLikeId likeId = new PostLikeId(post.getId(), user.getId());
+    /**
+     * Idempotent like - repeating it (e.g. a client retry) leaves the post liked.
+     */
+    @PutMapping("/{postId}/like")
+    public ResponseEntity<?> like(@PathVariable Long postId, Authentication auth) {
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return likeResponse(postLikeService.like(postId, auth.getName()));
+    }
 
-        boolean alreadyLiked = postLikeRepository.existsById(likeId);
-        if (alreadyLiked) {
-            postLikeRepository.deleteById(likeId);
-        } else {
-            postLikeRepository.save(new PostLike(post, user));
+    @DeleteMapping("/{postId}/like")
+    public ResponseEntity<?> unlike(@PathVariable Long postId, Authentication auth) {
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        return likeResponse(postLikeService.unlike(postId, auth.getName()));
+    }
 
-        long count = postLikeRepository.countByPostId(postId);
+    private static ResponseEntity<?> likeResponse(LikeStateDto state) {
         return ResponseEntity.ok(Map.of(
-                "likes", count,
-                "isLiked", !alreadyLiked
+                "likes", state.likes(),
+                "isLiked", state.liked()
         ));
     }
 
@@ -0,0 +1,81 @@
+package com.jutjubic.controller;
+
+import com.jutjubic.domain.Post;
+import com.jutjubic.dto.CreateUploadSessionRequestDto;
+import com.jutjubic.dto.UploadSessionDto;
+import com.jutjubic.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.net.URI;
+import java.time.Instant;
+
+/**
+ * Resumable, chunked video upload - alternative to the single multipart POST /api/posts
+ * for large files and flaky connections. See {@link ResumableUploadService}.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@CrossOrigin
+public class UploadController {
+
+    private final ResumableUploadService uploadService;
+
+    public UploadController(ResumableUploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadSessionDto> create(@RequestBody CreateUploadSessionRequestDto req) throws Exception {
+        UploadSessionDto created = uploadService.create(currentEmail(), req);
+        return ResponseEntity.created(URI.create("/api/uploads/" + created.uploadId())).body(created);
+    }
+
+    @GetMapping("/{uploadId}")
+    public UploadSessionDto status(@PathVariable String uploadId) {
+        return uploadService.status(currentEmail(), uploadId);
+    }
+
+    /**
+     * Raw chunk bytes in the body (application/octet-stream), hex SHA-256 of the chunk in X-Chunk-Sha256.
+     */
+    @PutMapping("/{uploadId}/chunks")
+    public UploadSessionDto putChunk(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            @RequestHeader(value = "X-Chunk-Sha256", required = false) String sha256,
+            HttpServletRequest request
+    ) throws Exception {
+        return uploadService.writeChunk(currentEmail(), uploadId, offset, sha256, request.getInputStream());
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<Post> complete(
+            @PathVariable String uploadId,
+            @RequestParam("thumbnail") MultipartFile thumbnail,
+            @RequestParam("title") String title,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam(value = "tags", required = false) String tags,
+            @RequestParam(value = "locationLat", required = false) Double locationLat,
+            @RequestParam(value = "locationLon", required = false) Double locationLon,
+            @RequestParam(value = "scheduledAt", required = false) String scheduledAtParam
+    ) throws Exception {
+        Instant scheduledAt = null;
+        if (scheduledAtParam != null && !scheduledAtParam.isBlank()) {
+            scheduledAt = Instant.parse(scheduledAtParam);
+        }
+
+        Post created = uploadService.complete(
+                currentEmail(), uploadId, title, description, tags, locationLat, locationLon, scheduledAt, thumbnail
+        );
+        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+    }
+
+    private String currentEmail() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
+    }
+}
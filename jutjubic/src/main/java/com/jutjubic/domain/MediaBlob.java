@@ -0,0 +1,40 @@
+package com.jutjubic.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * One stored file per content digest. Posts reference blobs by file name
+ * ("{sha256}.mp4", "{sha256}.png"); refCount is the number of such references.
+ */
+@Entity
+@Table(name = "media_blobs")
+@Getter
+@Setter
+public class MediaBlob {
+
+    @Id
+    @Column(length = 64)
+    private String digest; // hex SHA-256
+
+    @Column(nullable = false, length = 20)
+    private String kind; // VIDEO, THUMBNAIL
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount = 0L;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "transcode_claimed_at")
+    private Instant transcodeClaimedAt; // set by the upload that publishes the transcode jobs
+}
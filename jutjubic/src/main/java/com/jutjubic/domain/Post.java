@@ -11,8 +11,9 @@ import java.time.Instant;
 @Table(
         name = "posts",
         indexes = {
-                @Index(name = "idx_post_created_at", columnList = "created_at"),
-                @Index(name = "idx_post_author_created", columnList = "author_id,created_at")
+                @Index(name = "idx_post_created_at", columnList = "created_at,id"),
+                @Index(name = "idx_post_author_created", columnList = "author_id,created_at"),
+                @Index(name = "idx_post_video_sha256", columnList = "video_sha256")
         }
 )
 public class Post {
@@ -72,6 +73,17 @@ public class Post {
     @Column(name = "view_count", nullable = false)
     private Long viewCount = 0L;
 
+    // kept in step with post_likes / comments by the write paths, see PostCounterService
+    @Setter
+    @Getter
+    @Column(name = "like_count", nullable = false)
+    private Long likeCount = 0L;
+
+    @Setter
+    @Getter
+    @Column(name = "comment_count", nullable = false)
+    private Long commentCount = 0L;
+
     @Setter
     @Getter
     @Column(name = "scheduled_at")
@@ -82,6 +94,16 @@ public class Post {
     @Column(name = "duration_seconds")
     private Double durationSeconds;
 
+    @Setter
+    @Getter
+    @Column(name = "hls_master_url")
+    private String hlsMasterUrl;
+
+    @Setter
+    @Getter
+    @Column(name = "video_sha256", length = 64)
+    private String videoSha256; // digest of the uploaded source, shared by duplicate uploads
+
     public Post() {
     }
 
@@ -5,7 +5,8 @@ import lombok.Getter;
 import lombok.Setter;
 
 @Entity
-@Table(name = "post_likes")
+@Table(name = "post_likes",
+        indexes = @Index(name = "idx_post_like_user", columnList = "user_id"))
 public class PostLike {
 
     @EmbeddedId
@@ -0,0 +1,43 @@
+package com.jutjubic.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "post_renditions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_post_rendition", columnNames = {"post_id", "rendition"}))
+@Getter
+@Setter
+public class PostRendition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "post_id", nullable = false)
+    private Long postId;
+
+    @Column(nullable = false, length = 20)
+    private String rendition; // 240p, 360p, 480p, 720p, 1080p
+
+    @Column(nullable = false)
+    private Integer height;
+
+    @Column(nullable = false)
+    private Long bandwidth; // peak bits/s, same value as BANDWIDTH in master.m3u8
+
+    @Column(name = "average_bandwidth", nullable = false)
+    private Long averageBandwidth;
+
+    @Column(name = "video_url", nullable = false)
+    private String videoUrl;
+
+    @Column(name = "playlist_url", nullable = false)
+    private String playlistUrl;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+}
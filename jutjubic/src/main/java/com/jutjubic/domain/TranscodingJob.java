@@ -23,7 +23,24 @@ public class TranscodingJob {
     private Long postId;
 
     @Column(nullable = false)
-    private String status; // RECEIVED, PROCESSING, DONE, FAILED
+    private String status; // RECEIVED, PROCESSING, CHUNKED, CONCATENATING, PACKAGING, DONE, FAILED
+
+    @Column(columnDefinition = "text")
+    private String inputPath;
+
+    // chunk sub-job -> parent rendition job
+    @Column(updatable = false)
+    private String parentJobId;
+
+    @Column
+    private Integer chunkIndex;
+
+    // on the parent: how many chunks were fanned out and how many are already encoded
+    @Column
+    private Integer chunkCount;
+
+    @Column(nullable = false)
+    private Integer chunksDone = 0;
 
     @Column(nullable = false)
     private Instant createdAt = Instant.now();
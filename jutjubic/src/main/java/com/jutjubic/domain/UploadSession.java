@@ -0,0 +1,49 @@
+package com.jutjubic.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Resumable upload in progress. Chunks are written in place into
+ * tmp/uploads/{id}.part; which of them arrived is tracked in upload_session_chunks.
+ */
+@Entity
+@Table(name = "upload_sessions")
+@Getter
+@Setter
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "owner_email", nullable = false)
+    private String ownerEmail;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Column(name = "total_chunks", nullable = false)
+    private Integer totalChunks;
+
+    @Column(nullable = false, length = 20)
+    private String status; // OPEN, COMPLETED
+
+    @Column(name = "post_id")
+    private Long postId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now();
+}
@@ -0,0 +1,26 @@
+package com.jutjubic.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+@Entity
+@Table(name = "upload_session_chunks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_upload_chunk", columnNames = {"session_id", "chunk_index"}))
+@Getter
+@Setter
+public class UploadSessionChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private Integer chunkIndex;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+}
@@ -0,0 +1,26 @@
+package com.jutjubic.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Merged view count of a video - the sum of its video_view_crdt rows, kept up to
+ * date by every write to them. Physical name gets the replica table suffix too.
+ */
+@Entity
+@Table(name = "video_view_total")
+@Getter
+@Setter
+public class VideoViewTotal {
+
+    @Id
+    @Column(name = "video_id")
+    private Long videoId;
+
+    @Column(name = "total_views", nullable = false)
+    private Long totalViews = 0L;
+
+    @Column(name = "last_updated")
+    private Long lastUpdated;
+}
@@ -0,0 +1,74 @@
+package com.jutjubic.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * HyperLogLog registers of the distinct viewers of a video on one day
+ * ({@link #ALL_TIME} holds the all-time sketch). Physical name gets the
+ * replica table suffix, like video_view_crdt.
+ */
+@Entity
+@Table(name = "video_viewer_sketch")
+@Getter
+@Setter
+public class VideoViewerSketch {
+
+    // view_date of the row that sketches every day of the video
+    public static final LocalDate ALL_TIME = LocalDate.EPOCH;
+
+    @EmbeddedId
+    private VideoViewerSketchId id;
+
+    @Column(name = "registers", nullable = false, length = 4096)
+    private byte[] registers;
+
+    @Column(name = "last_updated")
+    private Long lastUpdated;
+
+    public VideoViewerSketch() {
+    }
+
+    public VideoViewerSketch(Long videoId, LocalDate viewDate, byte[] registers) {
+        this.id = new VideoViewerSketchId(videoId, viewDate);
+        this.registers = registers;
+        this.lastUpdated = System.currentTimeMillis();
+    }
+
+    @Embeddable
+    @Getter
+    @Setter
+    public static class VideoViewerSketchId implements Serializable {
+
+        @Column(name = "video_id", nullable = false)
+        private Long videoId;
+
+        @Column(name = "view_date", nullable = false)
+        private LocalDate viewDate;
+
+        public VideoViewerSketchId() {
+        }
+
+        public VideoViewerSketchId(Long videoId, LocalDate viewDate) {
+            this.videoId = videoId;
+            this.viewDate = viewDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof VideoViewerSketchId that)) return false;
+            return videoId.equals(that.videoId) && viewDate.equals(that.viewDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(videoId, viewDate);
+        }
+    }
+}
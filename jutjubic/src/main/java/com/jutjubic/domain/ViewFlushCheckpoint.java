@@ -0,0 +1,28 @@
+package com.jutjubic.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Sequence number of the last view-count batch a replica committed - lets a
+ * journal replay after a crash skip batches that already reached the DB.
+ */
+@Entity
+@Table(name = "view_flush_checkpoints")
+@Getter
+@Setter
+public class ViewFlushCheckpoint {
+
+    @Id
+    @Column(name = "replica_id", length = 50)
+    private String replicaId;
+
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now();
+}
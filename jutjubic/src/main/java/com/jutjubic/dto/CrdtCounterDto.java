@@ -0,0 +1,6 @@
+package com.jutjubic.dto;
+
+/**
+ * One G-counter entry: views of a video counted by one replica.
+ */
+public record CrdtCounterDto(Long videoId, String replicaId, Long count) {}
@@ -0,0 +1,25 @@
+package com.jutjubic.dto;
+
+import java.util.List;
+
+/**
+ * Delta-state sync message: the source replica's counters that changed since the
+ * receiver last acknowledged a batch, as parallel lists (videoIds[i] -> counts[i]),
+ * plus the unique-viewer sketches that changed. Counts are absolute G-counter
+ * values and sketches merge by register max, so re-delivery is harmless.
+ */
+public record CrdtDeltaBatchDto(
+        String sourceReplicaId,
+        long sentAt,
+        List<Long> videoIds,
+        List<Long> counts,
+        List<ViewerSketchDto> sketches
+) {
+    public CrdtDeltaBatchDto {
+        if (sketches == null) sketches = List.of();
+    }
+
+    public CrdtDeltaBatchDto(String sourceReplicaId, long sentAt, List<Long> videoIds, List<Long> counts) {
+        this(sourceReplicaId, sentAt, videoIds, counts, List.of());
+    }
+}
@@ -0,0 +1,7 @@
+package com.jutjubic.dto;
+
+public record CreateUploadSessionRequestDto(
+        String fileName,
+        Long size,
+        String contentType
+) {}
@@ -0,0 +1,9 @@
+package com.jutjubic.dto;
+
+import java.util.List;
+
+/**
+ * @param nextCursor pass as {@code cursor} to get the following page; null on the last page
+ */
+public record FeedPageDto(List<PostViewDto> items, String nextCursor) {
+}
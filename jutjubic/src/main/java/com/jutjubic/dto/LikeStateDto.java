@@ -0,0 +1,4 @@
+package com.jutjubic.dto;
+
+public record LikeStateDto(boolean liked, long likes) {
+}
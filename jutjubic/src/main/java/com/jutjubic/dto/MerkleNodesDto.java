@@ -0,0 +1,8 @@
+package com.jutjubic.dto;
+
+import java.util.List;
+
+/**
+ * Hashes of Merkle tree nodes at one level, as parallel lists (indexes[i] -> hashes[i]).
+ */
+public record MerkleNodesDto(int level, List<Integer> indexes, List<Long> hashes) {}
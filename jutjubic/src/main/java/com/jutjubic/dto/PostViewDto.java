@@ -128,5 +128,6 @@ public class PostViewDto {
     public Double getDurationSeconds() { return durationSeconds; }
 
     public void setViewCount(Long viewCount) {this.view_count = viewCount;}
+    public void setLikedByMe(Boolean likedByMe) {this.likedByMe = likedByMe;}
 
 }
@@ -0,0 +1,12 @@
+package com.jutjubic.dto;
+
+/**
+ * Where a late joiner should start a premiere. keyframeSeconds/keyframeByteOffset
+ * are null when the video has no keyframe index (the player then seeks to offsetSeconds).
+ */
+public record PremiereJoinDto(
+        long offsetSeconds,
+        Double keyframeSeconds,
+        Long keyframeByteOffset,
+        String videoUrl
+) {}
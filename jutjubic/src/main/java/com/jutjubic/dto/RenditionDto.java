@@ -0,0 +1,10 @@
+package com.jutjubic.dto;
+
+public record RenditionDto(
+        String rendition,
+        Integer height,
+        Long bandwidth,
+        Long averageBandwidth,
+        String videoUrl,
+        String playlistUrl
+) {}
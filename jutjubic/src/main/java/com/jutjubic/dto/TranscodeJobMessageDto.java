@@ -2,9 +2,26 @@ package com.jutjubic.dto;
 
 import java.io.Serializable;
 
+/**
+ * parentJobId/chunkIndex/chunkCount/chunkStartSeconds are set only on chunk sub-jobs
+ * of a long video; chunkStartSeconds is where the chunk begins in the source.
+ */
 public record TranscodeJobMessageDto(
         String jobId,
         Long postId,
         String inputAbsolutePath,
-        String preset
-) implements Serializable {}
+        String preset,
+        String parentJobId,
+        Integer chunkIndex,
+        Integer chunkCount,
+        Double chunkStartSeconds
+) implements Serializable {
+
+    public TranscodeJobMessageDto(String jobId, Long postId, String inputAbsolutePath, String preset) {
+        this(jobId, postId, inputAbsolutePath, preset, null, null, null, null);
+    }
+
+    public boolean isChunk() {
+        return parentJobId != null && chunkIndex != null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.jutjubic.dto;
+
+import java.util.List;
+
+/**
+ * receivedOffset: bytes received contiguously from the start - a sequential
+ * client resumes from here. missingChunks lets a parallel client re-send only the gaps.
+ */
+public record UploadSessionDto(
+        String uploadId,
+        long totalSize,
+        int chunkSize,
+        int totalChunks,
+        long receivedOffset,
+        int receivedChunks,
+        List<Integer> missingChunks,
+        String status,
+        Long postId
+) {}
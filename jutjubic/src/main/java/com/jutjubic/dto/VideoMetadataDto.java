@@ -0,0 +1,26 @@
+package com.jutjubic.dto;
+
+import java.util.List;
+
+/**
+ * Container-level metadata of an uploaded video.
+ * Keyframes are empty and headerBytes is null when the file was probed through
+ * the ffprobe fallback. headerBytes is the length of the ftyp+moov prefix of a
+ * faststart file (null when moov comes after mdat).
+ */
+public record VideoMetadataDto(
+        Double durationSeconds,
+        Integer width,
+        Integer height,
+        String videoCodec,
+        String audioCodec,
+        Long bitrate,
+        List<Keyframe> keyframes,
+        Long headerBytes
+) {
+    /**
+     * Sync sample of the video track: presentation start (decode time) and the
+     * absolute byte offset of the sample inside the file.
+     */
+    public record Keyframe(long timeMicros, long byteOffset) {}
+}
@@ -0,0 +1,6 @@
+package com.jutjubic.dto;
+
+/**
+ * HyperLogLog registers of a video's viewers on one day (epochDay 0 = all time).
+ */
+public record ViewerSketchDto(Long videoId, long epochDay, byte[] registers) {}
@@ -0,0 +1,8 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.domain.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, String> {
+
+}
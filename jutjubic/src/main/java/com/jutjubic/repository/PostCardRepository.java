@@ -0,0 +1,111 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.dto.PostViewDto;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read model for post cards ({@link PostViewDto}): plain SQL over posts + users,
+ * one row per post. Counts come from the denormalized posts.like_count /
+ * comment_count columns, so no query here joins or aggregates comments or likes.
+ * likedByMe is left false; LikedPostsService fills it in per viewer.
+ */
+@Repository
+public class PostCardRepository {
+
+    static final String SELECT_CARD = """
+            SELECT p.id, p.title, p.description, p.tags_text, p.video_url, p.created_at,
+                   a.id AS author_id, a.username, a.name, a.surname, a.profile_image_url,
+                   p.comment_count, p.like_count, p.view_count, p.scheduled_at, p.duration_seconds
+            FROM posts p
+            JOIN users a ON a.id = p.author_id
+            """;
+
+    static final String VISIBLE = "(p.scheduled_at IS NULL OR p.scheduled_at <= CURRENT_TIMESTAMP)";
+
+    private static final RowMapper<PostViewDto> CARD = (rs, i) -> {
+        Timestamp scheduledAt = rs.getTimestamp("scheduled_at");
+        double duration = rs.getDouble("duration_seconds");
+        Double durationSeconds = rs.wasNull() ? null : duration;
+        long id = rs.getLong("id");
+        return new PostViewDto(
+                id,
+                rs.getString("title"),
+                rs.getString("description"),
+                rs.getString("tags_text"),
+                rs.getString("video_url"),
+                "/api/posts/" + id + "/thumbnail",
+                rs.getTimestamp("created_at").toInstant(),
+                rs.getLong("author_id"),
+                rs.getString("username"),
+                rs.getString("name"),
+                rs.getString("surname"),
+                rs.getString("profile_image_url"),
+                rs.getLong("comment_count"),
+                rs.getLong("like_count"),
+                false,
+                rs.getLong("view_count"),
+                scheduledAt != null ? scheduledAt.toInstant() : null,
+                durationSeconds
+        );
+    };
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public PostCardRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Newest visible posts, keyset-paged on (created_at, id) - see FeedService.
+     */
+    public List<PostViewDto> findFeedFirstPage(int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("limit", limit);
+        return jdbc.query(SELECT_CARD
+                + " WHERE " + VISIBLE
+                + " ORDER BY p.created_at DESC, p.id DESC LIMIT :limit", params, CARD);
+    }
+
+    // a row-value comparison is an index condition on idx_post_created_at, so the scan
+    // starts at the cursor; the equivalent OR is only a filter and deep pages read every newer post
+    public List<PostViewDto> findFeedPageAfter(Instant createdAt, long id, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("createdAt", Timestamp.from(createdAt))
+                .addValue("id", id)
+                .addValue("limit", limit);
+        return jdbc.query(SELECT_CARD
+                + " WHERE (p.created_at, p.id) < (:createdAt, :id)"
+                + " AND " + VISIBLE
+                + " ORDER BY p.created_at DESC, p.id DESC LIMIT :limit", params, CARD);
+    }
+
+    public List<PostViewDto> findByAuthorNewestFirst(String authorUsername) {
+        MapSqlParameterSource params = new MapSqlParameterSource("author", authorUsername);
+        return jdbc.query(SELECT_CARD
+                + " WHERE a.username = :author AND " + VISIBLE
+                + " ORDER BY p.created_at DESC", params, CARD);
+    }
+
+    public Optional<PostViewDto> findById(long postId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("postId", postId);
+        return jdbc.query(SELECT_CARD + " WHERE p.id = :postId AND " + VISIBLE, params, CARD)
+                .stream().findFirst();
+    }
+
+    /**
+     * Visible posts among the ids, in the order of the ids.
+     */
+    public List<PostViewDto> findAllByIdsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+        List<PostViewDto> cards = jdbc.query(SELECT_CARD + " WHERE p.id IN (:ids) AND " + VISIBLE, params, CARD);
+        return cards.stream().sorted(Comparator.comparingInt(c -> ids.indexOf(c.getId()))).toList();
+    }
+}
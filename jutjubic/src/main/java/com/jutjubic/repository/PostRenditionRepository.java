@@ -0,0 +1,26 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.domain.PostRendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface PostRenditionRepository extends JpaRepository<PostRendition, Long> {
+
+    List<PostRendition> findByPostIdOrderByBandwidthAsc(Long postId);
+
+    Optional<PostRendition> findByPostIdAndRendition(Long postId, String rendition);
+
+    /**
+     * Renditions already produced for other posts uploaded from the same source file.
+     */
+    @Query("""
+        SELECT r FROM PostRendition r
+        WHERE r.postId IN (SELECT p.id FROM Post p WHERE p.videoSha256 = :digest AND p.id <> :postId)
+        ORDER BY r.createdAt ASC
+    """)
+    List<PostRendition> findSharedRenditions(@Param("digest") String digest, @Param("postId") Long postId);
+}
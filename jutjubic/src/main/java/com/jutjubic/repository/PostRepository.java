@@ -4,162 +4,59 @@ import com.jutjubic.domain.Post;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
-import com.jutjubic.dto.PostViewDto;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
-
 import java.util.List;
+import java.util.Optional;
 
 public interface PostRepository extends JpaRepository<Post, Long> {
 
-    @Query("""
-  SELECT new com.jutjubic.dto.PostViewDto(
-      p.id,
-      p.title,
-      p.description,
-      p.tags,
-      p.videoUrl,
-      CONCAT(CONCAT('/api/posts/', p.id), '/thumbnail'),
-      p.createdAt,
-
-      a.id,
-      a.username,
-      a.name,
-      a.surname,
-      a.profileImageUrl,
-
-      (SELECT COUNT(c) FROM Comment c WHERE c.post = p),
-      (SELECT COUNT(l) FROM PostLike l WHERE l.post = p),
-      (SELECT COUNT(l) > 0 FROM PostLike l WHERE l.post = p AND l.user.username = :currentUsername),
-      p.viewCount,
-      p.scheduledAt,
-      p.durationSeconds
-  )
-  FROM Post p
-  JOIN p.author a
-  LEFT JOIN Comment c ON c.post = p
-  WHERE p.scheduledAt IS NULL OR p.scheduledAt <= CURRENT_TIMESTAMP
-  GROUP BY
-      p.id, p.title, p.description, p.tags, p.videoUrl, p.createdAt,
-      a.id, a.username, a.name, a.surname, a.profileImageUrl,
-      p.durationSeconds
-  ORDER BY p.createdAt DESC
-""")
-    List<PostViewDto> findAllPostViewsNewestFirst(@Param("currentUsername") String currentUsername);
-
-    @Query("""
-  SELECT new com.jutjubic.dto.PostViewDto(
-      p.id,
-      p.title,
-      p.description,
-      p.tags,
-      p.videoUrl,
-      CONCAT(CONCAT('/api/posts/', p.id), '/thumbnail'),
-      p.createdAt,
-
-      a.id,
-      a.username,
-      a.name,
-      a.surname,
-      a.profileImageUrl,
-
-      (SELECT COUNT(c) FROM Comment c WHERE c.post = p),
-      (SELECT COUNT(l) FROM PostLike l WHERE l.post = p),
-      (SELECT COUNT(l) > 0 FROM PostLike l WHERE l.post = p AND l.user.username = :currentUsername),
-      p.viewCount,
-      p.scheduledAt,
-      p.durationSeconds
-  )
-  FROM Post p
-  JOIN p.author a
-  LEFT JOIN Comment c ON c.post = p
-  WHERE a.username = :username AND (p.scheduledAt IS NULL OR p.scheduledAt <= CURRENT_TIMESTAMP)
-  GROUP BY
-      p.id, p.title, p.description, p.tags, p.videoUrl, p.createdAt,
-      a.id, a.username, a.name, a.surname, a.profileImageUrl,
-      p.durationSeconds
-  ORDER BY p.createdAt DESC
-""")
-    List<PostViewDto> findAllPostViewsByUsernameNewestFirst(
-            @Param("username") String username,
-            @Param("currentUsername") String currentUsername
-    );
-
-    @Query("""
-  SELECT new com.jutjubic.dto.PostViewDto(
-      p.id, p.title, p.description, p.tags, p.videoUrl,
-      CONCAT(CONCAT('/api/posts/', p.id), '/thumbnail'),
-      p.createdAt,
-      a.id, a.username, a.name, a.surname, a.profileImageUrl,
-      (SELECT COUNT(c) FROM Comment c WHERE c.post = p),
-      (SELECT COUNT(l) FROM PostLike l WHERE l.post = p),
-      (SELECT COUNT(l) > 0 FROM PostLike l WHERE l.post = p AND l.user.username = :currentUsername),
-      p.viewCount,
-      p.scheduledAt,
-      p.durationSeconds
-  )
-  FROM Post p
-  JOIN p.author a
-  LEFT JOIN Comment c ON c.post = p
-  WHERE p.id = :postId AND (p.scheduledAt IS NULL OR p.scheduledAt <= CURRENT_TIMESTAMP)
-  GROUP BY p.id, a.id, p.durationSeconds
-""")
-    Optional<PostViewDto> findPostViewByPostId(
-            @Param("postId") Long postId,
-            @Param("currentUsername") String currentUsername
-    );
-
-    @Query("""
-  SELECT new com.jutjubic.dto.PostViewDto(
-      p.id,
-      p.title,
-      p.description,
-      p.tags,
-      p.videoUrl,
-      CONCAT(CONCAT('/api/posts/', p.id), '/thumbnail'),
-      p.createdAt,
-
-      a.id,
-      a.username,
-      a.name,
-      a.surname,
-      a.profileImageUrl,
-
-      COUNT(DISTINCT c),
-      COUNT(DISTINCT l),
-      false,
-      p.viewCount,
-      p.scheduledAt,
-      p.durationSeconds
-  )
-  FROM Post p
-  JOIN p.author a
-  LEFT JOIN Comment c ON c.post = p
-  LEFT JOIN PostLike l ON l.post = p
-  WHERE p.id IN :ids
-  AND (p.scheduledAt IS NULL OR p.scheduledAt <= CURRENT_TIMESTAMP)
-  GROUP BY
-      p.id, p.title, p.description, p.tags, p.videoUrl, p.createdAt,
-      a.id, a.username, a.name, a.surname, a.profileImageUrl,
-      p.viewCount, p.scheduledAt, p.durationSeconds
-    ORDER BY
-        CASE p.id
-            WHEN :#{#ids[0]} THEN 0
-            WHEN :#{#ids[1]} THEN 1
-            WHEN :#{#ids[2]} THEN 2
-            ELSE 999
-        END
-""")
-    List<PostViewDto> findPopularPostsByIds(@Param("ids") List<Long> ids);
-
-
     @Modifying
     @Transactional
     @Query("UPDATE Post p SET p.viewCount = p.viewCount + 1 WHERE p.id = :postId")
     void incrementViewCount(@Param("postId") Long postId);
 
+    // Denormalized counter: always changed in the transaction that inserts the comment,
+    // as one UPDATE so concurrent writers cannot lose an increment (likes: PostLikeService).
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + :delta WHERE p.id = :postId")
+    int addToCommentCount(@Param("postId") Long postId, @Param("delta") long delta);
+
+    @Query("SELECT MAX(p.id) FROM Post p")
+    Optional<Long> findMaxId();
+
+    // Row locks on the posts in [fromId, toId], held until the caller's transaction ends:
+    // the like/comment write paths change a counter in the transaction that changes the
+    // child row, so once these are held no counter write in the range is in flight.
+    @Query(value = """
+        SELECT p.id FROM posts p
+        WHERE p.id BETWEEN :fromId AND :toId
+        ORDER BY p.id
+        FOR UPDATE
+    """, nativeQuery = true)
+    List<Long> lockRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    // Recount posts in [fromId, toId] whose stored counter differs from the child table;
+    // run after lockRange in the same transaction.
+    @Modifying
+    @Query(value = """
+        UPDATE posts p SET like_count = (SELECT COUNT(*) FROM post_likes l WHERE l.post_id = p.id)
+        WHERE p.id BETWEEN :fromId AND :toId
+        AND p.like_count <> (SELECT COUNT(*) FROM post_likes l WHERE l.post_id = p.id)
+    """, nativeQuery = true)
+    int reconcileLikeCounts(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Modifying
+    @Query(value = """
+        UPDATE posts p SET comment_count = (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id)
+        WHERE p.id BETWEEN :fromId AND :toId
+        AND p.comment_count <> (SELECT COUNT(*) FROM comments c WHERE c.post_id = p.id)
+    """, nativeQuery = true)
+    int reconcileCommentCounts(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    List<Post> findByVideoSha256AndIdNot(String videoSha256, Long id);
+
 }
 
 
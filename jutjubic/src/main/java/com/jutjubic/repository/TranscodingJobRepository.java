@@ -2,10 +2,28 @@ package com.jutjubic.repository;
 
 import com.jutjubic.domain.TranscodingJob;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 public interface TranscodingJobRepository extends JpaRepository<TranscodingJob, Long> {
     boolean existsByJobId(String jobId);
     Optional<TranscodingJob> findByJobId(String jobId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE TranscodingJob j SET j.chunksDone = j.chunksDone + 1 WHERE j.jobId = :jobId")
+    int incrementChunksDone(@Param("jobId") String jobId);
+
+    /**
+     * Exactly one worker wins this update once all chunks are encoded - that worker concatenates.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE TranscodingJob j SET j.status = 'CONCATENATING' " +
+            "WHERE j.jobId = :jobId AND j.chunksDone >= j.chunkCount AND j.status = 'CHUNKED'")
+    int claimConcatenation(@Param("jobId") String jobId);
 }
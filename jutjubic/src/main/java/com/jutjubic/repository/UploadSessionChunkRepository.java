@@ -0,0 +1,25 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.domain.UploadSessionChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UploadSessionChunkRepository extends JpaRepository<UploadSessionChunk, Long> {
+
+    @Query("SELECT c.chunkIndex FROM UploadSessionChunk c WHERE c.sessionId = :sessionId ORDER BY c.chunkIndex")
+    List<Integer> findReceivedIndexes(@Param("sessionId") String sessionId);
+
+    boolean existsBySessionIdAndChunkIndex(String sessionId, Integer chunkIndex);
+
+    long countBySessionId(String sessionId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadSessionChunk c WHERE c.sessionId = :sessionId")
+    int deleteBySessionId(@Param("sessionId") String sessionId);
+}
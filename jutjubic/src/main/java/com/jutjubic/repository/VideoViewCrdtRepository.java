@@ -1,13 +1,16 @@
 package com.jutjubic.repository;
 
 import com.jutjubic.domain.VideoViewCrdt;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,9 +44,27 @@ public interface VideoViewCrdtRepository extends JpaRepository<VideoViewCrdt, Vi
     @Query("SELECT COALESCE(SUM(v.viewCount), 0) FROM VideoViewCrdt v WHERE v.id.videoId = :videoId")
     Long getTotalViewCount(@Param("videoId") Long videoId);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM VideoViewCrdt v WHERE v.id.replicaId = :replicaId AND v.id.videoId IN :videoIds")
+    List<VideoViewCrdt> findAllForUpdate(@Param("replicaId") String replicaId,
+                                         @Param("videoIds") Collection<Long> videoIds);
+
     @Query("SELECT COUNT(v) > 0 FROM VideoViewCrdt v WHERE v.id.videoId = :videoId AND v.id.replicaId = :replicaId")
     boolean existsByVideoIdAndReplicaId(@Param("videoId") Long videoId, @Param("replicaId") String replicaId);
 
     @Query("SELECT v FROM VideoViewCrdt v WHERE v.id.replicaId = :replicaId")
     List<VideoViewCrdt> findAllByReplicaId(@Param("replicaId") String replicaId);
+
+    // (videoId, replicaId, viewCount) of every counter - input of the anti-entropy Merkle tree
+    @Query("SELECT v.id.videoId, v.id.replicaId, v.viewCount FROM VideoViewCrdt v")
+    List<Object[]> findAllCounterValues();
+
+    // the same for the counters of some buckets only - refreshes a cached tree
+    @Query("SELECT v.id.videoId, v.id.replicaId, v.viewCount FROM VideoViewCrdt v"
+            + " WHERE MOD(v.id.videoId, :buckets) IN :indexes")
+    List<Object[]> findCounterValuesInBuckets(@Param("buckets") long buckets,
+                                              @Param("indexes") Collection<Long> indexes);
+
+    @Query("SELECT v FROM VideoViewCrdt v WHERE MOD(v.id.videoId, :buckets) IN :indexes")
+    List<VideoViewCrdt> findAllInBuckets(@Param("buckets") long buckets, @Param("indexes") Collection<Long> indexes);
 }
@@ -0,0 +1,7 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.domain.VideoViewTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface VideoViewTotalRepository extends JpaRepository<VideoViewTotal, Long> {
+}
@@ -0,0 +1,39 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.domain.VideoViewerSketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VideoViewerSketchRepository
+        extends JpaRepository<VideoViewerSketch, VideoViewerSketch.VideoViewerSketchId> {
+
+    @Query("SELECT s FROM VideoViewerSketch s WHERE s.id.videoId = :videoId AND s.id.viewDate = :viewDate")
+    Optional<VideoViewerSketch> findByVideoIdAndViewDate(@Param("videoId") Long videoId,
+                                                         @Param("viewDate") LocalDate viewDate);
+
+    // (videoId, viewDate, registers) of every sketch - with the counters, input of the anti-entropy Merkle tree
+    @Query("SELECT s.id.videoId, s.id.viewDate, s.registers FROM VideoViewerSketch s")
+    List<Object[]> findAllSketchValues();
+
+    @Query("SELECT s FROM VideoViewerSketch s WHERE MOD(s.id.videoId, :buckets) IN :indexes")
+    List<VideoViewerSketch> findAllInBuckets(@Param("buckets") long buckets, @Param("indexes") Collection<Long> indexes);
+
+    @Query("SELECT s FROM VideoViewerSketch s WHERE s.id.videoId IN :videoIds")
+    List<VideoViewerSketch> findAllByVideoIds(@Param("videoIds") Collection<Long> videoIds);
+
+    // may return extra (video, day) combinations - callers pick the ones they need
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM VideoViewerSketch s WHERE s.id.videoId IN :videoIds AND s.id.viewDate IN :viewDates")
+    List<VideoViewerSketch> findAllForUpdate(@Param("videoIds") Collection<Long> videoIds,
+                                             @Param("viewDates") Collection<LocalDate> viewDates);
+}
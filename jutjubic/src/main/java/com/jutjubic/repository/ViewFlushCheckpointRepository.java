@@ -0,0 +1,7 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.domain.ViewFlushCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ViewFlushCheckpointRepository extends JpaRepository<ViewFlushCheckpoint, String> {
+}
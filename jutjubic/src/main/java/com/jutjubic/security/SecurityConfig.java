@@ -77,6 +77,8 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.POST, "/api/parties/*/start").authenticated()
 
                         .requestMatchers(HttpMethod.POST, "/api/posts/*/like").authenticated()
+                        .requestMatchers(HttpMethod.PUT, "/api/posts/*/like").authenticated()
+                        .requestMatchers(HttpMethod.DELETE, "/api/posts/*/like").authenticated()
                         .requestMatchers(HttpMethod.POST, "/api/posts/*/comments").authenticated()
 
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
@@ -111,6 +111,7 @@ public class CommentService {
         commentRateLimiter.assertAllowed(authorEmail);
 
         Comment saved = commentRepository.save(new Comment(post, author, t));
+        postRepository.addToCommentCount(postId, 1);
 
         return new CommentViewDto(
                 saved.getId(),
@@ -0,0 +1,120 @@
+package com.jutjubic.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Adds deltas to counter rows with multi-row upserts - one statement per
+ * {@link #ROWS_PER_STATEMENT} rows, the full-size ones sent as one JDBC batch.
+ * On PostgreSQL this is INSERT ... ON CONFLICT DO UPDATE SET c = c + EXCLUDED.c,
+ * elsewhere (H2 in tests) the equivalent standard MERGE. Either way a missing row
+ * and a concurrent insert of the same key cannot collide, unlike UPDATE-then-INSERT.
+ *
+ * Joins the caller's transaction. Rows are written in key order so that two
+ * replicas upserting overlapping keys into a shared table lock them in the same order.
+ */
+@Component
+public class CounterUpserter {
+
+    static final int ROWS_PER_STATEMENT = 500;
+
+    private final JdbcTemplate jdbc;
+    private final MeterRegistry registry;
+    private final DatabaseDialect dialect;
+
+    /**
+     * @param name        metric tag
+     * @param keyColumns  conflict target - the table's primary key or a unique constraint
+     * @param counter     column the value is added to
+     * @param overwritten columns set to the new value (e.g. a timestamp)
+     */
+    public record Target(String name, String table, List<String> keyColumns, String counter, List<String> overwritten) {
+        List<String> columns() {
+            List<String> columns = new ArrayList<>(keyColumns);
+            columns.add(counter);
+            columns.addAll(overwritten);
+            return columns;
+        }
+    }
+
+    public CounterUpserter(JdbcTemplate jdbc, MeterRegistry registry, DatabaseDialect dialect) {
+        this.jdbc = jdbc;
+        this.registry = registry;
+        this.dialect = dialect;
+    }
+
+    /**
+     * @param rows values in {@link Target#columns()} order; keys must be unique and comparable
+     */
+    public void upsertAdd(Target target, List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        long start = System.nanoTime();
+
+        List<Object[]> sorted = new ArrayList<>(rows);
+        sorted.sort((a, b) -> compareKeys(a, b, target.keyColumns().size()));
+
+        int fullChunks = sorted.size() / ROWS_PER_STATEMENT;
+        if (fullChunks > 0) {
+            List<Object[]> batch = new ArrayList<>(fullChunks);
+            for (int c = 0; c < fullChunks; c++) {
+                batch.add(flatten(sorted.subList(c * ROWS_PER_STATEMENT, (c + 1) * ROWS_PER_STATEMENT)));
+            }
+            jdbc.batchUpdate(sql(target, ROWS_PER_STATEMENT), batch);
+        }
+        int rest = sorted.size() % ROWS_PER_STATEMENT;
+        if (rest > 0) {
+            jdbc.update(sql(target, rest), flatten(sorted.subList(sorted.size() - rest, sorted.size())));
+        }
+
+        Timer.builder("views_upsert_latency").tag("table", target.name()).register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("views_upsert_rows").tag("table", target.name()).register(registry)
+                .record(rows.size());
+    }
+
+    private String sql(Target t, int rowCount) {
+        List<String> columns = t.columns();
+        String row = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        String values = String.join(", ", Collections.nCopies(rowCount, row));
+        String columnList = String.join(", ", columns);
+
+        if (dialect.isPostgres()) {
+            String set = t.counter() + " = " + t.table() + "." + t.counter() + " + EXCLUDED." + t.counter()
+                    + t.overwritten().stream().map(c -> ", " + c + " = EXCLUDED." + c).collect(Collectors.joining());
+            return "INSERT INTO " + t.table() + " (" + columnList + ") VALUES " + values
+                    + " ON CONFLICT (" + String.join(", ", t.keyColumns()) + ") DO UPDATE SET " + set;
+        }
+
+        String on = t.keyColumns().stream().map(c -> "d." + c + " = s." + c).collect(Collectors.joining(" AND "));
+        String set = t.counter() + " = d." + t.counter() + " + s." + t.counter()
+                + t.overwritten().stream().map(c -> ", " + c + " = s." + c).collect(Collectors.joining());
+        String insertValues = columns.stream().map(c -> "s." + c).collect(Collectors.joining(", "));
+        return "MERGE INTO " + t.table() + " d USING (VALUES " + values + ") s (" + columnList + ") ON " + on
+                + " WHEN MATCHED THEN UPDATE SET " + set
+                + " WHEN NOT MATCHED THEN INSERT (" + columnList + ") VALUES (" + insertValues + ")";
+    }
+
+    private static Object[] flatten(List<Object[]> rows) {
+        List<Object> args = new ArrayList<>();
+        for (Object[] row : rows) Collections.addAll(args, row);
+        return args.toArray();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(Object[] a, Object[] b, int keyCount) {
+        for (int i = 0; i < keyCount; i++) {
+            int c = ((Comparable) a[i]).compareTo(b[i]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,268 @@
+package com.jutjubic.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jutjubic.dto.CrdtCounterDto;
+import com.jutjubic.dto.MerkleNodesDto;
+import com.jutjubic.dto.ViewerSketchDto;
+import com.jutjubic.repository.VideoViewCrdtRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Merkle-tree anti-entropy between replicas.
+ *
+ * Instead of re-sending every counter, each round compares {@link CrdtMerkleTree}
+ * hashes with every peer top-down: equal roots end the round after one request,
+ * otherwise only the children of differing nodes are fetched, and only the
+ * counters and viewer sketches of differing leaf buckets are transferred. Peer
+ * counters are max-merged and peer sketches union-merged locally; our own
+ * counters, and sketches holding viewers the peer's copy lacks, are handed to
+ * {@link CrdtDeltaSyncService}, which repairs anything its delta batches dropped.
+ *
+ * Peers are the static replicas.urls plus every fanout member that advertises
+ * its URL, so replicas that join through the exchange are repaired as well.
+ * Rounds and peer requests share one {@link CrdtMerkleTreeCache}, which only
+ * re-reads the buckets whose counters changed.
+ */
+@Service
+public class CrdtAntiEntropyService {
+
+    private final VideoViewCrdtRepository repository;
+    private final CrdtMerkleTreeCache treeCache;
+    private final VideoViewCrdtService crdtService;
+    private final UniqueViewerService uniqueViewers;
+    private final CrdtDeltaSyncService deltaSync;
+    private final ObjectMapper objectMapper;
+    private final String replicaId;
+    private final List<String> peers = new ArrayList<>();
+    private final ObjectProvider<CrdtFanoutListener> fanoutMembers;
+    private final Duration timeout;
+    private final HttpClient http;
+
+    public CrdtAntiEntropyService(
+            VideoViewCrdtRepository repository,
+            CrdtMerkleTreeCache treeCache,
+            VideoViewCrdtService crdtService,
+            UniqueViewerService uniqueViewers,
+            CrdtDeltaSyncService deltaSync,
+            ObjectMapper objectMapper,
+            ObjectProvider<CrdtFanoutListener> fanoutMembers,
+            @Value("${replica.id}") String replicaId,
+            @Value("${replicas.urls:}") String[] otherReplicaUrls,
+            @Value("${replicas.sync-timeout-ms:2000}") long timeoutMs
+    ) {
+        this.repository = repository;
+        this.treeCache = treeCache;
+        this.crdtService = crdtService;
+        this.uniqueViewers = uniqueViewers;
+        this.deltaSync = deltaSync;
+        this.objectMapper = objectMapper;
+        this.fanoutMembers = fanoutMembers;
+        this.replicaId = replicaId;
+        if (otherReplicaUrls != null) {
+            for (String url : otherReplicaUrls) {
+                if (url != null && !url.isBlank()) peers.add(url.trim());
+            }
+        }
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.http = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+
+    /**
+     * Hashes of the root (level 0) or of all children of the given parents at the level above.
+     */
+    public MerkleNodesDto nodes(int level, List<Integer> parents) {
+        if (level < 0 || level > CrdtMerkleTree.DEPTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "level must be between 0 and " + CrdtMerkleTree.DEPTH);
+        }
+        CrdtMerkleTree tree = treeCache.tree();
+        List<Integer> indexes = new ArrayList<>();
+        if (level == 0) {
+            indexes.add(0);
+        } else {
+            int parentCount = (int) Math.pow(CrdtMerkleTree.FANOUT, level - 1);
+            for (Integer parent : parents == null ? List.<Integer>of() : parents) {
+                if (parent == null || parent < 0 || parent >= parentCount) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid parent index: " + parent);
+                }
+                for (int c = 0; c < CrdtMerkleTree.FANOUT; c++) {
+                    indexes.add(parent * CrdtMerkleTree.FANOUT + c);
+                }
+            }
+        }
+        List<Long> hashes = indexes.stream().map(i -> tree.node(level, i)).toList();
+        return new MerkleNodesDto(level, indexes, hashes);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CrdtCounterDto> countersInBuckets(List<Integer> buckets) {
+        if (buckets == null || buckets.isEmpty()) return List.of();
+        List<Long> indexes = buckets.stream().map(Integer::longValue).toList();
+        return repository.findAllInBuckets(CrdtMerkleTree.LEAVES, indexes).stream()
+                .map(v -> new CrdtCounterDto(v.getId().getVideoId(), v.getId().getReplicaId(), v.getViewCount()))
+                .toList();
+    }
+
+    public List<ViewerSketchDto> sketchesInBuckets(List<Integer> buckets) {
+        return uniqueViewers.sketchesInBuckets(buckets);
+    }
+
+    @Scheduled(fixedDelayString = "${replicas.anti-entropy-interval-ms:120000}",
+            initialDelayString = "${replicas.anti-entropy-interval-ms:120000}")
+    public void reconcileAll() {
+        Set<String> targets = new LinkedHashSet<>();
+        for (String url : peers) targets.add(stripSlash(url));
+        CrdtFanoutListener members = fanoutMembers.getIfAvailable();
+        if (members != null) {
+            for (String url : members.memberUrls()) targets.add(stripSlash(url));
+        }
+        if (targets.isEmpty()) return;
+
+        CrdtMerkleTree local = treeCache.tree();
+        for (String url : targets) {
+            try {
+                reconcileWith(url, local);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("[CRDT] Anti-entropy with " + url + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void reconcileWith(String url, CrdtMerkleTree local) throws Exception {
+        MerkleNodesDto root = fetchNodes(url, 0, List.of());
+        if (root.hashes().size() == 1 && root.hashes().get(0) == local.root()) return;
+
+        List<Integer> differing = List.of(0);
+        for (int level = 1; level <= CrdtMerkleTree.DEPTH && !differing.isEmpty(); level++) {
+            MerkleNodesDto remote = fetchNodes(url, level, differing);
+            List<Integer> next = new ArrayList<>();
+            for (int i = 0; i < remote.indexes().size(); i++) {
+                int index = remote.indexes().get(i);
+                if (remote.hashes().get(i) != local.node(level, index)) next.add(index);
+            }
+            differing = next;
+        }
+        if (differing.isEmpty()) return;
+
+        List<CrdtCounterDto> remoteCounters = fetchBuckets(url, differing);
+        int merged = crdtService.mergeCounters(remoteCounters);
+        int pushed = pushMissingOwnCounters(differing, remoteCounters);
+
+        List<ViewerSketchDto> remoteSketches = fetchSketches(url, differing);
+        int sketchesMerged = uniqueViewers.mergeReplicated(remoteSketches);
+        int sketchesPushed = pushMissingSketches(differing, remoteSketches);
+
+        System.out.println("[CRDT] Anti-entropy with " + url + ": " + differing.size() + " bucket(s) differ, "
+                + merged + " counter(s) and " + sketchesMerged + " sketch(es) merged, "
+                + pushed + " counter(s) and " + sketchesPushed + " sketch(es) queued for the peer");
+    }
+
+    // our counters the peer has an older copy of (or none) go out with the next delta batch
+    private int pushMissingOwnCounters(List<Integer> buckets, List<CrdtCounterDto> remoteCounters) {
+        Map<Long, Long> remoteOwn = new HashMap<>();
+        for (CrdtCounterDto c : remoteCounters) {
+            if (replicaId.equals(c.replicaId())) remoteOwn.put(c.videoId(), c.count());
+        }
+        Map<Long, Long> stale = new HashMap<>();
+        for (CrdtCounterDto c : countersInBuckets(buckets)) {
+            if (replicaId.equals(c.replicaId()) && c.count() > remoteOwn.getOrDefault(c.videoId(), 0L)) {
+                stale.put(c.videoId(), c.count());
+            }
+        }
+        if (!stale.isEmpty()) {
+            deltaSync.markDirty(stale);
+            deltaSync.shipDeltas();
+        }
+        return stale.size();
+    }
+
+    // sketches are merged above, so ours covers the peer's copy - it is ahead wherever they differ
+    private int pushMissingSketches(List<Integer> buckets, List<ViewerSketchDto> remoteSketches) {
+        Map<ViewCountBuffer.DayKey, HyperLogLog> remote = new HashMap<>();
+        for (ViewerSketchDto s : remoteSketches) {
+            remote.put(dayKey(s), HyperLogLog.fromBytes(s.registers()));
+        }
+        Map<ViewCountBuffer.DayKey, HyperLogLog> ahead = new HashMap<>();
+        for (ViewerSketchDto s : uniqueViewers.sketchesInBuckets(buckets)) {
+            HyperLogLog local = HyperLogLog.fromBytes(s.registers());
+            HyperLogLog theirs = remote.get(dayKey(s));
+            if (theirs == null || theirs.merge(local)) {
+                ahead.put(dayKey(s), local);
+            }
+        }
+        if (!ahead.isEmpty()) {
+            deltaSync.markSketchesDirty(ahead);
+            deltaSync.shipDeltas();
+        }
+        return ahead.size();
+    }
+
+    private static ViewCountBuffer.DayKey dayKey(ViewerSketchDto s) {
+        return new ViewCountBuffer.DayKey(s.videoId(), LocalDate.ofEpochDay(s.epochDay()));
+    }
+
+    private MerkleNodesDto fetchNodes(String url, int level, List<Integer> parents) throws Exception {
+        String query = "?level=" + level;
+        if (!parents.isEmpty()) {
+            query += "&parents=" + parents.stream().map(String::valueOf).collect(Collectors.joining(","));
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/crdt/merkle" + query))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return objectMapper.readValue(send(request), MerkleNodesDto.class);
+    }
+
+    private List<CrdtCounterDto> fetchBuckets(String url, List<Integer> buckets) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/crdt/merkle/buckets"))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(buckets)))
+                .build();
+        return objectMapper.readValue(send(request), new TypeReference<List<CrdtCounterDto>>() {});
+    }
+
+    private List<ViewerSketchDto> fetchSketches(String url, List<Integer> buckets) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/crdt/merkle/sketches"))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(buckets)))
+                .build();
+        return objectMapper.readValue(send(request), new TypeReference<List<ViewerSketchDto>>() {});
+    }
+
+    private byte[] send(HttpRequest request) throws Exception {
+        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " from " + request.uri());
+        }
+        return response.body();
+    }
+
+    private static String stripSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
@@ -0,0 +1,331 @@
+package com.jutjubic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.jutjubic.dto.ViewerSketchDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound delta-state replication of this replica's view counters.
+ *
+ * With {@code replicas.fanout.enabled} the deltas are published once to the CRDT
+ * fanout exchange ({@link CrdtFanoutPublisher}) and reach whichever replicas are
+ * bound to it; otherwise they are POSTed to every URL in {@code replicas.urls}.
+ *
+ * Callers only mark counters dirty - that never blocks and never does I/O. Each
+ * destination has its own outbound channel: a bounded map of dirty counters, coalesced
+ * per video (only the newest count is kept), drained by a dedicated virtual
+ * thread that sends one batch per interval with connect/request timeouts. A
+ * failed batch is folded back into the channel and retried with exponential
+ * backoff, so a slow or dead peer (or broker) only delays its own deltas.
+ *
+ * When a channel is full, changes for new videos (and sketches for new video
+ * days) are dropped - safe for a G-counter and a union of sketches, because
+ * {@link CrdtAntiEntropyService} finds the counters and sketches a peer is behind
+ * on and marks them again.
+ */
+@Service
+public class CrdtDeltaSyncService {
+
+    private final String replicaId;
+    private final List<String> peers = new ArrayList<>();
+    private final long intervalMs;
+    private final Duration timeout;
+    private final int maxPendingPerPeer;
+    private final long maxBackoffMs;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry registry;
+    private final CrdtFanoutPublisher fanout;
+
+    private final Map<String, PeerChannel> channels = new LinkedHashMap<>();
+    private final Counter dropped;
+    private HttpClient http;
+    private volatile boolean running;
+
+    public CrdtDeltaSyncService(
+            @Value("${replica.id}") String replicaId,
+            @Value("${replicas.urls:}") String[] otherReplicaUrls,
+            @Value("${replicas.sync-interval-ms:5000}") long intervalMs,
+            @Value("${replicas.sync-timeout-ms:2000}") long timeoutMs,
+            @Value("${replicas.sync-max-pending:100000}") int maxPendingPerPeer,
+            @Value("${replicas.sync-max-backoff-ms:60000}") long maxBackoffMs,
+            ObjectMapper objectMapper,
+            MeterRegistry registry,
+            @Nullable CrdtFanoutPublisher fanout
+    ) {
+        this.replicaId = replicaId;
+        if (otherReplicaUrls != null) {
+            for (String url : otherReplicaUrls) {
+                if (url != null && !url.isBlank()) peers.add(url.trim());
+            }
+        }
+        this.intervalMs = intervalMs;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxPendingPerPeer = maxPendingPerPeer;
+        this.maxBackoffMs = maxBackoffMs;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.fanout = fanout;
+        this.dropped = registry.counter("crdt_sync_dropped_total");
+    }
+
+    @PostConstruct
+    public void start() {
+        http = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        running = true;
+
+        if (fanout != null) {
+            open("fanout", fanout::publishDelta);
+        } else {
+            for (String url : peers) {
+                open(url, batch -> post(url, batch));
+            }
+        }
+    }
+
+    private void open(String name, DeltaSender sender) {
+        PeerChannel channel = new PeerChannel(name, sender);
+        channels.put(name, channel);
+        registry.gauge("crdt_sync_queue_depth", List.of(Tag.of("peer", name)),
+                channel, PeerChannel::depth);
+        Thread.ofVirtual().name("crdt-sync-" + name).start(channel::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        channels.values().forEach(PeerChannel::wake);
+    }
+
+    public void markDirty(Long videoId, long count) {
+        for (PeerChannel channel : channels.values()) {
+            channel.offer(videoId, count);
+        }
+    }
+
+    public void markDirty(Map<Long, Long> counts) {
+        counts.forEach(this::markDirty);
+    }
+
+    /**
+     * Unique-viewer sketches to replicate; pending sketches for the same video and day are merged.
+     */
+    public void markSketchesDirty(Map<ViewCountBuffer.DayKey, HyperLogLog> sketches) {
+        for (PeerChannel channel : channels.values()) {
+            sketches.forEach(channel::offerSketch);
+        }
+    }
+
+    /**
+     * Asks every sender to ship its pending deltas now instead of at the next interval. Returns immediately.
+     */
+    public void shipDeltas() {
+        channels.values().forEach(PeerChannel::wake);
+    }
+
+    /**
+     * Asks every other replica to push its own counter for the video. Returns immediately.
+     */
+    public void requestResend(Long videoId) {
+        if (fanout != null) {
+            try {
+                fanout.requestResend(List.of(videoId));
+            } catch (Exception e) {
+                System.err.println("[CRDT] Failed to request resend of video " + videoId + ": " + e.getMessage());
+            }
+        } else {
+            notifyPeers("/api/crdt/broadcast/" + videoId);
+        }
+    }
+
+    /**
+     * Fire-and-forget POST to every peer in {@code replicas.urls}.
+     */
+    public void notifyPeers(String path) {
+        for (String url : peers) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + path))
+                    .timeout(timeout)
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((res, e) -> {
+                        if (e != null) {
+                            System.err.println("[CRDT] Failed to notify " + url + path + ": " + e.getMessage());
+                        }
+                    });
+        }
+    }
+
+    public int pendingFor(String peer) {
+        PeerChannel channel = channels.get(peer);
+        return channel != null ? channel.depth() : 0;
+    }
+
+    private void post(String url, CrdtDeltaBatchDto batch) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/crdt/sync/batch"))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+                .build();
+        HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("HTTP " + response.statusCode());
+        }
+    }
+
+    @FunctionalInterface
+    private interface DeltaSender {
+        void send(CrdtDeltaBatchDto batch) throws Exception;
+    }
+
+    private final class PeerChannel {
+        private final String url;
+        private final DeltaSender sender;
+        private final Map<Long, Long> dirty = new HashMap<>();
+        private final Map<ViewCountBuffer.DayKey, HyperLogLog> dirtySketches = new HashMap<>();
+        private final BlockingQueue<Boolean> wakeups = new ArrayBlockingQueue<>(1);
+        private final Timer sendLatency;
+        private final Counter failures;
+        private long backoffMs;
+
+        PeerChannel(String url, DeltaSender sender) {
+            this.url = url;
+            this.sender = sender;
+            this.sendLatency = Timer.builder("crdt_sync_send_latency")
+                    .tag("peer", url)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            this.failures = registry.counter("crdt_sync_send_failures_total", "peer", url);
+        }
+
+        synchronized void offer(Long videoId, long count) {
+            Long current = dirty.get(videoId);
+            if (current == null && dirty.size() >= maxPendingPerPeer) {
+                dropped.increment();
+                return;
+            }
+            if (current == null || count > current) {
+                dirty.put(videoId, count);
+            }
+        }
+
+        synchronized void offerSketch(ViewCountBuffer.DayKey key, HyperLogLog sketch) {
+            HyperLogLog current = dirtySketches.get(key);
+            if (current != null) {
+                current.merge(sketch);
+            } else if (dirtySketches.size() >= maxPendingPerPeer) {
+                dropped.increment();
+            } else {
+                dirtySketches.put(key, sketch.copy());
+            }
+        }
+
+        synchronized int depth() {
+            return dirty.size() + dirtySketches.size();
+        }
+
+        void wake() {
+            wakeups.offer(Boolean.TRUE);
+        }
+
+        void run() {
+            while (running) {
+                try {
+                    if (backoffMs > 0) {
+                        // a wake-up does not cut a backoff short
+                        Thread.sleep(backoffMs);
+                        wakeups.clear();
+                    } else {
+                        wakeups.poll(intervalMs, TimeUnit.MILLISECONDS);
+                    }
+                    sendPending();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    System.err.println("[CRDT] Sender for " + url + " failed: " + e.getMessage());
+                }
+            }
+        }
+
+        private void sendPending() throws Exception {
+            Map<Long, Long> delta;
+            Map<ViewCountBuffer.DayKey, HyperLogLog> sketches;
+            synchronized (this) {
+                delta = new LinkedHashMap<>(dirty);
+                sketches = new LinkedHashMap<>(dirtySketches);
+                dirty.clear();
+                dirtySketches.clear();
+            }
+            if (delta.isEmpty() && sketches.isEmpty()) return;
+
+            List<ViewerSketchDto> sketchDtos = new ArrayList<>(sketches.size());
+            sketches.forEach((key, sketch) ->
+                    sketchDtos.add(new ViewerSketchDto(key.videoId(), key.day().toEpochDay(), sketch.toBytes())));
+            CrdtDeltaBatchDto batch = new CrdtDeltaBatchDto(
+                    replicaId,
+                    System.currentTimeMillis(),
+                    new ArrayList<>(delta.keySet()),
+                    new ArrayList<>(delta.values()),
+                    sketchDtos
+            );
+
+            long start = System.nanoTime();
+            try {
+                try {
+                    sender.send(batch);
+                } finally {
+                    sendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                backoffMs = 0;
+                System.out.println("[CRDT] Sent delta of " + delta.size() + " counter(s), " + sketches.size()
+                        + " sketch(es) from " + replicaId + " to " + url);
+
+            } catch (InterruptedException e) {
+                restore(delta, sketches);
+                throw e;
+            } catch (Exception e) {
+                restore(delta, sketches);
+                failures.increment();
+                backoffMs = backoffMs == 0 ? Math.min(500, maxBackoffMs) : Math.min(backoffMs * 2, maxBackoffMs);
+                System.err.println("[CRDT] Delta sync to " + url + " failed (" + delta.size()
+                        + " counter(s) kept, retry in " + backoffMs + "ms): " + e.getMessage());
+            }
+        }
+
+        // newer counts that arrived while the batch was in flight win
+        private synchronized void restore(Map<Long, Long> delta, Map<ViewCountBuffer.DayKey, HyperLogLog> sketches) {
+            delta.forEach((videoId, count) -> dirty.merge(videoId, count, Math::max));
+            sketches.forEach((key, sketch) -> dirtySketches.merge(key, sketch, (current, old) -> {
+                current.merge(old);
+                return current;
+            }));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.jutjubic.service;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.jutjubic.config.CrdtSyncConfig;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.jutjubic.dto.ViewerSketchDto;
+import com.jutjubic.proto.CrdtSyncProto;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consumes this replica's queue on the CRDT fanout exchange. Membership is
+ * whoever has published recently - a replica joins by sending its first
+ * message and leaves by going quiet. Members that advertise a URL are also
+ * anti-entropy peers (see {@link #memberUrls()}).
+ *
+ * Merges are idempotent (max per counter and register) and anti-entropy repairs
+ * whatever is lost, so a message that fails to apply is logged and dropped
+ * rather than requeued - a requeue would redeliver it forever and, with
+ * prefetch 1, hold up every message behind it.
+ */
+@Service
+@ConditionalOnProperty(prefix = "replicas.fanout", name = "enabled", havingValue = "true")
+public class CrdtFanoutListener {
+
+    private final VideoViewCrdtService crdtService;
+    private final CrdtSyncConfig config;
+
+    @Value("${replica.id}")
+    private String replicaId;
+
+    // replica id -> last time a message from it arrived
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+
+    // replica id -> advertised base URL
+    private final Map<String, String> urls = new ConcurrentHashMap<>();
+
+    public CrdtFanoutListener(VideoViewCrdtService crdtService, CrdtSyncConfig config, MeterRegistry registry) {
+        this.crdtService = crdtService;
+        this.config = config;
+        registry.gauge("crdt_sync_members", this, CrdtFanoutListener::memberCount);
+    }
+
+    @RabbitListener(queues = "#{crdtSyncQueue.name}", ackMode = "AUTO")
+    public void onMessage(Message message) {
+        CrdtSyncProto.CrdtSync sync;
+        try {
+            sync = CrdtSyncProto.CrdtSync.parseFrom(message.getBody());
+        } catch (InvalidProtocolBufferException e) {
+            System.err.println("[CRDT] Dropping malformed sync message: " + e.getMessage());
+            return;
+        }
+
+        String source = sync.getSourceReplicaId();
+        if (source.isEmpty() || replicaId.equals(source)) return;
+
+        if (lastSeen.put(source, System.currentTimeMillis()) == null) {
+            System.out.println("[CRDT] Replica " + source + " joined (" + memberCount() + " active)");
+        }
+        if (!sync.getSourceUrl().isBlank()) {
+            urls.put(source, sync.getSourceUrl());
+        }
+
+        try {
+            switch (sync.getKind()) {
+                case DELTA -> crdtService.mergeBatch(new CrdtDeltaBatchDto(
+                        source, sync.getSentAt(), sync.getVideoIdsList(), sync.getCountsList(),
+                        sync.getSketchesList().stream()
+                                .map(s -> new ViewerSketchDto(s.getVideoId(), s.getEpochDay(), s.getRegisters().toByteArray()))
+                                .toList()));
+                case RESEND_REQUEST -> crdtService.resendOwnCounters(sync.getVideoIdsList());
+                default -> { }
+            }
+        } catch (Exception e) {
+            System.err.println("[CRDT] Dropping " + sync.getKind() + " from " + source
+                    + " (anti-entropy will repair it): " + e.getMessage());
+        }
+    }
+
+    public int memberCount() {
+        long cutoff = System.currentTimeMillis() - config.getMemberTimeoutMs();
+        lastSeen.values().removeIf(seen -> seen < cutoff);
+        urls.keySet().retainAll(lastSeen.keySet());
+        return lastSeen.size();
+    }
+
+    /**
+     * Advertised URLs of the active members.
+     */
+    public List<String> memberUrls() {
+        memberCount();
+        return List.copyOf(urls.values());
+    }
+}
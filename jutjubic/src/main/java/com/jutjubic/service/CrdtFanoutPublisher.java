@@ -0,0 +1,100 @@
+package com.jutjubic.service;
+
+import com.google.protobuf.ByteString;
+import com.jutjubic.config.CrdtSyncConfig;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.jutjubic.proto.CrdtSyncProto;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Publishes protobuf-encoded {@link CrdtSyncProto.CrdtSync} messages to the CRDT
+ * fanout exchange. Every replica bound to it - including ones started later -
+ * receives them, so there is no peer list to maintain.
+ */
+@Service
+@ConditionalOnProperty(prefix = "replicas.fanout", name = "enabled", havingValue = "true")
+public class CrdtFanoutPublisher {
+
+    public static final String CONTENT_TYPE = "application/x-protobuf";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final CrdtSyncConfig config;
+
+    @Value("${replica.id}")
+    private String replicaId;
+
+    public CrdtFanoutPublisher(RabbitTemplate rabbitTemplate, CrdtSyncConfig config) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.config = config;
+    }
+
+    public void publishDelta(CrdtDeltaBatchDto batch) {
+        send(CrdtSyncProto.CrdtSync.newBuilder()
+                .setKind(CrdtSyncProto.CrdtSync.Kind.DELTA)
+                .setSourceReplicaId(batch.sourceReplicaId())
+                .setSourceUrl(config.getAdvertisedUrl())
+                .setSentAt(batch.sentAt())
+                .addAllVideoIds(batch.videoIds())
+                .addAllCounts(batch.counts())
+                .addAllSketches(batch.sketches().stream()
+                        .map(s -> CrdtSyncProto.ViewerSketch.newBuilder()
+                                .setVideoId(s.videoId())
+                                .setEpochDay(s.epochDay())
+                                .setRegisters(ByteString.copyFrom(s.registers()))
+                                .build())
+                        .toList())
+                .build());
+    }
+
+    /**
+     * Asks every other replica to publish its counters for the videos again (all of them if empty).
+     */
+    public void requestResend(Collection<Long> videoIds) {
+        send(message(CrdtSyncProto.CrdtSync.Kind.RESEND_REQUEST).addAllVideoIds(videoIds).build());
+    }
+
+    @Scheduled(fixedRateString = "${replicas.fanout.heartbeat-ms:15000}")
+    public void heartbeat() {
+        try {
+            send(message(CrdtSyncProto.CrdtSync.Kind.HEARTBEAT).build());
+        } catch (Exception e) {
+            System.err.println("[CRDT] Heartbeat failed: " + e.getMessage());
+        }
+    }
+
+    // a replica that just joined pulls the full state from everyone else
+    @EventListener(ApplicationReadyEvent.class)
+    public void announce() {
+        try {
+            requestResend(List.of());
+            System.out.println("[CRDT] Replica " + replicaId + " joined " + config.getExchange());
+        } catch (Exception e) {
+            System.err.println("[CRDT] Could not announce replica " + replicaId + ": " + e.getMessage());
+        }
+    }
+
+    private CrdtSyncProto.CrdtSync.Builder message(CrdtSyncProto.CrdtSync.Kind kind) {
+        return CrdtSyncProto.CrdtSync.newBuilder()
+                .setKind(kind)
+                .setSourceReplicaId(replicaId)
+                .setSourceUrl(config.getAdvertisedUrl())
+                .setSentAt(System.currentTimeMillis());
+    }
+
+    private void send(CrdtSyncProto.CrdtSync sync) {
+        MessageProperties props = new MessageProperties();
+        props.setContentType(CONTENT_TYPE);
+        rabbitTemplate.send(config.getExchange(), "", new Message(sync.toByteArray(), props));
+    }
+}
@@ -0,0 +1,90 @@
+package com.jutjubic.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Merkle tree over the CRDT view counters and unique-viewer sketches, bucketed by videoId.
+ *
+ * Leaves are {@link #LEAVES} buckets (videoId mod LEAVES); a leaf hash is the
+ * wrapping sum of its entries' hashes, so it does not depend on row order.
+ * Every inner node hashes its {@link #FANOUT} children in order. Two replicas
+ * holding the same counters have the same root; when roots differ, walking
+ * down only the differing children finds the buckets to repair.
+ */
+public final class CrdtMerkleTree {
+
+    public static final int FANOUT = 16;
+    public static final int DEPTH = 3;                                    // levels below the root
+    public static final int LEAVES = (int) Math.pow(FANOUT, DEPTH);       // 4096 buckets
+
+    // levels[0] = {root}, levels[DEPTH] = leaves
+    private final long[][] levels = new long[DEPTH + 1][];
+
+    private CrdtMerkleTree(long[] leaves) {
+        levels[DEPTH] = leaves;
+        for (int level = DEPTH - 1; level >= 0; level--) {
+            long[] children = levels[level + 1];
+            long[] nodes = new long[children.length / FANOUT];
+            for (int i = 0; i < nodes.length; i++) {
+                long h = 0x9E3779B97F4A7C15L;
+                for (int c = 0; c < FANOUT; c++) {
+                    h = Hashing.mix(h ^ children[i * FANOUT + c]);
+                }
+                nodes[i] = h;
+            }
+            levels[level] = nodes;
+        }
+    }
+
+    public static final class Builder {
+        private final long[] leaves = new long[LEAVES];
+
+        public Builder add(long videoId, String replicaId, long count) {
+            leaves[bucketOf(videoId)] += entryHash(videoId, replicaId, count);
+            return this;
+        }
+
+        public Builder addSketch(long videoId, long epochDay, byte[] registers) {
+            leaves[bucketOf(videoId)] += sketchHash(videoId, epochDay, registers);
+            return this;
+        }
+
+        public Builder clear(int bucket) {
+            leaves[bucket] = 0;
+            return this;
+        }
+
+        // the builder stays usable: a cached tree is updated bucket by bucket and rebuilt
+        public CrdtMerkleTree build() {
+            return new CrdtMerkleTree(leaves.clone());
+        }
+    }
+
+    public static int bucketOf(long videoId) {
+        return (int) Math.floorMod(videoId, (long) LEAVES);
+    }
+
+    public long root() {
+        return levels[0][0];
+    }
+
+    public long node(int level, int index) {
+        return levels[level][index];
+    }
+
+    private static long entryHash(long videoId, String replicaId, long count) {
+        long h = Hashing.mix(videoId);
+        h = Hashing.mix(h ^ replicaId.hashCode());
+        return Hashing.mix(h ^ count);
+    }
+
+    private static long sketchHash(long videoId, long epochDay, byte[] registers) {
+        // ~videoId keeps a sketch from hashing like a counter of the same video
+        long h = Hashing.mix(~videoId);
+        h = Hashing.mix(h ^ epochDay);
+        ByteBuffer words = ByteBuffer.wrap(registers);
+        while (words.remaining() >= Long.BYTES) h = Hashing.mix(h ^ words.getLong());
+        while (words.hasRemaining()) h = Hashing.mix(h ^ words.get());
+        return h;
+    }
+}
@@ -0,0 +1,99 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.VideoViewerSketch;
+import com.jutjubic.repository.VideoViewCrdtRepository;
+import com.jutjubic.repository.VideoViewerSketchRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This replica's {@link CrdtMerkleTree}, kept up to date without reading every
+ * counter and sketch per request or round. Writers report the videos whose
+ * counters or sketches they changed; once that commits, their buckets are re-read on the next {@link #tree()}.
+ * A full rebuild every replicas.merkle-full-rebuild-ms also picks up rows that
+ * never passed through this process (replicas sharing one counter table).
+ */
+@Component
+public class CrdtMerkleTreeCache {
+
+    private final VideoViewCrdtRepository repository;
+    private final VideoViewerSketchRepository sketchRepository;
+    private final long fullRebuildMs;
+
+    private final Set<Integer> dirtyBuckets = ConcurrentHashMap.newKeySet();
+
+    // guarded by this
+    private CrdtMerkleTree.Builder leaves;
+    private CrdtMerkleTree tree;
+    private long fullBuildAt;
+
+    public CrdtMerkleTreeCache(
+            VideoViewCrdtRepository repository,
+            VideoViewerSketchRepository sketchRepository,
+            @Value("${replicas.merkle-full-rebuild-ms:3600000}") long fullRebuildMs
+    ) {
+        this.repository = repository;
+        this.sketchRepository = sketchRepository;
+        this.fullRebuildMs = fullRebuildMs;
+    }
+
+    /**
+     * Counters or sketches of the videos changed. Inside a transaction the buckets are marked
+     * after commit, so a rebuild in between cannot read the old rows and keep them.
+     */
+    public void changed(Collection<Long> videoIds) {
+        if (videoIds.isEmpty()) return;
+        List<Integer> buckets = videoIds.stream().map(CrdtMerkleTree::bucketOf).toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirtyBuckets.addAll(buckets);
+                }
+            });
+        } else {
+            dirtyBuckets.addAll(buckets);
+        }
+    }
+
+    public synchronized CrdtMerkleTree tree() {
+        long now = System.currentTimeMillis();
+        if (leaves == null || now - fullBuildAt > fullRebuildMs) {
+            // cleared before the read: a commit that lands during it marks its bucket again
+            dirtyBuckets.clear();
+            leaves = new CrdtMerkleTree.Builder();
+            addAll(repository.findAllCounterValues());
+            for (Object[] row : sketchRepository.findAllSketchValues()) {
+                leaves.addSketch((Long) row[0], ((LocalDate) row[1]).toEpochDay(), (byte[]) row[2]);
+            }
+            fullBuildAt = now;
+            tree = leaves.build();
+        } else if (!dirtyBuckets.isEmpty()) {
+            List<Integer> buckets = new ArrayList<>(dirtyBuckets);
+            dirtyBuckets.removeAll(buckets);
+            buckets.forEach(leaves::clear);
+            List<Long> indexes = buckets.stream().map(Integer::longValue).toList();
+            addAll(repository.findCounterValuesInBuckets(CrdtMerkleTree.LEAVES, indexes));
+            for (VideoViewerSketch s : sketchRepository.findAllInBuckets(CrdtMerkleTree.LEAVES, indexes)) {
+                leaves.addSketch(s.getId().getVideoId(), s.getId().getViewDate().toEpochDay(), s.getRegisters());
+            }
+            tree = leaves.build();
+        }
+        return tree;
+    }
+
+    private void addAll(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            leaves.add((Long) row[0], (String) row[1], (Long) row[2]);
+        }
+    }
+}
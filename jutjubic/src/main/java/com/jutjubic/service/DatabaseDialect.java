@@ -0,0 +1,29 @@
+package com.jutjubic.service;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Which database the pool is connected to. A few writes have a PostgreSQL form
+ * (ON CONFLICT, data-modifying CTEs) and a portable one that H2 runs in tests.
+ */
+@Component
+public class DatabaseDialect {
+
+    private final JdbcTemplate jdbc;
+
+    private volatile Boolean postgres;
+
+    public DatabaseDialect(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public boolean isPostgres() {
+        if (postgres == null) {
+            postgres = jdbc.execute((ConnectionCallback<Boolean>) c ->
+                    c.getMetaData().getDatabaseProductName().toLowerCase().contains("postgres"));
+        }
+        return postgres;
+    }
+}
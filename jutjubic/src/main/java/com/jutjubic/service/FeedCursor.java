@@ -0,0 +1,45 @@
+package com.jutjubic.service;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Position in the newest-first feed: the (createdAt, id) of the last post
+ * returned. Handed to clients as an opaque URL-safe token, so the encoding
+ * can change without breaking the API.
+ */
+public record FeedCursor(Instant createdAt, long id) {
+
+    private static final int LENGTH = Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    // a forged token must not reach Instant or the DB with a time neither can hold
+    private static final long MIN_SECONDS = Instant.parse("0001-01-01T00:00:00Z").getEpochSecond();
+    private static final long MAX_SECONDS = Instant.parse("9999-12-31T23:59:59Z").getEpochSecond();
+
+    public String encode() {
+        ByteBuffer buf = ByteBuffer.allocate(LENGTH)
+                .putLong(createdAt.getEpochSecond())
+                .putInt(createdAt.getNano())
+                .putLong(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.array());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static FeedCursor decode(String token) {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("Invalid feed cursor");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        long seconds = buf.getLong();
+        int nanos = buf.getInt();
+        long id = buf.getLong();
+        if (nanos < 0 || nanos > 999_999_999 || seconds < MIN_SECONDS || seconds > MAX_SECONDS) {
+            throw new IllegalArgumentException("Invalid feed cursor");
+        }
+        return new FeedCursor(Instant.ofEpochSecond(seconds, nanos), id);
+    }
+}
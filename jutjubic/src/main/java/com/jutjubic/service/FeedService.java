@@ -0,0 +1,65 @@
+package com.jutjubic.service;
+
+import com.jutjubic.dto.FeedPageDto;
+import com.jutjubic.dto.PostViewDto;
+import com.jutjubic.repository.PostCardRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Newest-first home feed, paged by keyset on (created_at, id) instead of OFFSET:
+ * every page is one range scan of idx_post_created_at from the cursor, so
+ * page 1000 costs the same as page 1 and new uploads do not shift the pages.
+ */
+@Service
+public class FeedService {
+
+    static final int MAX_PAGE_SIZE = 50;
+
+    private final PostCardRepository postCardRepository;
+    private final VideoViewCrdtService videoViewCrdtService;
+    private final LikedPostsService likedPostsService;
+
+    public FeedService(PostCardRepository postCardRepository, VideoViewCrdtService videoViewCrdtService,
+                       LikedPostsService likedPostsService) {
+        this.postCardRepository = postCardRepository;
+        this.videoViewCrdtService = videoViewCrdtService;
+        this.likedPostsService = likedPostsService;
+    }
+
+    @Transactional(readOnly = true)
+    public FeedPageDto page(String cursorToken, int size, String currentUsername) {
+        if (size < 1) size = 1;
+        if (size > MAX_PAGE_SIZE) size = MAX_PAGE_SIZE;
+
+        // one extra row tells whether there is a next page
+        int limit = size + 1;
+        List<PostViewDto> rows;
+        if (cursorToken == null || cursorToken.isBlank()) {
+            rows = postCardRepository.findFeedFirstPage(limit);
+        } else {
+            FeedCursor cursor;
+            try {
+                cursor = FeedCursor.decode(cursorToken);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+            rows = postCardRepository.findFeedPageAfter(cursor.createdAt(), cursor.id(), limit);
+        }
+
+        String nextCursor = null;
+        List<PostViewDto> items = rows;
+        if (rows.size() > size) {
+            items = new ArrayList<>(rows.subList(0, size));
+            PostViewDto last = items.get(size - 1);
+            nextCursor = new FeedCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        likedPostsService.withLikedByMe(items, currentUsername);
+        return new FeedPageDto(videoViewCrdtService.withViewCounts(items), nextCursor);
+    }
+}
@@ -1,40 +1,172 @@
 package com.jutjubic.service;
 
+import com.jutjubic.config.TranscodingProps;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class FfmpegTranscodingService {
 
-    public void transcode720p(Path input, Path output) throws Exception {
-        ProcessBuilder pb = new ProcessBuilder(
+    // RFC 6381 codec strings of what videoArgs and the AAC audio settings produce (H.264 Main@4.0, AAC-LC)
+    public static final String VIDEO_CODEC = "avc1.4d4028";
+    public static final String AUDIO_CODEC = "mp4a.40.2";
+
+    private final TranscodingProps props;
+
+    public FfmpegTranscodingService(TranscodingProps props) {
+        this.props = props;
+    }
+
+    public void transcode(Path input, Path output, TranscodingProps.Rendition rendition) throws Exception {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y", "-i", input.toString()));
+        cmd.addAll(videoArgs(rendition, 0));
+        cmd.addAll(List.of(
+                // audio: AAC
+                "-c:a", "aac",
+                "-b:a", rendition.getAudioBitrate(),
+
+                "-movflags", "+faststart",
+
+                output.toString()
+        ));
+        run(cmd);
+    }
+
+    /**
+     * Splits the video stream into ~chunkSeconds pieces without re-encoding.
+     * Stream copy can only cut on keyframes, so every chunk starts with one and
+     * the encoded chunks can later be concatenated losslessly. Returns the start
+     * time of each chunk in the source, taken from ffmpeg's segment list.
+     */
+    public List<Double> splitKeyframeChunks(Path input, Path outDir, String chunkPattern, int chunkSeconds) throws Exception {
+        Path segmentList = outDir.resolve("chunks.csv");
+        run(List.of(
+                "ffmpeg",
+                "-y",
+                "-i", input.toString(),
+
+                "-map", "0:v:0",
+                "-c", "copy",
+
+                "-f", "segment",
+                "-segment_time", String.valueOf(chunkSeconds),
+                "-segment_list", segmentList.toString(),
+                "-segment_list_type", "csv",
+                "-reset_timestamps", "1",
+
+                outDir.resolve(chunkPattern).toString()
+        ));
+
+        // one line per chunk: file,start,end
+        List<Double> starts = new ArrayList<>();
+        for (String line : Files.readAllLines(segmentList, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(",");
+            if (fields.length >= 3) starts.add(Double.parseDouble(fields[fields.length - 2]));
+        }
+        return starts;
+    }
+
+    /**
+     * Encodes one chunk, video only - audio is encoded once from the full source
+     * in {@link #concatChunks} so there are no AAC priming gaps at chunk joins.
+     * startSeconds is where the chunk begins in the source, so the forced keyframes
+     * land on the same segment boundaries as in an unsplit encode.
+     */
+    public void transcodeVideoChunk(Path chunk, Path output, TranscodingProps.Rendition rendition,
+                                    double startSeconds) throws Exception {
+        List<String> cmd = new ArrayList<>(List.of("ffmpeg", "-y", "-i", chunk.toString()));
+        cmd.addAll(videoArgs(rendition, startSeconds));
+        cmd.add("-an");
+        cmd.add(output.toString());
+        run(cmd);
+    }
+
+    /**
+     * Joins encoded chunks listed in a concat-demuxer file (stream copy) and
+     * muxes in the audio track of the original upload.
+     */
+    public void concatChunks(Path listFile, Path audioSource, Path output, TranscodingProps.Rendition rendition) throws Exception {
+        run(List.of(
+                "ffmpeg",
+                "-y",
+                "-f", "concat",
+                "-safe", "0",
+                "-i", listFile.toString(),
+                "-i", audioSource.toString(),
+
+                "-map", "0:v:0",
+                "-map", "1:a:0?",
+                "-c:v", "copy",
+                "-c:a", "aac",
+                "-b:a", rendition.getAudioBitrate(),
+
+                "-movflags", "+faststart",
+
+                output.toString()
+        ));
+    }
+
+    /**
+     * Remuxes an already transcoded mp4 into HLS segments + a VOD media playlist.
+     * No re-encoding - segments are cut on the keyframes forced during transcoding.
+     */
+    public void segmentHls(Path input, Path outDir, String playlistName, String segmentPattern) throws Exception {
+        run(List.of(
                 "ffmpeg",
                 "-y",
                 "-i", input.toString(),
 
-                // resize
-                "-vf", "scale=-2:720",
+                "-c", "copy",
+
+                "-f", "hls",
+                "-hls_time", String.valueOf(props.getSegmentSeconds()),
+                "-hls_playlist_type", "vod",
+                "-hls_flags", "independent_segments+temp_file",
+                "-hls_segment_filename", outDir.resolve(segmentPattern).toString(),
 
-                // video: web-safe H.264
+                outDir.resolve(playlistName).toString()
+        ));
+    }
+
+    // startSeconds shifts the chunk-local t onto the source timeline
+    private List<String> videoArgs(TranscodingProps.Rendition rendition, double startSeconds) {
+        int segment = props.getSegmentSeconds();
+        long skipped = (long) Math.ceil(startSeconds / segment);
+        return List.of(
+                // resize (never upscale smaller sources)
+                "-vf", "scale=-2:'min(" + rendition.getHeight() + ",ih)'",
+
+                // video: web-safe H.264, CRF capped so each rung stays inside its bandwidth
                 "-c:v", "libx264",
                 "-pix_fmt", "yuv420p",
                 "-profile:v", "main",
                 "-level", "4.0",
                 "-preset", "veryfast",
                 "-crf", "23",
+                "-maxrate", rendition.getVideoBitrate(),
+                "-bufsize", doubleRate(rendition.getVideoBitrate()),
 
-                // audio: AAC
-                "-c:a", "aac",
-                "-b:a", "128k",
+                // keyframe on every segment boundary so HLS segments have a fixed duration
+                "-force_key_frames", "expr:gte(t+" + startSeconds + ",(n_forced+" + skipped + ")*" + segment + ")"
+        );
+    }
 
-                "-movflags", "+faststart",
+    // "2800k" -> "5600k" (VBV buffer = 2x maxrate)
+    private String doubleRate(String rate) {
+        String digits = rate.replaceAll("[^0-9]", "");
+        String suffix = rate.replaceAll("[0-9]", "");
+        return (Long.parseLong(digits) * 2) + suffix;
+    }
 
-                output.toString()
-        );
+    private void run(List<String> command) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder(command);
 
         pb.redirectErrorStream(true);
         Process p = pb.start();
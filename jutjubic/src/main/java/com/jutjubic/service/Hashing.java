@@ -0,0 +1,17 @@
+package com.jutjubic.service;
+
+/**
+ * Bit mixing shared by the sketches and the anti-entropy tree.
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    // splitmix64 finalizer
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,188 @@
+package com.jutjubic.service;
+
+import com.jutjubic.dto.VideoMetadataDto;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Packaging stage of the transcoding pipeline.
+ *
+ * Layout on disk (one directory per upload):
+ *   hls/{base}/master.m3u8
+ *   hls/{base}/{rendition}/index.m3u8
+ *   hls/{base}/{rendition}/variant.properties   (RESOLUTION/CODECS for the master)
+ *   hls/{base}/{rendition}/seg_00000.ts ...
+ *
+ * Segments never change once written, so they can be cached as immutable
+ * by nginx and browsers.
+ */
+@Service
+public class HlsPackagingService {
+
+    public static final String MASTER_PLAYLIST = "master.m3u8";
+    public static final String MEDIA_PLAYLIST = "index.m3u8";
+    private static final String SEGMENT_PATTERN = "seg_%05d.ts";
+    private static final String VARIANT_INFO = "variant.properties";
+
+    private final FfmpegTranscodingService ffmpeg;
+    private final VideoMetadataService metadataService;
+
+    public HlsPackagingService(FfmpegTranscodingService ffmpeg, VideoMetadataService metadataService) {
+        this.ffmpeg = ffmpeg;
+        this.metadataService = metadataService;
+    }
+
+    /**
+     * resolution and codecs are null when unknown (renditions packaged before they were recorded).
+     */
+    public record Variant(String rendition, long bandwidth, long averageBandwidth, String resolution, String codecs) {}
+
+    public Variant packageRendition(Path input, Path hlsRoot, String rendition) throws Exception {
+        Path renditionDir = hlsRoot.resolve(rendition);
+        Files.createDirectories(renditionDir);
+
+        // written before the playlist gets its ENDLIST, so a complete rendition always has it
+        writeVariantInfo(input, renditionDir);
+        ffmpeg.segmentHls(input, renditionDir, MEDIA_PLAYLIST, SEGMENT_PATTERN);
+        writeMasterPlaylist(hlsRoot);
+
+        Variant variant = readVariant(renditionDir);
+        if (variant == null) {
+            throw new IllegalStateException("HLS packaging produced no complete playlist in " + renditionDir);
+        }
+        return variant;
+    }
+
+    /**
+     * Rebuilds master.m3u8 from every finished rendition under hlsRoot.
+     * Workers on both replicas share the volume and can finish renditions of the same
+     * upload at once, so each one writes a private temp file and atomically renames it
+     * over the master, then re-reads the renditions and writes again if one finished
+     * in the meantime - the last rename therefore always lists every rendition.
+     */
+    public void writeMasterPlaylist(Path hlsRoot) throws IOException {
+        Path master = hlsRoot.resolve(MASTER_PLAYLIST);
+        String written = null;
+        String playlist = masterPlaylist(hlsRoot);
+        while (!playlist.equals(written)) {
+            replaceAtomically(master, playlist);
+            written = playlist;
+            playlist = masterPlaylist(hlsRoot);
+        }
+    }
+
+    private String masterPlaylist(Path hlsRoot) throws IOException {
+        List<Variant> variants = new ArrayList<>();
+
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(hlsRoot, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                Variant v = readVariant(dir);
+                if (v != null) variants.add(v);
+            }
+        }
+
+        variants.sort(Comparator.comparingLong(Variant::bandwidth));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:3\n");
+        sb.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        for (Variant v : variants) {
+            sb.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(v.bandwidth())
+                    .append(",AVERAGE-BANDWIDTH=").append(v.averageBandwidth());
+            if (v.resolution() != null) sb.append(",RESOLUTION=").append(v.resolution());
+            if (v.codecs() != null) sb.append(",CODECS=\"").append(v.codecs()).append('"');
+            sb.append('\n');
+            sb.append(v.rendition()).append('/').append(MEDIA_PLAYLIST).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // unique temp name per writer - a shared ".tmp" would let two writers interleave into one file
+    private void replaceAtomically(Path target, String content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Records the rendition's real frame size (the ladder only fixes the height, the width
+     * follows the source aspect) and its codecs; audio only when the output has a track.
+     */
+    private void writeVariantInfo(Path input, Path renditionDir) throws IOException {
+        VideoMetadataDto metadata = metadataService.extract(input);
+
+        StringBuilder sb = new StringBuilder();
+        if (metadata != null && metadata.width() != null && metadata.height() != null) {
+            sb.append("resolution=").append(metadata.width()).append('x').append(metadata.height()).append('\n');
+        }
+        sb.append("codecs=").append(FfmpegTranscodingService.VIDEO_CODEC);
+        if (metadata == null || metadata.audioCodec() != null) {
+            sb.append(',').append(FfmpegTranscodingService.AUDIO_CODEC);
+        }
+        sb.append('\n');
+
+        replaceAtomically(renditionDir.resolve(VARIANT_INFO), sb.toString());
+    }
+
+    /**
+     * BANDWIDTH is the peak segment bitrate, AVERAGE-BANDWIDTH the whole-rendition average.
+     * Returns null while the media playlist is still being written (no ENDLIST yet).
+     */
+    private Variant readVariant(Path renditionDir) throws IOException {
+        Path playlist = renditionDir.resolve(MEDIA_PLAYLIST);
+        if (!Files.exists(playlist)) return null;
+
+        List<String> lines = Files.readAllLines(playlist, StandardCharsets.UTF_8);
+        if (lines.stream().noneMatch(l -> l.startsWith("#EXT-X-ENDLIST"))) return null;
+
+        double totalSeconds = 0;
+        long totalBytes = 0;
+        long peak = 0;
+
+        for (int i = 0; i < lines.size() - 1; i++) {
+            String line = lines.get(i);
+            if (!line.startsWith("#EXTINF:")) continue;
+
+            double duration = Double.parseDouble(line.substring(8, line.indexOf(',')));
+            long size = Files.size(renditionDir.resolve(lines.get(i + 1).trim()));
+
+            totalSeconds += duration;
+            totalBytes += size;
+            if (duration > 0) {
+                peak = Math.max(peak, (long) (size * 8 / duration));
+            }
+        }
+
+        if (totalSeconds <= 0) return null;
+
+        long average = (long) (totalBytes * 8 / totalSeconds);
+
+        Properties info = new Properties();
+        Path infoFile = renditionDir.resolve(VARIANT_INFO);
+        if (Files.exists(infoFile)) {
+            try (Reader reader = Files.newBufferedReader(infoFile, StandardCharsets.UTF_8)) {
+                info.load(reader);
+            }
+        }
+
+        return new Variant(renditionDir.getFileName().toString(), Math.max(peak, average), average,
+                info.getProperty("resolution"), info.getProperty("codecs"));
+    }
+}
@@ -0,0 +1,186 @@
+package com.jutjubic.service;
+
+import com.jutjubic.dto.VideoMetadataDto;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time -> byte offset index of a video's keyframes.
+ *
+ * Built once from the MP4 sample tables (at upload and after each transcode)
+ * and stored as a small sidecar file next to the video ("clip.mp4.kfidx"),
+ * then kept in memory so premiere joins can jump to the right byte offset
+ * with a binary search instead of re-reading moov.
+ */
+@Service
+public class KeyframeIndexService {
+
+    public static final String SUFFIX = ".kfidx";
+
+    private static final int MAGIC = 0x4B464958; // "KFIX"
+    private static final int VERSION = 1;
+    private static final int MAX_CACHED = 1_000;
+
+    /**
+     * headerBytes: ftyp+moov prefix length for faststart files, -1 when moov is at the end.
+     * videoSize/videoModified identify the exact file the index was built from.
+     */
+    public record KeyframeIndex(long videoSize, long videoModified, long headerBytes,
+                                long[] timesMicros, long[] offsets) {
+
+        public boolean isFaststart() {
+            return headerBytes > 0;
+        }
+
+        /**
+         * Last keyframe at or before the given time (the first one if time precedes it).
+         */
+        public Optional<VideoMetadataDto.Keyframe> floor(long timeMicros) {
+            if (timesMicros.length == 0) return Optional.empty();
+            int i = Arrays.binarySearch(timesMicros, timeMicros);
+            if (i < 0) i = Math.max(0, -i - 2);
+            return Optional.of(new VideoMetadataDto.Keyframe(timesMicros[i], offsets[i]));
+        }
+    }
+
+    private final Mp4BoxParser mp4BoxParser;
+    private final ConcurrentHashMap<Path, KeyframeIndex> cache = new ConcurrentHashMap<>();
+
+    public KeyframeIndexService(Mp4BoxParser mp4BoxParser) {
+        this.mp4BoxParser = mp4BoxParser;
+    }
+
+    /**
+     * Parses the video and (re)writes its sidecar index. Safe to call from
+     * upload/transcode hooks - failures are logged, not thrown.
+     */
+    public Optional<KeyframeIndex> build(Path video) {
+        try {
+            Path file = video.toAbsolutePath().normalize();
+            VideoMetadataDto meta = mp4BoxParser.parse(file);
+            KeyframeIndex index = fromMetadata(file, meta);
+            write(sidecar(file), index);
+            cache(file, index);
+            System.out.println("KEYFRAME INDEX BUILT: " + file.getFileName() + " keyframes=" + index.timesMicros().length);
+            return Optional.of(index);
+        } catch (IOException e) {
+            System.err.println("WARNING: Could not build keyframe index for " + video + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Cached index, then the sidecar file, then a fresh build. An index whose
+     * size/mtime no longer match the video is treated as stale.
+     */
+    public Optional<KeyframeIndex> get(Path video) {
+        Path file = video.toAbsolutePath().normalize();
+        long size;
+        long modified;
+        try {
+            size = Files.size(file);
+            modified = Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+
+        KeyframeIndex cached = cache.get(file);
+        if (cached != null && cached.videoSize() == size && cached.videoModified() == modified) {
+            return Optional.of(cached);
+        }
+
+        Path sidecar = sidecar(file);
+        if (Files.exists(sidecar)) {
+            try {
+                KeyframeIndex index = read(sidecar);
+                if (index.videoSize() == size && index.videoModified() == modified) {
+                    cache(file, index);
+                    return Optional.of(index);
+                }
+            } catch (IOException e) {
+                System.err.println("WARNING: Corrupt keyframe index " + sidecar + ", rebuilding");
+            }
+        }
+
+        return build(file);
+    }
+
+    static Path sidecar(Path video) {
+        return video.resolveSibling(video.getFileName() + SUFFIX);
+    }
+
+    private KeyframeIndex fromMetadata(Path file, VideoMetadataDto meta) throws IOException {
+        List<VideoMetadataDto.Keyframe> keyframes = meta.keyframes();
+        long[] times = new long[keyframes.size()];
+        long[] offsets = new long[keyframes.size()];
+        for (int i = 0; i < keyframes.size(); i++) {
+            times[i] = keyframes.get(i).timeMicros();
+            offsets[i] = keyframes.get(i).byteOffset();
+        }
+        return new KeyframeIndex(
+                Files.size(file),
+                Files.getLastModifiedTime(file).toMillis(),
+                meta.headerBytes() != null ? meta.headerBytes() : -1,
+                times,
+                offsets
+        );
+    }
+
+    private void cache(Path file, KeyframeIndex index) {
+        if (cache.size() >= MAX_CACHED) {
+            cache.clear();
+        }
+        cache.put(file, index);
+    }
+
+    private void write(Path target, KeyframeIndex index) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(index.videoSize());
+            out.writeLong(index.videoModified());
+            out.writeLong(index.headerBytes());
+            out.writeInt(index.timesMicros().length);
+            for (int i = 0; i < index.timesMicros().length; i++) {
+                out.writeLong(index.timesMicros()[i]);
+                out.writeLong(index.offsets()[i]);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private KeyframeIndex read(Path sidecar) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown index format");
+            }
+            long size = in.readLong();
+            long modified = in.readLong();
+            long headerBytes = in.readLong();
+            int n = in.readInt();
+            if (n < 0 || (long) n * 16 > Files.size(sidecar)) {
+                throw new IOException("Invalid keyframe count " + n);
+            }
+            long[] times = new long[n];
+            long[] offsets = new long[n];
+            for (int i = 0; i < n; i++) {
+                times[i] = in.readLong();
+                offsets[i] = in.readLong();
+            }
+            return new KeyframeIndex(size, modified, headerBytes, times, offsets);
+        }
+    }
+}
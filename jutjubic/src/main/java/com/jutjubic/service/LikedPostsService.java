@@ -0,0 +1,141 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.User;
+import com.jutjubic.dto.PostViewDto;
+import com.jutjubic.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * "Did I like this?" for whole pages of posts, answered from memory: every
+ * active viewer's liked post ids are held in a {@link PostIdBitmap}, loaded from
+ * post_likes on first use and updated by the like write path after commit.
+ *
+ * Likes made through another replica reach this one's bitmaps only when they
+ * are reloaded, so entries expire after app.likes.bitmap-ttl-ms.
+ */
+@Service
+public class LikedPostsService {
+
+    private final JdbcTemplate jdbc;
+    private final UserRepository userRepository;
+    private final int maxUsers;
+    private final long ttlMs;
+
+    private final Map<Long, Entry> bitmaps = new ConcurrentHashMap<>();
+
+    private record Entry(PostIdBitmap bitmap, long loadedAt) {
+    }
+
+    public LikedPostsService(
+            JdbcTemplate jdbc,
+            UserRepository userRepository,
+            MeterRegistry registry,
+            @Value("${app.likes.bitmap-cache-users:100000}") int maxUsers,
+            @Value("${app.likes.bitmap-ttl-ms:30000}") long ttlMs
+    ) {
+        this.jdbc = jdbc;
+        this.userRepository = userRepository;
+        this.maxUsers = maxUsers;
+        this.ttlMs = ttlMs;
+        registry.gauge("liked_posts_bitmap_users", bitmaps, Map::size);
+        registry.gauge("liked_posts_bitmap_bytes", this, LikedPostsService::memoryBytes);
+    }
+
+    /**
+     * Sets likedByMe on every post for the authenticated viewer (false for anonymous viewers).
+     */
+    public List<PostViewDto> withLikedByMe(List<PostViewDto> posts, String viewerEmail) {
+        Long userId = viewerEmail != null ? userIdOf(viewerEmail) : null;
+        if (userId == null) {
+            posts.forEach(p -> p.setLikedByMe(false));
+            return posts;
+        }
+        PostIdBitmap bitmap = bitmapFor(userId);
+        synchronized (bitmap) {
+            posts.forEach(p -> p.setLikedByMe(bitmap.contains(p.getId())));
+        }
+        return posts;
+    }
+
+    public boolean isLiked(long userId, long postId) {
+        PostIdBitmap bitmap = bitmapFor(userId);
+        synchronized (bitmap) {
+            return bitmap.contains(postId);
+        }
+    }
+
+    /**
+     * Called by the like write path inside its transaction; the cached bitmap
+     * (if any) is updated once the transaction commits.
+     */
+    public void recordLike(long userId, long postId, boolean liked) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(userId, postId, liked);
+                }
+            });
+        } else {
+            apply(userId, postId, liked);
+        }
+    }
+
+    // sets rather than flips, so applying a change the loaded bitmap already has is harmless
+    private void apply(long userId, long postId, boolean liked) {
+        bitmaps.computeIfPresent(userId, (id, entry) -> {
+            synchronized (entry.bitmap()) {
+                if (liked) entry.bitmap().add(postId);
+                else entry.bitmap().remove(postId);
+            }
+            return entry;
+        });
+    }
+
+    private PostIdBitmap bitmapFor(long userId) {
+        Entry entry = bitmaps.get(userId);
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt() <= ttlMs) {
+            return entry.bitmap();
+        }
+        if (bitmaps.size() >= maxUsers) bitmaps.clear();
+        // loaded inside compute: a like committed meanwhile waits in apply() for the
+        // load to finish, so it cannot be applied to a bitmap that is then replaced
+        return bitmaps.compute(userId, (id, current) -> {
+            if (current != null && System.currentTimeMillis() - current.loadedAt() <= ttlMs) return current;
+            return new Entry(load(id), System.currentTimeMillis());
+        }).bitmap();
+    }
+
+    private PostIdBitmap load(long userId) {
+        PostIdBitmap bitmap = new PostIdBitmap();
+        jdbc.query("SELECT post_id FROM post_likes WHERE user_id = ?",
+                rs -> {
+                    bitmap.add(rs.getLong(1));
+                },
+                userId);
+        return bitmap;
+    }
+
+    Long userIdOf(String email) {
+        return userRepository.findByEmailAdress(email).map(User::getId).orElse(null);
+    }
+
+    private double memoryBytes() {
+        long bytes = 0;
+        for (Entry entry : bitmaps.values()) {
+            synchronized (entry.bitmap()) {
+                bytes += entry.bitmap().sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+}
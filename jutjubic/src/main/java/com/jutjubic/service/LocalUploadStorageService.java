@@ -50,6 +50,51 @@ public class LocalUploadStorageService {
         }
     }
 
+    /**
+     * Same result as saveToTemp, but the video is an already assembled resumable
+     * upload - it is moved (same filesystem, no copy) instead of streamed again.
+     */
+    public TempFiles adoptTemp(Path assembledVideo, MultipartFile thumbnail) throws IOException {
+        validateThumbnail(thumbnail);
+
+        Path base = Paths.get(props.getDir()).toAbsolutePath().normalize();
+        Path tmp = base.resolve(props.getTmpDir());
+        Files.createDirectories(tmp);
+
+        String id = UUID.randomUUID().toString();
+        String videoName = id + ".mp4";
+        String thumbName = id + safeImageExt(thumbnail.getOriginalFilename());
+
+        Path tempVideo = tmp.resolve(videoName + ".part");
+        Path tempThumb = tmp.resolve(thumbName + ".part");
+
+        try {
+            copyWithTimeout(thumbnail.getInputStream(), tempThumb, props.getTimeoutSeconds());
+            Files.move(assembledVideo, tempVideo, StandardCopyOption.ATOMIC_MOVE);
+            return new TempFiles(tempVideo, tempThumb, videoName, thumbName);
+        } catch (Exception e) {
+            safeDelete(tempThumb);
+            if (e instanceof IOException io) throw io;
+            throw new IOException("Upload failed or exceeded timeout.", e);
+        }
+    }
+
+    /**
+     * Target file of a resumable upload session: tmp/uploads/{sessionId}.part
+     */
+    public Path uploadSessionFile(String sessionId) throws IOException {
+        Path dir = Paths.get(props.getDir()).toAbsolutePath().normalize()
+                .resolve(props.getTmpDir())
+                .resolve("uploads");
+        Files.createDirectories(dir);
+        return dir.resolve(sessionId + ".part");
+    }
+
+    /**
+     * Final names are content digests, so an existing target already holds the same
+     * bytes - the temp copy is dropped instead of overwriting it. Targets are never
+     * deleted on failure: other posts may already reference them.
+     */
     public FinalFiles moveToFinal(TempFiles temp) throws IOException {
         Path base = Paths.get(props.getDir()).toAbsolutePath().normalize();
         Path videos = base.resolve(props.getVideosDir());
@@ -61,15 +106,32 @@ public class LocalUploadStorageService {
         Path finalVideo = videos.resolve(temp.videoName());
         Path finalThumb = thumbs.resolve(temp.thumbName());
 
-        try {
-            Files.move(temp.tempVideo(), finalVideo, StandardCopyOption.REPLACE_EXISTING);
-            Files.move(temp.tempThumb(), finalThumb, StandardCopyOption.REPLACE_EXISTING);
-            return new FinalFiles(finalVideo, finalThumb);
-        } catch (Exception e) {
-            safeDelete(finalVideo);
-            safeDelete(finalThumb);
-            throw e;
+        if (!moveIfAbsent(temp.tempVideo(), finalVideo)) {
+            System.out.println("DEDUP: video already stored as " + finalVideo.getFileName());
         }
+        if (!moveIfAbsent(temp.tempThumb(), finalThumb)) {
+            System.out.println("DEDUP: thumbnail already stored as " + finalThumb.getFileName());
+        }
+        return new FinalFiles(finalVideo, finalThumb);
+    }
+
+    private boolean moveIfAbsent(Path source, Path target) throws IOException {
+        if (!Files.exists(target)) {
+            try {
+                Files.move(source, target);
+                return true;
+            } catch (FileAlreadyExistsException e) {
+                // identical upload finished first
+            }
+        }
+        safeDelete(source);
+        return false;
+    }
+
+    public Path tmpDir() throws IOException {
+        Path tmp = Paths.get(props.getDir()).toAbsolutePath().normalize().resolve(props.getTmpDir());
+        Files.createDirectories(tmp);
+        return tmp;
     }
 
     public void deleteIfExists(Path p) {
@@ -94,7 +156,7 @@ public class LocalUploadStorageService {
         }
     }
 
-    private String safeImageExt(String originalName) {
+    String safeImageExt(String originalName) {
         if (originalName == null) return ".png";
         String lower = originalName.toLowerCase();
         if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return ".jpg";
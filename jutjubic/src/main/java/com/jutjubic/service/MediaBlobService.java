@@ -0,0 +1,193 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.UploadProperties;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed media store bookkeeping.
+ *
+ * Uploaded videos and thumbnails are stored under their SHA-256 ("{digest}.mp4"),
+ * so re-uploading the same file keeps a single copy on disk and only bumps the
+ * blob's reference count. Reference counts are written in the caller's
+ * transaction, so a rolled back upload leaves them untouched; the last release
+ * deletes the file.
+ */
+@Service
+public class MediaBlobService {
+
+    public static final String KIND_VIDEO = "VIDEO";
+    public static final String KIND_THUMBNAIL = "THUMBNAIL";
+
+    // a claim older than this belongs to a transcode that died - the next duplicate may retry it
+    static final Duration TRANSCODE_CLAIM_TIMEOUT = Duration.ofHours(6);
+
+    private final JdbcTemplate jdbc;
+    private final UploadProperties uploadProps;
+    private final DatabaseDialect dialect;
+
+    public MediaBlobService(JdbcTemplate jdbc, UploadProperties uploadProps, DatabaseDialect dialect) {
+        this.jdbc = jdbc;
+        this.uploadProps = uploadProps;
+        this.dialect = dialect;
+    }
+
+    /**
+     * Renames the temp files' final names to their digests. The video digest is
+     * reused when the upload path already computed it while writing the file.
+     */
+    public LocalUploadStorageService.TempFiles contentAddress(LocalUploadStorageService.TempFiles temp,
+                                                              String videoSha256) throws IOException {
+        String videoDigest = videoSha256 != null ? videoSha256.toLowerCase() : sha256Hex(temp.tempVideo());
+        String thumbDigest = sha256Hex(temp.tempThumb());
+
+        return new LocalUploadStorageService.TempFiles(
+                temp.tempVideo(),
+                temp.tempThumb(),
+                videoDigest + ".mp4",
+                thumbDigest + extension(temp.thumbName())
+        );
+    }
+
+    /**
+     * Registers one more reference to the blob, creating it on first use. A single
+     * upsert, so two concurrent first uploads of the same content both end up as
+     * references instead of one of them failing on the primary key.
+     */
+    public void acquire(String digest, String kind, String fileName, long sizeBytes) {
+        Timestamp now = Timestamp.from(Instant.now());
+        if (dialect.isPostgres()) {
+            jdbc.update("""
+                    INSERT INTO media_blobs (digest, kind, file_name, size_bytes, ref_count, created_at)
+                    VALUES (?, ?, ?, ?, 1, ?)
+                    ON CONFLICT (digest) DO UPDATE SET ref_count = media_blobs.ref_count + 1
+                    """, digest, kind, fileName, sizeBytes, now);
+        } else {
+            String merge = """
+                    MERGE INTO media_blobs d
+                    USING (VALUES (?, ?, ?, ?, ?)) s (digest, kind, file_name, size_bytes, created_at)
+                    ON d.digest = s.digest
+                    WHEN MATCHED THEN UPDATE SET ref_count = d.ref_count + 1
+                    WHEN NOT MATCHED THEN INSERT (digest, kind, file_name, size_bytes, ref_count, created_at)
+                        VALUES (s.digest, s.kind, s.file_name, s.size_bytes, 1, s.created_at)
+                    """;
+            try {
+                jdbc.update(merge, digest, kind, fileName, sizeBytes, now);
+            } catch (DuplicateKeyException e) {
+                // unlike ON CONFLICT, MERGE can lose the insert race; the row exists now, so this one matches
+                jdbc.update(merge, digest, kind, fileName, sizeBytes, now);
+            }
+        }
+
+        Long refCount = jdbc.queryForObject("SELECT ref_count FROM media_blobs WHERE digest = ?", Long.class, digest);
+        if (refCount != null && refCount > 1) {
+            System.out.println("DEDUP: " + kind + " blob " + digest + " already stored, reference added");
+        }
+    }
+
+    /**
+     * Drops one reference. The last one removes the blob row and, after the
+     * caller's transaction commits, the file itself - unless an upload of the same
+     * content re-created the blob in the meantime.
+     */
+    public void release(String digest) {
+        if (digest == null) return;
+        jdbc.update("UPDATE media_blobs SET ref_count = ref_count - 1 WHERE digest = ? AND ref_count > 0", digest);
+
+        List<Map<String, Object>> unreferenced = jdbc.queryForList(
+                "SELECT kind, file_name FROM media_blobs WHERE digest = ? AND ref_count = 0", digest);
+        if (unreferenced.isEmpty()) return;
+        jdbc.update("DELETE FROM media_blobs WHERE digest = ? AND ref_count = 0", digest);
+
+        String kind = (String) unreferenced.get(0).get("kind");
+        String fileName = (String) unreferenced.get(0).get("file_name");
+        Runnable deleteFiles = () -> {
+            Integer recreated = jdbc.queryForObject("SELECT COUNT(*) FROM media_blobs WHERE digest = ?",
+                    Integer.class, digest);
+            if (recreated != null && recreated > 0) return;
+            deleteBlobFiles(kind, fileName);
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteFiles.run();
+                }
+            });
+        } else {
+            deleteFiles.run();
+        }
+    }
+
+    /**
+     * Claims the right to transcode the blob's renditions. Only the first upload of
+     * a source publishes transcode jobs; duplicates uploaded while those run get the
+     * renditions linked as each one finishes (RenditionSharingService.propagate)
+     * instead of republishing jobs that write the same output files.
+     *
+     * @return true if the caller should publish the jobs
+     */
+    public boolean claimTranscode(String digest) {
+        Timestamp now = Timestamp.from(Instant.now());
+        Timestamp stale = Timestamp.from(Instant.now().minus(TRANSCODE_CLAIM_TIMEOUT));
+        return jdbc.update("UPDATE media_blobs SET transcode_claimed_at = ? WHERE digest = ?"
+                + " AND (transcode_claimed_at IS NULL OR transcode_claimed_at < ?)", now, digest, stale) > 0;
+    }
+
+    private void deleteBlobFiles(String kind, String fileName) {
+        Path base = Paths.get(uploadProps.getDir()).toAbsolutePath().normalize();
+        Path file = KIND_VIDEO.equals(kind)
+                ? base.resolve(uploadProps.getVideosDir()).resolve(fileName)
+                : base.resolve(uploadProps.getThumbsDir()).resolve(fileName);
+        try {
+            Files.deleteIfExists(file);
+            if (KIND_VIDEO.equals(kind)) {
+                Files.deleteIfExists(file.resolveSibling(fileName + KeyframeIndexService.SUFFIX));
+            }
+            System.out.println("BLOB GC: deleted " + file);
+        } catch (IOException e) {
+            System.err.println("ERROR: Failed to delete unreferenced blob " + file + ": " + e.getMessage());
+        }
+    }
+
+    static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buf = new byte[256 * 1024];
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                digest.update(buf, 0, r);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot);
+    }
+}
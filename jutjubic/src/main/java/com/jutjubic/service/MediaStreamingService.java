@@ -0,0 +1,171 @@
+package com.jutjubic.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Serves media files (or byte ranges of them) straight from disk.
+ *
+ * The response is written here rather than returned as a ResponseEntity: the
+ * Resource / ResourceRegion converters are called directly, so they copy the
+ * body to the socket in fixed-size chunks (heap use per request stays constant
+ * no matter how large the file is) and Spring does not get to re-apply the Range
+ * header to a body that was deliberately sent whole.
+ *
+ * Every response carries a strong ETag (file identity + size + mtime) and
+ * Last-Modified, so repeat viewers and the nginx tier get 304s and partial
+ * hits instead of re-downloading the whole body.
+ */
+@Service
+public class MediaStreamingService {
+
+    public record FileValidators(String etag, long lastModified) {}
+
+    private final ResourceHttpMessageConverter resourceConverter = new ResourceHttpMessageConverter();
+    private final ResourceRegionHttpMessageConverter regionConverter = new ResourceRegionHttpMessageConverter();
+
+    public void stream(Path filePath, MediaType mediaType, HttpServletRequest request,
+                       HttpServletResponse response) throws IOException {
+        stream(filePath, mediaType, request, response, CacheControl.noCache().cachePublic());
+    }
+
+    public void stream(Path filePath, MediaType mediaType, HttpServletRequest request,
+                       HttpServletResponse response, CacheControl cacheControl) throws IOException {
+        HttpHeaders requestHeaders = new ServletServerHttpRequest(request).getHeaders();
+        ServletServerHttpResponse out = new ServletServerHttpResponse(response);
+        Resource resource = new FileSystemResource(filePath);
+        long fileSize = resource.contentLength();
+        FileValidators validators = validators(filePath);
+
+        out.getHeaders().setETag(validators.etag());
+        out.getHeaders().setLastModified(validators.lastModified());
+        out.getHeaders().setCacheControl(cacheControl);
+
+        if (isNotModified(requestHeaders, validators)) {
+            out.setStatusCode(HttpStatus.NOT_MODIFIED);
+            out.flush();
+            return;
+        }
+
+        out.getHeaders().set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        List<HttpRange> ranges;
+        try {
+            ranges = isRangeApplicable(requestHeaders, validators)
+                    ? requestHeaders.getRange()
+                    : List.of();
+        } catch (IllegalArgumentException e) {
+            rangeNotSatisfiable(out, fileSize);
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            out.setStatusCode(HttpStatus.OK);
+            resourceConverter.write(resource, mediaType, out);
+            return;
+        }
+
+        // One range -> single ResourceRegion, several -> multipart/byteranges
+        Object body;
+        try {
+            body = ranges.size() == 1
+                    ? ranges.get(0).toResourceRegion(resource)
+                    : HttpRange.toResourceRegions(ranges, resource);
+        } catch (IllegalArgumentException e) {
+            rangeNotSatisfiable(out, fileSize);
+            return;
+        }
+
+        out.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+        regionConverter.write(body, mediaType, out);
+    }
+
+    public FileValidators validators(Path filePath) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+
+        Object fileKey = attrs.fileKey();
+        String identity = fileKey != null
+                ? fileKey.toString()
+                : filePath.toAbsolutePath().normalize().toString();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        String etag = "\"" + Integer.toHexString(identity.hashCode())
+                + "-" + Long.toHexString(attrs.size())
+                + "-" + Long.toHexString(lastModified) + "\"";
+
+        return new FileValidators(etag, lastModified);
+    }
+
+    public boolean isNotModified(HttpHeaders requestHeaders, FileValidators validators) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            // If-None-Match uses weak comparison and takes precedence over If-Modified-Since
+            for (String tag : ifNoneMatch) {
+                if ("*".equals(tag) || stripWeak(tag).equals(validators.etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        return ifModifiedSince != -1 && validators.lastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    public ResponseEntity<?> notModified(FileValidators validators, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(validators.etag())
+                .lastModified(validators.lastModified())
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    private boolean isRangeApplicable(HttpHeaders requestHeaders, FileValidators validators) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range requires strong comparison, so a weak tag never matches
+            return ifRange.equals(validators.etag());
+        }
+
+        try {
+            long date = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return date / 1000 == validators.lastModified() / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private void rangeNotSatisfiable(ServletServerHttpResponse out, long fileSize) throws IOException {
+        out.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        out.getHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+        out.flush();
+    }
+}
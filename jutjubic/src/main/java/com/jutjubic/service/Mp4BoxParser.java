@@ -0,0 +1,422 @@
+package com.jutjubic.service;
+
+import com.jutjubic.dto.VideoMetadataDto;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal ISO-BMFF (MP4) reader.
+ *
+ * Walks the top-level boxes with positioned reads (mdat is skipped, never read),
+ * loads only the moov box and extracts duration, resolution, codecs and the
+ * keyframe table of the first video track from mvhd/tkhd/mdhd/stsd and the
+ * sample tables. Fragmented files and anything malformed raise an IOException
+ * so the caller can fall back to ffprobe.
+ */
+@Service
+public class Mp4BoxParser {
+
+    // moov of a 2h video with a full sample table is a few MB, anything this big is not a sane header
+    static final long MAX_MOOV_SIZE = 64L * 1024 * 1024;
+
+    private static final Map<String, String> CODEC_NAMES = Map.of(
+            "avc1", "h264",
+            "avc3", "h264",
+            "hvc1", "hevc",
+            "hev1", "hevc",
+            "av01", "av1",
+            "vp09", "vp9",
+            "mp4a", "aac",
+            "Opus", "opus",
+            "ac-3", "ac3",
+            "ec-3", "eac3"
+    );
+
+    public VideoMetadataDto parse(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = ch.size();
+            Moov moov = readMoov(ch, fileSize);
+            return parseMoov(moov.body, fileSize, moov.headerBytes);
+        }
+    }
+
+    /**
+     * Parses an already captured moov body (without its box header), e.g. one
+     * collected by {@link Mp4StreamScanner} while the upload was being written.
+     */
+    public VideoMetadataDto parseMoov(ByteBuffer moovBody, long fileSize, Long headerBytes) throws IOException {
+        try {
+            return parseMoov(new Moov(moovBody, headerBytes), fileSize);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed moov box: " + e.getMessage(), e);
+        }
+    }
+
+    private Moov readMoov(FileChannel ch, long fileSize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long pos = 0;
+        boolean mdatSeen = false;
+
+        while (pos + 8 <= fileSize) {
+            header.clear().limit(8);
+            readFully(ch, header, pos);
+            header.flip();
+
+            long size = Integer.toUnsignedLong(header.getInt());
+            String type = fourcc(header);
+            int headerSize = 8;
+
+            if (size == 1) {
+                header.clear().limit(8);
+                readFully(ch, header, pos + 8);
+                header.flip();
+                size = header.getLong();
+                headerSize = 16;
+            } else if (size == 0) {
+                size = fileSize - pos;
+            }
+            if (size < headerSize || pos + size > fileSize) {
+                throw new IOException("Invalid box '" + type + "' at offset " + pos);
+            }
+
+            if (type.equals("moov")) {
+                if (size > MAX_MOOV_SIZE) throw new IOException("moov box too large: " + size);
+                ByteBuffer moov = ByteBuffer.allocate((int) (size - headerSize));
+                readFully(ch, moov, pos + headerSize);
+                return new Moov(moov.flip(), mdatSeen ? null : pos + size);
+            }
+            if (type.equals("mdat")) {
+                mdatSeen = true;
+            }
+            if (type.equals("moof")) {
+                throw new IOException("Fragmented MP4 is not supported");
+            }
+
+            pos += size;
+        }
+        throw new IOException("No moov box found");
+    }
+
+    private VideoMetadataDto parseMoov(Moov moov, long fileSize) throws IOException {
+        Double duration = null;
+        Track video = null;
+        Track audio = null;
+
+        for (Box box : children(moov.body)) {
+            if (box.type.equals("mvhd")) {
+                duration = parseMvhd(box.body);
+            } else if (box.type.equals("trak")) {
+                Track track = parseTrak(box.body);
+                if (track.handler.equals("vide") && video == null) video = track;
+                if (track.handler.equals("soun") && audio == null) audio = track;
+            }
+        }
+
+        if (video == null) throw new IOException("No video track");
+        if (duration == null || duration <= 0) {
+            duration = video.durationSeconds();
+        }
+
+        Long bitrate = duration != null && duration > 0 ? Math.round(fileSize * 8 / duration) : null;
+
+        return new VideoMetadataDto(
+                duration,
+                video.width,
+                video.height,
+                video.codec,
+                audio != null ? audio.codec : null,
+                bitrate,
+                keyframes(video),
+                moov.headerBytes
+        );
+    }
+
+    private Double parseMvhd(ByteBuffer b) {
+        int version = b.get() & 0xFF;
+        skip(b, 3);
+        long timescale;
+        long duration;
+        if (version == 1) {
+            skip(b, 16);
+            timescale = Integer.toUnsignedLong(b.getInt());
+            duration = b.getLong();
+        } else {
+            skip(b, 8);
+            timescale = Integer.toUnsignedLong(b.getInt());
+            duration = Integer.toUnsignedLong(b.getInt());
+        }
+        return timescale > 0 ? (double) duration / timescale : null;
+    }
+
+    private Track parseTrak(ByteBuffer trak) {
+        Track t = new Track();
+        for (Box box : children(trak)) {
+            if (box.type.equals("tkhd")) {
+                parseTkhd(box.body, t);
+            } else if (box.type.equals("mdia")) {
+                parseMdia(box.body, t);
+            }
+        }
+        return t;
+    }
+
+    private void parseTkhd(ByteBuffer b, Track t) {
+        // width/height are the last two 16.16 fixed-point fields of tkhd
+        if (b.remaining() < 8) return;
+        int w = b.getInt(b.limit() - 8) >>> 16;
+        int h = b.getInt(b.limit() - 4) >>> 16;
+        if (w > 0 && h > 0) {
+            t.width = w;
+            t.height = h;
+        }
+    }
+
+    private void parseMdia(ByteBuffer mdia, Track t) {
+        for (Box box : children(mdia)) {
+            switch (box.type) {
+                case "mdhd" -> {
+                    ByteBuffer b = box.body;
+                    int version = b.get() & 0xFF;
+                    skip(b, 3);
+                    if (version == 1) {
+                        skip(b, 16);
+                        t.timescale = Integer.toUnsignedLong(b.getInt());
+                        t.duration = b.getLong();
+                    } else {
+                        skip(b, 8);
+                        t.timescale = Integer.toUnsignedLong(b.getInt());
+                        t.duration = Integer.toUnsignedLong(b.getInt());
+                    }
+                }
+                case "hdlr" -> {
+                    skip(box.body, 8);
+                    t.handler = fourcc(box.body);
+                }
+                case "minf" -> {
+                    for (Box m : children(box.body)) {
+                        if (m.type.equals("stbl")) parseStbl(m.body, t);
+                    }
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private void parseStbl(ByteBuffer stbl, Track t) {
+        for (Box box : children(stbl)) {
+            ByteBuffer b = box.body;
+            switch (box.type) {
+                case "stsd" -> {
+                    skip(b, 4);
+                    int count = b.getInt();
+                    if (count < 1) break;
+                    int entryStart = b.position();
+                    skip(b, 4);
+                    String fourcc = fourcc(b);
+                    t.codec = CODEC_NAMES.getOrDefault(fourcc, fourcc);
+                    // VisualSampleEntry: 6 reserved + 2 data ref + 16 pre-defined/reserved, then width/height
+                    if (t.width == null && b.limit() >= entryStart + 36) {
+                        t.width = b.getShort(entryStart + 32) & 0xFFFF;
+                        t.height = b.getShort(entryStart + 34) & 0xFFFF;
+                    }
+                }
+                case "stts" -> {
+                    skip(b, 4);
+                    int n = checkedCount(b, 8);
+                    t.sttsCounts = new long[n];
+                    t.sttsDeltas = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        t.sttsCounts[i] = Integer.toUnsignedLong(b.getInt());
+                        t.sttsDeltas[i] = Integer.toUnsignedLong(b.getInt());
+                    }
+                }
+                case "stss" -> {
+                    skip(b, 4);
+                    int n = checkedCount(b, 4);
+                    t.syncSamples = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        t.syncSamples[i] = Integer.toUnsignedLong(b.getInt());
+                    }
+                }
+                case "stsc" -> {
+                    skip(b, 4);
+                    int n = checkedCount(b, 12);
+                    t.stscFirstChunk = new long[n];
+                    t.stscSamplesPerChunk = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        t.stscFirstChunk[i] = Integer.toUnsignedLong(b.getInt());
+                        t.stscSamplesPerChunk[i] = Integer.toUnsignedLong(b.getInt());
+                        skip(b, 4);
+                    }
+                }
+                case "stsz" -> {
+                    skip(b, 4);
+                    t.uniformSampleSize = Integer.toUnsignedLong(b.getInt());
+                    int n = b.getInt();
+                    if (n < 0) throw new IllegalArgumentException("negative sample count");
+                    t.sampleCount = n;
+                    if (t.uniformSampleSize == 0) {
+                        if ((long) n * 4 > b.remaining()) throw new IllegalArgumentException("stsz truncated");
+                        t.sampleSizes = new long[n];
+                        for (int i = 0; i < n; i++) {
+                            t.sampleSizes[i] = Integer.toUnsignedLong(b.getInt());
+                        }
+                    }
+                }
+                case "stco" -> {
+                    skip(b, 4);
+                    int n = checkedCount(b, 4);
+                    t.chunkOffsets = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        t.chunkOffsets[i] = Integer.toUnsignedLong(b.getInt());
+                    }
+                }
+                case "co64" -> {
+                    skip(b, 4);
+                    int n = checkedCount(b, 8);
+                    t.chunkOffsets = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        t.chunkOffsets[i] = b.getLong();
+                    }
+                }
+                default -> { }
+            }
+        }
+    }
+
+    /**
+     * Walks the sample tables once in chunk order, tracking each sample's decode
+     * time (stts) and byte offset (stsc + stco + stsz), and records the sync ones (stss).
+     */
+    private List<VideoMetadataDto.Keyframe> keyframes(Track t) throws IOException {
+        if (t.timescale <= 0 || t.sttsCounts == null || t.stscFirstChunk == null || t.chunkOffsets == null) {
+            throw new IOException("Incomplete sample table");
+        }
+
+        List<VideoMetadataDto.Keyframe> result = new ArrayList<>(t.syncSamples != null ? t.syncSamples.length : 16);
+
+        long sample = 1;         // 1-based, as in stss
+        int syncIdx = 0;
+        int sttsIdx = 0;
+        long sttsLeft = t.sttsCounts.length > 0 ? t.sttsCounts[0] : 0;
+        long decodeTime = 0;
+        int stscIdx = 0;
+
+        for (int chunk = 1; chunk <= t.chunkOffsets.length && sample <= t.sampleCount; chunk++) {
+            while (stscIdx + 1 < t.stscFirstChunk.length && t.stscFirstChunk[stscIdx + 1] <= chunk) {
+                stscIdx++;
+            }
+            long offset = t.chunkOffsets[chunk - 1];
+
+            for (long i = 0; i < t.stscSamplesPerChunk[stscIdx] && sample <= t.sampleCount; i++, sample++) {
+                boolean sync = t.syncSamples == null;
+                if (!sync) {
+                    while (syncIdx < t.syncSamples.length && t.syncSamples[syncIdx] < sample) syncIdx++;
+                    sync = syncIdx < t.syncSamples.length && t.syncSamples[syncIdx] == sample;
+                }
+                if (sync) {
+                    result.add(new VideoMetadataDto.Keyframe(decodeTime * 1_000_000 / t.timescale, offset));
+                }
+
+                offset += t.sampleSizes != null ? t.sampleSizes[(int) (sample - 1)] : t.uniformSampleSize;
+
+                while (sttsLeft == 0 && sttsIdx + 1 < t.sttsCounts.length) {
+                    sttsLeft = t.sttsCounts[++sttsIdx];
+                }
+                if (sttsLeft > 0) {
+                    decodeTime += t.sttsDeltas[sttsIdx];
+                    sttsLeft--;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static List<Box> children(ByteBuffer parent) {
+        List<Box> boxes = new ArrayList<>();
+        ByteBuffer b = parent.duplicate();
+        while (b.remaining() >= 8) {
+            int start = b.position();
+            long size = Integer.toUnsignedLong(b.getInt());
+            String type = fourcc(b);
+            int headerSize = 8;
+            if (size == 1) {
+                size = b.getLong();
+                headerSize = 16;
+            } else if (size == 0) {
+                size = b.limit() - start;
+            }
+            if (size < headerSize || size > b.limit() - start) {
+                throw new IllegalArgumentException("box '" + type + "' overruns its parent");
+            }
+            ByteBuffer body = b.duplicate().position(start + headerSize).limit(start + (int) size).slice();
+            boxes.add(new Box(type, body));
+            b.position(start + (int) size);
+        }
+        return boxes;
+    }
+
+    private static int checkedCount(ByteBuffer b, int entrySize) {
+        int n = b.getInt();
+        if (n < 0 || (long) n * entrySize > b.remaining()) {
+            throw new IllegalArgumentException("table entry count " + n + " exceeds box size");
+        }
+        return n;
+    }
+
+    private static String fourcc(ByteBuffer b) {
+        byte[] t = new byte[4];
+        b.get(t);
+        return new String(t, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void skip(ByteBuffer b, int n) {
+        b.position(b.position() + n);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, position);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            position += n;
+        }
+    }
+
+    private record Box(String type, ByteBuffer body) {}
+
+    // headerBytes: end of moov when it precedes all media data (faststart), otherwise null
+    private record Moov(ByteBuffer body, Long headerBytes) {}
+
+    private static final class Track {
+        String handler = "";
+        String codec;
+        Integer width;
+        Integer height;
+        long timescale;
+        long duration;
+
+        long[] sttsCounts;
+        long[] sttsDeltas;
+        long[] syncSamples;
+        long[] stscFirstChunk;
+        long[] stscSamplesPerChunk;
+        long[] chunkOffsets;
+        long[] sampleSizes;
+        long uniformSampleSize;
+        long sampleCount;
+
+        Double durationSeconds() {
+            return timescale > 0 ? (double) duration / timescale : null;
+        }
+    }
+}
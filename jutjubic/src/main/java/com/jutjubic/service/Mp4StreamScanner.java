@@ -0,0 +1,112 @@
+package com.jutjubic.service;
+
+import com.jutjubic.dto.VideoMetadataDto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Follows the top-level MP4 boxes of a byte stream as it is being written and
+ * keeps a copy of the moov box only, so the metadata of an upload is known as
+ * soon as the last byte arrives - whether moov is at the front or at the end -
+ * without reading the file back.
+ */
+public final class Mp4StreamScanner {
+
+    private final byte[] header = new byte[16];
+    private int headerFill;
+
+    private long pos;
+    private long boxStart;
+    private long boxEnd = -1;   // -1 while the current box header is incomplete
+
+    private boolean mdatSeen;
+    private ByteBuffer moov;
+    private Long headerBytes;
+    private String error;
+    private boolean done;
+
+    public void update(byte[] b, int off, int len) {
+        int end = off + len;
+        while (off < end && !done) {
+            if (boxEnd < 0) {
+                int need = (headerFill < 8 ? 8 : 16) - headerFill;
+                int n = Math.min(need, end - off);
+                System.arraycopy(b, off, header, headerFill, n);
+                headerFill += n;
+                off += n;
+                pos += n;
+
+                if (headerFill == 8) {
+                    long size = Integer.toUnsignedLong(ByteBuffer.wrap(header, 0, 4).getInt());
+                    if (size != 1) startBox(size, 8);
+                } else if (headerFill == 16) {
+                    startBox(ByteBuffer.wrap(header, 8, 8).getLong(), 16);
+                }
+            } else if (moov != null) {
+                int n = Math.min(moov.remaining(), end - off);
+                moov.put(b, off, n);
+                off += n;
+                pos += n;
+                if (!moov.hasRemaining()) done = true;
+            } else {
+                int n = (int) Math.min(boxEnd - pos, end - off);
+                off += n;
+                pos += n;
+                if (pos == boxEnd) {
+                    boxStart = pos;
+                    boxEnd = -1;
+                    headerFill = 0;
+                }
+            }
+        }
+    }
+
+    public VideoMetadataDto result(Mp4BoxParser parser, long fileSize) throws IOException {
+        if (error != null) throw new IOException(error);
+        if (moov == null || moov.hasRemaining()) throw new IOException("No complete moov box in stream");
+        return parser.parseMoov(moov.duplicate().flip(), fileSize, headerBytes);
+    }
+
+    private void startBox(long size, int headerSize) {
+        String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+
+        if (size == 0) {
+            // box runs to the end of the stream - fine for mdat, fatal for anything we need
+            if (!type.equals("mdat")) {
+                fail("Unbounded '" + type + "' box");
+                return;
+            }
+            mdatSeen = true;
+            boxEnd = Long.MAX_VALUE;
+            return;
+        }
+        if (size < headerSize) {
+            fail("Invalid box '" + type + "' at offset " + boxStart);
+            return;
+        }
+
+        boxEnd = boxStart + size;
+
+        switch (type) {
+            case "moov" -> {
+                if (size - headerSize > Mp4BoxParser.MAX_MOOV_SIZE) {
+                    fail("moov box too large: " + size);
+                    return;
+                }
+                moov = ByteBuffer.allocate((int) (size - headerSize));
+                headerBytes = mdatSeen ? null : boxEnd;
+                if (!moov.hasRemaining()) done = true;
+            }
+            case "mdat" -> mdatSeen = true;
+            case "moof" -> fail("Fragmented MP4 is not supported");
+            default -> { }
+        }
+    }
+
+    private void fail(String message) {
+        error = message;
+        done = true;
+    }
+}
@@ -0,0 +1,225 @@
+package com.jutjubic.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Incremental multipart/form-data reader over a raw request body.
+ *
+ * Parts are handed out one at a time as bounded InputStreams that end at the
+ * next boundary, so a file part can be copied straight to its destination
+ * while it is still arriving - nothing is spooled by the servlet container.
+ * Each part's stream must be consumed (or is drained) before the next part.
+ */
+public final class MultipartStreamReader {
+
+    public record PartHeaders(String name, String fileName, String contentType) {
+        public boolean isFile() {
+            return fileName != null;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;   // CRLF "--" boundary
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int head;
+    private int tail;
+    private boolean eof;
+
+    private PartStream current;
+    private boolean finished;
+
+    public MultipartStreamReader(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        // the first boundary has no leading CRLF - pretend it does so every delimiter looks the same
+        buf[0] = '\r';
+        buf[1] = '\n';
+        tail = 2;
+    }
+
+    /**
+     * Boundary parameter of a multipart Content-Type, or null.
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            String p = param.trim();
+            if (p.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+                String b = p.substring("boundary=".length()).trim();
+                if (b.length() >= 2 && b.startsWith("\"") && b.endsWith("\"")) {
+                    b = b.substring(1, b.length() - 1);
+                }
+                return b.isEmpty() ? null : b;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Advances to the next part and returns its headers, or null after the closing boundary.
+     */
+    public PartHeaders nextPart() throws IOException {
+        if (finished) return null;
+
+        if (current != null) {
+            current.drain();
+        } else {
+            // preamble before the first boundary
+            new PartStream().drain();
+        }
+
+        // after a delimiter: "--" closes the body, CRLF starts a part
+        fill(2);
+        if (tail - head < 2) throw new IOException("Unexpected end of multipart body");
+        if (buf[head] == '-' && buf[head + 1] == '-') {
+            finished = true;
+            current = null;
+            return null;
+        }
+        String rest = readLine(); // transport padding + CRLF after the boundary
+        if (!rest.isBlank()) throw new IOException("Malformed multipart boundary line");
+
+        String disposition = null;
+        String contentType = null;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (key.equals("content-disposition")) disposition = value;
+            if (key.equals("content-type")) contentType = value;
+        }
+
+        Map<String, String> params = dispositionParams(disposition);
+        current = new PartStream();
+        return new PartHeaders(params.get("name"), params.get("filename"), contentType);
+    }
+
+    /**
+     * Body of the part returned by the last {@link #nextPart()}.
+     */
+    public InputStream partStream() {
+        if (current == null) throw new IllegalStateException("No current part");
+        return current;
+    }
+
+    private final class PartStream extends InputStream {
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (ended) return -1;
+            if (len == 0) return 0;
+
+            while (true) {
+                int match = indexOfDelimiter();
+                if (match == head) {
+                    head += delimiter.length;
+                    ended = true;
+                    return -1;
+                }
+                int available = match >= 0
+                        ? match - head
+                        // keep a possible partial delimiter at the end of the buffer
+                        : tail - head - (delimiter.length - 1);
+                if (available > 0) {
+                    int n = Math.min(len, available);
+                    System.arraycopy(buf, head, b, off, n);
+                    head += n;
+                    return n;
+                }
+                if (eof) throw new IOException("Unexpected end of multipart body");
+                fill(delimiter.length + 1);
+            }
+        }
+
+        void drain() throws IOException {
+            byte[] skip = new byte[8192];
+            while (read(skip, 0, skip.length) != -1) { /* discard */ }
+        }
+    }
+
+    private int indexOfDelimiter() {
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buf[i + j] != delimiter[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads until at least {@code min} bytes are buffered (or EOF), compacting first.
+     */
+    private void fill(int min) throws IOException {
+        if (head > 0) {
+            System.arraycopy(buf, head, buf, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        while (tail - head < min && !eof) {
+            int n = in.read(buf, tail, buf.length - tail);
+            if (n == -1) {
+                eof = true;
+            } else {
+                tail += n;
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (head >= tail) {
+                fill(1);
+                if (head >= tail) throw new IOException("Unexpected end of multipart headers");
+            }
+            byte c = buf[head++];
+            if (c == '\n') {
+                int len = sb.length();
+                if (len > 0 && sb.charAt(len - 1) == '\r') sb.setLength(len - 1);
+                return sb.toString();
+            }
+            sb.append((char) (c & 0xFF));
+            if (sb.length() > MAX_HEADER_LINE) throw new IOException("Multipart header line too long");
+        }
+    }
+
+    private static Map<String, String> dispositionParams(String disposition) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (disposition == null) return params;
+        for (String piece : disposition.split(";")) {
+            int eq = piece.indexOf('=');
+            if (eq < 0) continue;
+            String key = piece.substring(0, eq).trim().toLowerCase(Locale.ROOT);
+            String value = piece.substring(eq + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            // header bytes were read as ISO-8859-1; browsers send UTF-8 file names
+            params.put(key, new String(value.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,59 @@
+package com.jutjubic.service;
+
+import com.jutjubic.repository.PostRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Repairs drift in the denormalized posts.like_count / comment_count columns
+ * (rows changed outside the app, a failed write path). Posts are recounted in
+ * id ranges of {@link #BATCH_SIZE}, each range in its own short transaction, and
+ * only rows whose stored counter is wrong are written.
+ *
+ * Each range's post rows are locked before the recount. Under READ COMMITTED an
+ * UPDATE that waits for a concurrent like still counts post_likes as of its own
+ * start, so recounting without the lock could overwrite that like's increment.
+ * The lock waits for in-flight likes and comments in the range to commit, and the
+ * recount that follows is a new statement that sees them.
+ */
+@Service
+public class PostCounterService {
+
+    static final int BATCH_SIZE = 5_000;
+
+    private final PostRepository postRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public PostCounterService(PostRepository postRepository, TransactionTemplate transactionTemplate) {
+        this.postRepository = postRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(cron = "${app.counters.reconcile-cron:0 30 3 * * ?}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * @return number of like and comment counters corrected
+     */
+    public int reconcile() {
+        long maxId = postRepository.findMaxId().orElse(0L);
+        int repaired = 0;
+        for (long from = 1; from <= maxId; from += BATCH_SIZE) {
+            repaired += reconcileRange(from, from + BATCH_SIZE - 1);
+        }
+        if (repaired > 0) {
+            System.out.println("[Counters] Reconciled " + repaired + " like/comment counter(s) on posts up to id " + maxId);
+        }
+        return repaired;
+    }
+
+    private int reconcileRange(long from, long to) {
+        return transactionTemplate.execute(status -> {
+            postRepository.lockRange(from, to);
+            return postRepository.reconcileLikeCounts(from, to) + postRepository.reconcileCommentCounts(from, to);
+        });
+    }
+}
@@ -0,0 +1,210 @@
+package com.jutjubic.service;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of post ids, laid out like a Roaring bitmap: ids are split
+ * into the high bits (id >>> 16, kept in a sorted key array) and a 16-bit low
+ * part stored in a container per key. A container is a sorted char[] while it
+ * holds at most {@link #ARRAY_MAX} values (2 bytes each) and a fixed 8 KB bitset
+ * above that, so sparse and dense ranges of ids both stay small.
+ *
+ * Not thread-safe; callers guard each bitmap.
+ */
+public final class PostIdBitmap {
+
+    static final int ARRAY_MAX = 4096;
+    private static final int BITSET_WORDS = (1 << 16) / Long.SIZE;
+
+    private long[] keys = new long[0];
+    private Container[] containers = new Container[0];
+    private int size;
+
+    public boolean contains(long id) {
+        int i = Arrays.binarySearch(keys, 0, size, id >>> 16);
+        return i >= 0 && containers[i].contains((char) id);
+    }
+
+    /**
+     * @return true if the id was not in the set
+     */
+    public boolean add(long id) {
+        long key = id >>> 16;
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i < 0) {
+            i = -i - 1;
+            insertContainer(i, key, new ArrayContainer());
+        }
+        Container c = containers[i];
+        int before = c.cardinality();
+        containers[i] = c.add((char) id);
+        return containers[i].cardinality() > before;
+    }
+
+    /**
+     * @return true if the id was in the set
+     */
+    public boolean remove(long id) {
+        int i = Arrays.binarySearch(keys, 0, size, id >>> 16);
+        if (i < 0) return false;
+        Container c = containers[i];
+        int before = c.cardinality();
+        Container after = c.remove((char) id);
+        if (after.cardinality() == 0) {
+            removeContainer(i);
+        } else {
+            containers[i] = after;
+        }
+        return after.cardinality() < before;
+    }
+
+    public long cardinality() {
+        long n = 0;
+        for (int i = 0; i < size; i++) n += containers[i].cardinality();
+        return n;
+    }
+
+    public long sizeInBytes() {
+        long bytes = (long) keys.length * Long.BYTES + (long) containers.length * 4;
+        for (int i = 0; i < size; i++) bytes += containers[i].sizeInBytes();
+        return bytes;
+    }
+
+    private void insertContainer(int i, long key, Container c) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = c;
+        size++;
+    }
+
+    private void removeContainer(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    // add/remove return the container to keep - converted when it crosses ARRAY_MAX
+    private interface Container {
+        boolean contains(char low);
+
+        Container add(char low);
+
+        Container remove(char low);
+
+        int cardinality();
+
+        long sizeInBytes();
+    }
+
+    private static final class ArrayContainer implements Container {
+        private char[] values = new char[4];
+        private int cardinality;
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        public Container add(char low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0) return this;
+            if (cardinality == ARRAY_MAX) {
+                return toBitset().add(low);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public Container remove(char low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i < 0) return this;
+            System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16L + values.length * 2L;
+        }
+
+        private BitsetContainer toBitset() {
+            BitsetContainer bitset = new BitsetContainer();
+            for (int i = 0; i < cardinality; i++) bitset.add(values[i]);
+            return bitset;
+        }
+    }
+
+    private static final class BitsetContainer implements Container {
+        private final long[] words = new long[BITSET_WORDS];
+        private int cardinality;
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                words[low >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public long sizeInBytes() {
+            return 16L + words.length * (long) Long.BYTES;
+        }
+
+        private ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[Math.max(4, cardinality)];
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    array.values[array.cardinality++] = (char) (w * Long.SIZE + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return array;
+        }
+    }
+}
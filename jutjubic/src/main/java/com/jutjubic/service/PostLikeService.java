@@ -0,0 +1,171 @@
+package com.jutjubic.service;
+
+import com.jutjubic.dto.LikeStateDto;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Likes as single statements: on PostgreSQL each operation is one data-modifying
+ * CTE that inserts or deletes the post_likes row, moves posts.like_count by what
+ * actually changed and returns the new state - one round-trip including the
+ * user lookup, and concurrent
+ * requests of the same user cannot both insert (ON CONFLICT DO NOTHING) or both
+ * decrement (only the DELETE that removed the row counts). Other databases (H2 in
+ * tests) run the same steps as separate statements in one transaction.
+ *
+ * {@link #like} and {@link #unlike} are idempotent, so a retried request cannot
+ * flip the state back; {@link #toggle} is kept for the old endpoint.
+ */
+@Service
+public class PostLikeService {
+
+    // u resolves the principal; its id comes back so the caller can update the bitmap
+    private static final String LIKE = """
+            WITH u AS (
+                SELECT id FROM users WHERE email_adress = :email
+            ), ins AS (
+                INSERT INTO post_likes (post_id, user_id) SELECT :postId, id FROM u
+                ON CONFLICT DO NOTHING RETURNING post_id
+            ), upd AS (
+                UPDATE posts SET like_count = like_count + 1
+                WHERE id = :postId AND EXISTS (SELECT 1 FROM ins) RETURNING like_count
+            )
+            SELECT (SELECT id FROM u) AS user_id, TRUE AS liked,
+                   COALESCE((SELECT like_count FROM upd), (SELECT like_count FROM posts WHERE id = :postId)) AS likes
+            """;
+
+    private static final String UNLIKE = """
+            WITH u AS (
+                SELECT id FROM users WHERE email_adress = :email
+            ), del AS (
+                DELETE FROM post_likes WHERE post_id = :postId AND user_id = (SELECT id FROM u) RETURNING post_id
+            ), upd AS (
+                UPDATE posts SET like_count = like_count - 1
+                WHERE id = :postId AND EXISTS (SELECT 1 FROM del) RETURNING like_count
+            )
+            SELECT (SELECT id FROM u) AS user_id, FALSE AS liked,
+                   COALESCE((SELECT like_count FROM upd), (SELECT like_count FROM posts WHERE id = :postId)) AS likes
+            """;
+
+    // deletes if liked, otherwise inserts; a concurrent insert of the same like is
+    // absorbed by ON CONFLICT, and either way the like exists unless we deleted it
+    private static final String TOGGLE = """
+            WITH u AS (
+                SELECT id FROM users WHERE email_adress = :email
+            ), del AS (
+                DELETE FROM post_likes WHERE post_id = :postId AND user_id = (SELECT id FROM u) RETURNING post_id
+            ), ins AS (
+                INSERT INTO post_likes (post_id, user_id)
+                SELECT :postId, id FROM u WHERE NOT EXISTS (SELECT 1 FROM del)
+                ON CONFLICT DO NOTHING RETURNING post_id
+            ), upd AS (
+                UPDATE posts SET like_count = like_count + (SELECT COUNT(*) FROM ins) - (SELECT COUNT(*) FROM del)
+                WHERE id = :postId RETURNING like_count
+            )
+            SELECT (SELECT id FROM u) AS user_id, NOT EXISTS (SELECT 1 FROM del) AS liked,
+                   (SELECT like_count FROM upd) AS likes
+            """;
+
+    private record Result(Long userId, LikeStateDto state) {
+    }
+
+    private enum Op { LIKE, UNLIKE, TOGGLE }
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final LikedPostsService likedPostsService;
+    private final DatabaseDialect dialect;
+
+    public PostLikeService(NamedParameterJdbcTemplate jdbc, LikedPostsService likedPostsService,
+                           DatabaseDialect dialect) {
+        this.jdbc = jdbc;
+        this.likedPostsService = likedPostsService;
+        this.dialect = dialect;
+    }
+
+    @Transactional
+    public LikeStateDto like(Long postId, String userEmail) {
+        return apply(Op.LIKE, postId, userEmail);
+    }
+
+    @Transactional
+    public LikeStateDto unlike(Long postId, String userEmail) {
+        return apply(Op.UNLIKE, postId, userEmail);
+    }
+
+    @Transactional
+    public LikeStateDto toggle(Long postId, String userEmail) {
+        return apply(Op.TOGGLE, postId, userEmail);
+    }
+
+    private LikeStateDto apply(Op op, Long postId, String userEmail) {
+        MapSqlParameterSource params = new MapSqlParameterSource("postId", postId).addValue("email", userEmail);
+        Result result;
+        try {
+            result = dialect.isPostgres() ? runStatement(op, params) : runSteps(op, params);
+        } catch (DataIntegrityViolationException e) {
+            // post_likes.post_id references a post that does not exist
+            result = new Result(-1L, null);
+        }
+        if (result.userId() == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+        if (result.state() == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Post not found");
+        }
+
+        likedPostsService.recordLike(result.userId(), postId, result.state().liked());
+        return result.state();
+    }
+
+    private Result runStatement(Op op, MapSqlParameterSource params) {
+        String sql = switch (op) {
+            case LIKE -> LIKE;
+            case UNLIKE -> UNLIKE;
+            case TOGGLE -> TOGGLE;
+        };
+        return jdbc.queryForObject(sql, params, (rs, i) -> {
+            long userId = rs.getLong("user_id");
+            if (rs.wasNull()) return new Result(null, null);
+            long likes = rs.getLong("likes");
+            return new Result(userId, rs.wasNull() ? null : new LikeStateDto(rs.getBoolean("liked"), likes));
+        });
+    }
+
+    private Result runSteps(Op op, MapSqlParameterSource params) {
+        Long userId = likedPostsService.userIdOf((String) params.getValue("email"));
+        if (userId == null) return new Result(null, null);
+        params.addValue("userId", userId);
+
+        boolean liked;
+        int delta = 0;
+        if (op != Op.LIKE && jdbc.update("DELETE FROM post_likes WHERE post_id = :postId AND user_id = :userId", params) > 0) {
+            liked = false;
+            delta = -1;
+        } else if (op != Op.UNLIKE) {
+            liked = true;
+            try {
+                delta = jdbc.update("INSERT INTO post_likes (post_id, user_id) SELECT :postId, :userId WHERE NOT EXISTS "
+                        + "(SELECT 1 FROM post_likes WHERE post_id = :postId AND user_id = :userId)", params);
+            } catch (DuplicateKeyException e) {
+                // a concurrent request of the same user inserted (and counted) the like first
+                delta = 0;
+            }
+        } else {
+            liked = false;
+        }
+        if (delta != 0) {
+            params.addValue("delta", delta);
+            jdbc.update("UPDATE posts SET like_count = like_count + :delta WHERE id = :postId", params);
+        }
+        List<Long> likes = jdbc.queryForList("SELECT like_count FROM posts WHERE id = :postId", params, Long.class);
+        return new Result(userId, likes.isEmpty() ? null : new LikeStateDto(liked, likes.get(0)));
+    }
+}
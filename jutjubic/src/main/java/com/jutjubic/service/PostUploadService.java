@@ -9,10 +9,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
-import com.jutjubic.dto.TranscodeJobMessageDto;
-import java.util.UUID;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
@@ -26,6 +25,9 @@ public class PostUploadService {
     private final TranscodePublisher transcodePublisher;
     private final UploadEventProducer uploadEventProducer;
     private final VideoMetadataService videoMetadataService;
+    private final KeyframeIndexService keyframeIndexService;
+    private final MediaBlobService mediaBlobService;
+    private final RenditionSharingService renditionSharing;
 
     public PostUploadService(
             PostRepository postRepository,
@@ -33,7 +35,10 @@ public class PostUploadService {
             LocalUploadStorageService storage,
             TranscodePublisher transcodePublisher,
             UploadEventProducer uploadEventProducer,
-            VideoMetadataService videoMetadataService
+            VideoMetadataService videoMetadataService,
+            KeyframeIndexService keyframeIndexService,
+            MediaBlobService mediaBlobService,
+            RenditionSharingService renditionSharing
     ) {
         this.postRepository = postRepository;
         this.userRepository = userRepository;
@@ -41,10 +46,17 @@ public class PostUploadService {
         this.transcodePublisher = transcodePublisher;
         this.uploadEventProducer = uploadEventProducer;
         this.videoMetadataService = videoMetadataService;
+        this.keyframeIndexService = keyframeIndexService;
+        this.mediaBlobService = mediaBlobService;
+        this.renditionSharing = renditionSharing;
     }
 
+    /**
+     * Finalizes a resumable upload: the video was already assembled on disk chunk
+     * by chunk, so it is adopted into the temp area instead of being copied again.
+     */
     @Transactional
-    public Post createPost(
+    public Post createPostFromUpload(
             String authorEmail,
             String title,
             String description,
@@ -53,31 +65,96 @@ public class PostUploadService {
             Double locationLon,
             Instant scheduledAt,
             MultipartFile thumbnail,
-            MultipartFile video
+            Path assembledVideo
     ) throws IOException {
 
         if (title == null || title.isBlank()) {
             throw new IllegalArgumentException("Title is required");
         }
-        if (video == null || video.isEmpty()) {
-            throw new IllegalArgumentException("Video file is required");
-        }
-        if (!video.getOriginalFilename().toLowerCase().endsWith(".mp4")) {
-            throw new IllegalArgumentException("Video must be mp4");
-        }
         if (scheduledAt != null && scheduledAt.isBefore(Instant.now())) {
             throw new IllegalArgumentException("Scheduled time must be in the future");
         }
 
         LocalUploadStorageService.TempFiles temp;
         try {
-            temp = storage.saveToTemp(video, thumbnail);
+            temp = storage.adoptTemp(assembledVideo, thumbnail);
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Upload failed: " + e.getMessage(), e);
         }
 
+        return createFromTemp(authorEmail, title, description, tags, locationLat, locationLon, scheduledAt, temp,
+                videoMetadataService.extractDuration(temp.tempVideo()), null);
+    }
+
+    /**
+     * Streaming multipart upload: the files are already in the temp area and the
+     * duration and digest came out of the same pass that wrote them, so nothing is read again.
+     */
+    @Transactional
+    public Post createPostFromStream(
+            String authorEmail,
+            String title,
+            String description,
+            String tags,
+            Double locationLat,
+            Double locationLon,
+            Instant scheduledAt,
+            LocalUploadStorageService.TempFiles temp,
+            Double durationSeconds,
+            String videoSha256
+    ) {
+        try {
+            if (title == null || title.isBlank()) {
+                throw new IllegalArgumentException("Title is required");
+            }
+            if (scheduledAt != null && scheduledAt.isBefore(Instant.now())) {
+                throw new IllegalArgumentException("Scheduled time must be in the future");
+            }
+        } catch (IllegalArgumentException e) {
+            storage.deleteIfExists(temp.tempVideo());
+            storage.deleteIfExists(temp.tempThumb());
+            throw e;
+        }
+
+        return createFromTemp(authorEmail, title, description, tags, locationLat, locationLon, scheduledAt, temp,
+                durationSeconds, videoSha256);
+    }
+
+    /**
+     * Files are stored content-addressed: final names are the SHA-256 of the bytes,
+     * so a re-upload of an existing video or thumbnail adds a blob reference instead
+     * of a second copy, and reuses the renditions already transcoded from it.
+     * videoSha256 may be null when the upload path did not hash while writing.
+     */
+    private Post createFromTemp(
+            String authorEmail,
+            String title,
+            String description,
+            String tags,
+            Double locationLat,
+            Double locationLon,
+            Instant scheduledAt,
+            LocalUploadStorageService.TempFiles uploaded,
+            Double durationSeconds,
+            String videoSha256
+    ) {
+        LocalUploadStorageService.TempFiles temp = uploaded;
         try {
-            Double durationSeconds = videoMetadataService.extractDuration(temp.tempVideo());
+            String videoDigest;
+            try {
+                temp = mediaBlobService.contentAddress(uploaded, videoSha256);
+                videoDigest = temp.videoName().substring(0, temp.videoName().length() - ".mp4".length());
+                mediaBlobService.acquire(videoDigest, MediaBlobService.KIND_VIDEO,
+                        temp.videoName(), Files.size(temp.tempVideo()));
+                mediaBlobService.acquire(temp.thumbName().substring(0, temp.thumbName().lastIndexOf('.')),
+                        MediaBlobService.KIND_THUMBNAIL, temp.thumbName(), Files.size(temp.tempThumb()));
+            } catch (IOException e) {
+                throw new RuntimeException("Upload failed: " + e.getMessage(), e);
+            }
+
+
             if (durationSeconds != null) {
                 System.out.println("Extracted video duration: " + durationSeconds + " seconds");
             } else {
@@ -102,7 +179,9 @@ public class PostUploadService {
 
             saved.setVideoUrl("/media/videos/" + videoFileName);
             saved.setThumbnailUrl("/media/thumbs/" + thumbFileName);
+            saved.setVideoSha256(videoDigest);
 
+            LocalUploadStorageService.TempFiles finalTemp = temp;
             Post finalSaved = postRepository.save(saved);
 
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -110,27 +189,32 @@ public class PostUploadService {
                 public void afterCommit() {
                     System.out.println("Transaction committed successfully - moving files to final location");
                     try {
-                        var finals = storage.moveToFinal(temp);
+                        var finals = storage.moveToFinal(finalTemp);
                         System.out.println("Files moved successfully: " + finals.videoPath());
 
-                        String jobId = UUID.randomUUID().toString();
+                        keyframeIndexService.build(finals.videoPath());
+
                         String inputAbsPath = finals.videoPath().toAbsolutePath().toString();
 
-                        transcodePublisher.publish(new TranscodeJobMessageDto(
-                                jobId,
-                                finalSaved.getId(),
-                                inputAbsPath,
-                                "mp4_720p"
-                        ));
+                        if (renditionSharing.linkExisting(finalSaved.getId(), videoDigest)) {
+                            System.out.println("TRANSCODE SKIPPED: postId=" + finalSaved.getId()
+                                    + " identical source already transcoded");
+                        } else if (!mediaBlobService.claimTranscode(videoDigest)) {
+                            System.out.println("TRANSCODE SKIPPED: postId=" + finalSaved.getId()
+                                    + " identical source is being transcoded, renditions are linked as they finish");
+                        } else {
+                            int jobs = transcodePublisher.publishRenditions(finalSaved.getId(), inputAbsPath);
 
-                        System.out.println("PUBLISHED TRANSCODE JOB: postId=" + finalSaved.getId() + " input=" + inputAbsPath);
+                            System.out.println("PUBLISHED TRANSCODE JOBS: postId=" + finalSaved.getId()
+                                    + " renditions=" + jobs + " input=" + inputAbsPath);
+                        }
 
                         long fileSizeBytes = finals.videoPath().toFile().length();
                         uploadEventProducer.sendUploadEvent(finalSaved, fileSizeBytes);
                         System.out.println("PUBLISHED UPLOAD EVENT: postId=" + finalSaved.getId() + " fileSize=" + fileSizeBytes);
 
-                        storage.deleteIfExists(temp.tempVideo());
-                        storage.deleteIfExists(temp.tempThumb());
+                        storage.deleteIfExists(finalTemp.tempVideo());
+                        storage.deleteIfExists(finalTemp.tempThumb());
 
                     } catch (IOException e) {
                         System.err.println("ERROR: Failed to move files after commit: " + e.getMessage());
@@ -143,8 +227,8 @@ public class PostUploadService {
                 public void afterCompletion(int status) {
                     if (status == STATUS_ROLLED_BACK) {
                         System.out.println(" Transaction rolled back - cleaning up temp files");
-                        storage.deleteIfExists(temp.tempVideo());
-                        storage.deleteIfExists(temp.tempThumb());
+                        storage.deleteIfExists(finalTemp.tempVideo());
+                        storage.deleteIfExists(finalTemp.tempThumb());
                     }
                 }
             });
@@ -0,0 +1,171 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.ViewCounterProps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time-rotating Bloom filter of recent (viewer, video) pairs, used to drop repeat
+ * views inside the dedup window without touching the DB.
+ *
+ * The filter is a ring of generations; new pairs go into the newest one, and the
+ * oldest is discarded every window / (generations - 1), so a pair is remembered
+ * for at least the window and at most one rotation longer. Each generation is
+ * sized up front from the expected views per window and the target false
+ * positive rate, which bounds memory no matter how much traffic arrives.
+ */
+@Service
+public class RecentViewerFilter {
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final long rotationMs;
+    private final int generationCount;
+    private final int bitsPerGeneration;
+    private final int hashes;
+
+    private final Counter suppressed;
+    private final Counter accepted;
+
+    // [0] is the newest generation
+    private volatile Generation[] generations;
+    private volatile long rotatedAt;
+
+    public RecentViewerFilter(ViewCounterProps props, Clock clock, MeterRegistry registry) {
+        ViewCounterProps.Dedup dedup = props.getDedup();
+        this.enabled = dedup.isEnabled();
+        this.clock = clock;
+        this.generationCount = Math.max(2, dedup.getGenerations());
+        this.rotationMs = Math.max(1, dedup.getWindow().toMillis() / (generationCount - 1));
+
+        // the pairs of one window are spread over generations - 1 rotations, and a
+        // lookup can hit any generation, so each one gets a share of the error budget
+        long perGeneration = Math.max(1, dedup.getExpectedViewsPerWindow() / (generationCount - 1));
+        double p = dedup.getFalsePositiveRate() / generationCount;
+        long bits = (long) Math.ceil(-perGeneration * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bitsPerGeneration = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+        this.hashes = Math.max(1, (int) Math.round((double) bitsPerGeneration / perGeneration * Math.log(2)));
+
+        Generation[] initial = new Generation[enabled ? generationCount : 0];
+        for (int i = 0; i < initial.length; i++) initial[i] = new Generation(bitsPerGeneration);
+        this.generations = initial;
+        this.rotatedAt = clock.millis();
+
+        this.suppressed = registry.counter("views_dedup_suppressed_total");
+        this.accepted = registry.counter("views_dedup_accepted_total");
+        registry.gauge("views_dedup_filter_bytes", this, RecentViewerFilter::memoryBytes);
+        registry.gauge("views_dedup_false_positive_rate", this, RecentViewerFilter::estimatedFalsePositiveRate);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the view and tells whether the same viewer already viewed the video
+     * within the window. May wrongly answer true (at the configured rate), never
+     * wrongly false.
+     */
+    public boolean seenRecently(Long videoId, String viewerKey) {
+        if (!enabled) return false;
+        rotateIfDue();
+
+        long h1 = Hashing.mix(HyperLogLog.hash(viewerKey) ^ Hashing.mix(videoId));
+        long h2 = Hashing.mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+
+        Generation[] gens = generations;
+        boolean seen = false;
+        for (int i = 1; i < gens.length && !seen; i++) {
+            seen = gens[i].contains(h1, h2);
+        }
+        // a repeat is not re-added, so the window runs from the counted view;
+        // setting the bits tells whether they were all set already, so two
+        // concurrent identical views are not both counted
+        if (!seen) {
+            seen = !gens[0].add(h1, h2);
+        }
+
+        (seen ? suppressed : accepted).increment();
+        return seen;
+    }
+
+    public long memoryBytes() {
+        return (long) generations.length * bitsPerGeneration / 8;
+    }
+
+    /**
+     * Chance that a pair never seen is reported as seen, from the current fill of every generation.
+     */
+    public double estimatedFalsePositiveRate() {
+        double allMiss = 1.0;
+        for (Generation g : generations) {
+            double fill = (double) g.setBits.get() / bitsPerGeneration;
+            allMiss *= 1.0 - Math.pow(fill, hashes);
+        }
+        return 1.0 - allMiss;
+    }
+
+    private void rotateIfDue() {
+        if (clock.millis() - rotatedAt < rotationMs) return;
+        synchronized (this) {
+            long now = clock.millis();
+            long due = (now - rotatedAt) / rotationMs;
+            if (due <= 0) return;
+
+            Generation[] next = new Generation[generationCount];
+            for (int i = 0; i < generationCount; i++) {
+                next[i] = i < due ? new Generation(bitsPerGeneration) : generations[(int) (i - due)];
+            }
+            generations = next;
+            rotatedAt += due * rotationMs;
+        }
+    }
+
+    private final class Generation {
+        private final AtomicLongArray words;
+        private final AtomicLong setBits = new AtomicLong();
+
+        Generation(int bits) {
+            this.words = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        boolean contains(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(h1, h2, i);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return true if at least one bit was newly set
+         */
+        boolean add(long h1, long h2) {
+            boolean changed = false;
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(h1, h2, i);
+                long mask = 1L << bit;
+                int word = bit >>> 6;
+                long current;
+                do {
+                    current = words.get(word);
+                    if ((current & mask) != 0) break;
+                } while (!words.compareAndSet(word, current, current | mask));
+                if ((current & mask) == 0) {
+                    setBits.incrementAndGet();
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        private int index(long h1, long h2, int i) {
+            return (int) Math.floorMod(h1 + i * h2, (long) bitsPerGeneration);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.TranscodingProps;
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.PostRendition;
+import com.jutjubic.repository.PostRenditionRepository;
+import com.jutjubic.repository.PostRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Posts uploaded from the same source file (same video digest) share one set of
+ * transcoded outputs: the files are keyed by digest + rendition, so a duplicate
+ * only needs its own post_renditions rows pointing at them.
+ */
+@Service
+public class RenditionSharingService {
+
+    private final PostRepository postRepo;
+    private final PostRenditionRepository renditionRepo;
+    private final TranscodingProps props;
+
+    public RenditionSharingService(PostRepository postRepo, PostRenditionRepository renditionRepo,
+                                   TranscodingProps props) {
+        this.postRepo = postRepo;
+        this.renditionRepo = renditionRepo;
+        this.props = props;
+    }
+
+    /**
+     * Links every rendition already produced for the same source to the post.
+     *
+     * @return true when all configured renditions were available, i.e. no transcoding is needed
+     */
+    @Transactional
+    public boolean linkExisting(Long postId, String digest) {
+        if (digest == null) return false;
+
+        Map<String, PostRendition> byName = new LinkedHashMap<>();
+        for (PostRendition r : renditionRepo.findSharedRenditions(digest, postId)) {
+            byName.putIfAbsent(r.getRendition(), r);
+        }
+        for (PostRendition r : byName.values()) {
+            link(postId, r);
+        }
+
+        boolean complete = props.getRenditions().stream().allMatch(r -> byName.containsKey(r.getName()));
+        if (!byName.isEmpty()) {
+            System.out.println("DEDUP: postId=" + postId + " reused renditions " + byName.keySet()
+                    + (complete ? " - transcoding skipped" : ""));
+        }
+        return complete;
+    }
+
+    /**
+     * A rendition of the same source that another post already has, if any.
+     */
+    public Optional<PostRendition> findShared(Long postId, String digest, String rendition) {
+        if (digest == null) return Optional.empty();
+        return renditionRepo.findSharedRenditions(digest, postId).stream()
+                .filter(r -> r.getRendition().equals(rendition))
+                .findFirst();
+    }
+
+    /**
+     * A rendition just finished for one post - hand it to duplicates uploaded while it was transcoding.
+     */
+    @Transactional
+    public void propagate(Long postId, String digest, PostRendition finished) {
+        if (digest == null) return;
+        for (Post other : postRepo.findByVideoSha256AndIdNot(digest, postId)) {
+            if (renditionRepo.findByPostIdAndRendition(other.getId(), finished.getRendition()).isEmpty()) {
+                link(other.getId(), finished);
+                System.out.println("DEDUP: rendition " + finished.getRendition() + " of postId=" + postId
+                        + " linked to postId=" + other.getId());
+            }
+        }
+    }
+
+    /**
+     * Copies the rendition row onto the post and points the post's playback URLs at the shared files.
+     */
+    @Transactional
+    public void link(Long postId, PostRendition source) {
+        PostRendition r = renditionRepo.findByPostIdAndRendition(postId, source.getRendition())
+                .orElseGet(PostRendition::new);
+        r.setPostId(postId);
+        r.setRendition(source.getRendition());
+        r.setHeight(source.getHeight());
+        r.setBandwidth(source.getBandwidth());
+        r.setAverageBandwidth(source.getAverageBandwidth());
+        r.setVideoUrl(source.getVideoUrl());
+        r.setPlaylistUrl(source.getPlaylistUrl());
+        renditionRepo.save(r);
+
+        Post p = postRepo.findById(postId).orElseThrow();
+        if (source.getRendition().equals(props.getDefaultRendition())) {
+            p.setVideoUrl(source.getVideoUrl());
+        }
+        p.setHlsMasterUrl(masterUrl(source.getPlaylistUrl()));
+        postRepo.save(p);
+    }
+
+    // .../hls/{digest}/{rendition}/index.m3u8 -> .../hls/{digest}/master.m3u8
+    private static String masterUrl(String playlistUrl) {
+        String renditionDir = playlistUrl.substring(0, playlistUrl.lastIndexOf('/'));
+        return renditionDir.substring(0, renditionDir.lastIndexOf('/') + 1) + HlsPackagingService.MASTER_PLAYLIST;
+    }
+}
@@ -0,0 +1,304 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.UploadProperties;
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.UploadSession;
+import com.jutjubic.domain.UploadSessionChunk;
+import com.jutjubic.dto.CreateUploadSessionRequestDto;
+import com.jutjubic.dto.UploadSessionDto;
+import com.jutjubic.repository.UploadSessionChunkRepository;
+import com.jutjubic.repository.UploadSessionRepository;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resumable upload protocol:
+ *  1. create a session (file name + total size) -> uploadId, chunkSize
+ *  2. PUT chunks at offset = index * chunkSize with their SHA-256, in any order / in parallel
+ *  3. query the session for receivedOffset / missingChunks after a disconnect
+ *  4. complete with the post metadata + thumbnail -> the usual temp/final/transcode flow
+ *
+ * Every chunk is an independent short request written in place into one
+ * preallocated file, so a dropped connection only costs the chunk in flight.
+ */
+@Service
+public class ResumableUploadService {
+
+    private static final String OPEN = "OPEN";
+    private static final String COMPLETED = "COMPLETED";
+
+    private final UploadSessionRepository sessionRepo;
+    private final UploadSessionChunkRepository chunkRepo;
+    private final LocalUploadStorageService storage;
+    private final PostUploadService postUploadService;
+    private final UploadProperties props;
+
+    public ResumableUploadService(
+            UploadSessionRepository sessionRepo,
+            UploadSessionChunkRepository chunkRepo,
+            LocalUploadStorageService storage,
+            PostUploadService postUploadService,
+            UploadProperties props
+    ) {
+        this.sessionRepo = sessionRepo;
+        this.chunkRepo = chunkRepo;
+        this.storage = storage;
+        this.postUploadService = postUploadService;
+        this.props = props;
+    }
+
+    @Transactional
+    public UploadSessionDto create(String ownerEmail, CreateUploadSessionRequestDto req) throws IOException {
+        if (req == null || req.fileName() == null || !req.fileName().toLowerCase().endsWith(".mp4")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Video must be mp4");
+        }
+        if (req.contentType() != null && !req.contentType().equalsIgnoreCase("video/mp4")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Video must be video/mp4");
+        }
+        if (req.size() == null || req.size() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Video size is required");
+        }
+        if (req.size() > props.getMaxVideoSizeBytes()) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Video max size is " + props.getMaxVideoSizeBytes() + " bytes");
+        }
+
+        int chunkSize = props.getChunkSizeBytes();
+
+        UploadSession s = new UploadSession();
+        s.setId(UUID.randomUUID().toString());
+        s.setOwnerEmail(ownerEmail);
+        s.setFileName(req.fileName());
+        s.setTotalSize(req.size());
+        s.setChunkSize(chunkSize);
+        s.setTotalChunks((int) ((req.size() + chunkSize - 1) / chunkSize));
+        s.setStatus(OPEN);
+        sessionRepo.save(s);
+
+        try (FileChannel ch = FileChannel.open(storage.uploadSessionFile(s.getId()),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // sparse file of the final size - chunks are written at their own offsets
+            ch.write(ByteBuffer.allocate(1), req.size() - 1);
+        }
+
+        System.out.println("UPLOAD SESSION CREATED: id=" + s.getId() + " size=" + req.size()
+                + " chunks=" + s.getTotalChunks());
+        return toDto(s);
+    }
+
+    public UploadSessionDto status(String ownerEmail, String uploadId) {
+        return toDto(requireOwned(ownerEmail, uploadId));
+    }
+
+    /**
+     * Streams one chunk from the request body straight into its slot of the
+     * session file while hashing it. The chunk is only recorded as received once
+     * its length and SHA-256 match and the bytes are forced to disk.
+     * Re-sending a chunk that is already recorded is a no-op.
+     */
+    public UploadSessionDto writeChunk(String ownerEmail, String uploadId, long offset,
+                                       String sha256Hex, InputStream body) throws IOException {
+        UploadSession s = requireOwned(ownerEmail, uploadId);
+        if (!OPEN.equals(s.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload is already completed");
+        }
+        if (sha256Hex == null || sha256Hex.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk checksum is required");
+        }
+        if (offset < 0 || offset >= s.getTotalSize() || offset % s.getChunkSize() != 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Offset must be a multiple of " + s.getChunkSize() + " within the file");
+        }
+
+        int index = (int) (offset / s.getChunkSize());
+        if (chunkRepo.existsBySessionIdAndChunkIndex(uploadId, index)) {
+            return toDto(s);
+        }
+
+        long expected = Math.min(s.getChunkSize(), s.getTotalSize() - offset);
+        MessageDigest digest = sha256();
+        long written = 0;
+
+        try (FileChannel ch = FileChannel.open(storage.uploadSessionFile(uploadId), StandardOpenOption.WRITE)) {
+            byte[] buf = new byte[64 * 1024];
+            int r;
+            while ((r = body.read(buf)) != -1) {
+                if (written + r > expected) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Chunk is larger than " + expected + " bytes");
+                }
+                digest.update(buf, 0, r);
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, r);
+                while (bb.hasRemaining()) {
+                    ch.write(bb, offset + written + (r - bb.remaining()));
+                }
+                written += r;
+            }
+            if (written != expected) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Chunk length " + written + " != expected " + expected);
+            }
+            String actual = HexFormat.of().formatHex(digest.digest());
+            if (!actual.equalsIgnoreCase(sha256Hex.trim())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk checksum mismatch");
+            }
+            ch.force(false);
+        }
+
+        try {
+            UploadSessionChunk chunk = new UploadSessionChunk();
+            chunk.setSessionId(uploadId);
+            chunk.setChunkIndex(index);
+            chunk.setSha256(sha256Hex.trim().toLowerCase());
+            chunkRepo.saveAndFlush(chunk);
+        } catch (DataIntegrityViolationException e) {
+            // same chunk finished concurrently - identical bytes, nothing to do
+        }
+
+        s.setUpdatedAt(Instant.now());
+        sessionRepo.save(s);
+        return toDto(s);
+    }
+
+    /**
+     * All chunks present -> hand the assembled file to PostUploadService, which runs
+     * the same DB record / move-to-final / transcode publishing as a single-request upload.
+     * The session row stays locked until the post is committed, so a second complete of
+     * the same upload waits for the first and then finds the session COMPLETED.
+     */
+    @Transactional
+    public Post complete(
+            String ownerEmail,
+            String uploadId,
+            String title,
+            String description,
+            String tags,
+            Double locationLat,
+            Double locationLon,
+            Instant scheduledAt,
+            MultipartFile thumbnail
+    ) throws IOException {
+        UploadSession s = owned(ownerEmail, sessionRepo.findForUpdate(uploadId));
+        if (!OPEN.equals(s.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload is already completed");
+        }
+
+        long received = chunkRepo.countBySessionId(uploadId);
+        if (received < s.getTotalChunks()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Upload incomplete: " + received + "/" + s.getTotalChunks() + " chunks received");
+        }
+
+        Path assembled = storage.uploadSessionFile(uploadId);
+        if (!Files.exists(assembled) || Files.size(assembled) != s.getTotalSize()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Assembled upload has unexpected size");
+        }
+
+        Post post = postUploadService.createPostFromUpload(
+                ownerEmail, title, description, tags, locationLat, locationLon, scheduledAt, thumbnail, assembled
+        );
+
+        s.setStatus(COMPLETED);
+        s.setPostId(post.getId());
+        s.setUpdatedAt(Instant.now());
+        sessionRepo.save(s);
+        chunkRepo.deleteBySessionId(uploadId);
+
+        System.out.println("UPLOAD SESSION COMPLETED: id=" + uploadId + " postId=" + post.getId());
+        return post;
+    }
+
+    /**
+     * Abandoned sessions: drop the partial file and the chunk bookkeeping.
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000, initialDelay = 10 * 60 * 1000)
+    @Transactional
+    public void expireAbandonedSessions() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(props.getSessionTtlHours()));
+        for (UploadSession s : sessionRepo.findByStatusAndUpdatedAtBefore(OPEN, cutoff)) {
+            try {
+                storage.deleteIfExists(storage.uploadSessionFile(s.getId()));
+            } catch (IOException ignored) {}
+            chunkRepo.deleteBySessionId(s.getId());
+            sessionRepo.delete(s);
+            System.out.println("UPLOAD SESSION EXPIRED: id=" + s.getId());
+        }
+    }
+
+    private UploadSession requireOwned(String ownerEmail, String uploadId) {
+        return owned(ownerEmail, sessionRepo.findById(uploadId));
+    }
+
+    private static UploadSession owned(String ownerEmail, Optional<UploadSession> found) {
+        UploadSession s = found
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found"));
+        if (!s.getOwnerEmail().equals(ownerEmail)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        return s;
+    }
+
+    private UploadSessionDto toDto(UploadSession s) {
+        List<Integer> received = OPEN.equals(s.getStatus())
+                ? chunkRepo.findReceivedIndexes(s.getId())
+                : List.of();
+
+        List<Integer> missing = new ArrayList<>();
+        int contiguous = -1;
+        int next = 0;
+        for (int idx : received) {
+            while (next < idx) missing.add(next++);
+            if (contiguous == next - 1) contiguous = next;
+            next = idx + 1;
+        }
+        if (OPEN.equals(s.getStatus())) {
+            while (next < s.getTotalChunks()) missing.add(next++);
+        }
+
+        long receivedOffset = COMPLETED.equals(s.getStatus())
+                ? s.getTotalSize()
+                : Math.min(s.getTotalSize(), (long) (contiguous + 1) * s.getChunkSize());
+
+        return new UploadSessionDto(
+                s.getId(),
+                s.getTotalSize(),
+                s.getChunkSize(),
+                s.getTotalChunks(),
+                receivedOffset,
+                COMPLETED.equals(s.getStatus()) ? s.getTotalChunks() : received.size(),
+                missing,
+                s.getStatus(),
+                s.getPostId()
+        );
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
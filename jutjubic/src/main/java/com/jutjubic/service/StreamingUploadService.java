@@ -0,0 +1,194 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.UploadProperties;
+import com.jutjubic.dto.VideoMetadataDto;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Single-pass ingestion of a multipart post upload.
+ *
+ * The request body is parsed as it arrives (no container spooling) and the
+ * video part is written directly into its tmp/*.part file. The same loop
+ * counts the bytes, updates a SHA-256 digest and feeds the MP4 box scanner,
+ * so size, checksum and metadata are ready when the last byte is written.
+ */
+@Service
+public class StreamingUploadService {
+
+    public record IngestedUpload(
+            Map<String, String> fields,
+            LocalUploadStorageService.TempFiles temp,
+            long videoSize,
+            String videoSha256,
+            VideoMetadataDto metadata
+    ) {}
+
+    private static final long MAX_THUMB_BYTES = 10L * 1024 * 1024;
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+    private static final int COPY_BUFFER = 256 * 1024;
+
+    private final LocalUploadStorageService storage;
+    private final UploadProperties props;
+    private final Mp4BoxParser mp4BoxParser;
+    private final VideoMetadataService videoMetadataService;
+
+    public StreamingUploadService(
+            LocalUploadStorageService storage,
+            UploadProperties props,
+            Mp4BoxParser mp4BoxParser,
+            VideoMetadataService videoMetadataService
+    ) {
+        this.storage = storage;
+        this.props = props;
+        this.mp4BoxParser = mp4BoxParser;
+        this.videoMetadataService = videoMetadataService;
+    }
+
+    public IngestedUpload ingest(InputStream body, String contentType) throws IOException {
+        String boundary = MultipartStreamReader.boundaryOf(contentType);
+        if (boundary == null) {
+            throw new IllegalArgumentException("Expected multipart/form-data");
+        }
+
+        MultipartStreamReader reader = new MultipartStreamReader(body, boundary);
+        Path tmp = storage.tmpDir();
+        String id = UUID.randomUUID().toString();
+        String videoName = id + ".mp4";
+
+        Map<String, String> fields = new HashMap<>();
+        Path tempVideo = null;
+        Path tempThumb = null;
+        String thumbName = null;
+        long videoSize = 0;
+        String sha256 = null;
+        Mp4StreamScanner scanner = new Mp4StreamScanner();
+
+        try {
+            MultipartStreamReader.PartHeaders part;
+            while ((part = reader.nextPart()) != null) {
+                InputStream partIn = reader.partStream();
+
+                if ("video".equals(part.name()) && part.isFile()) {
+                    if (tempVideo != null) throw new IllegalArgumentException("Only one video is allowed.");
+                    if (!part.fileName().toLowerCase().endsWith(".mp4")
+                            || part.contentType() == null || !part.contentType().equalsIgnoreCase("video/mp4")) {
+                        throw new IllegalArgumentException("Video must be video/mp4.");
+                    }
+
+                    tempVideo = tmp.resolve(videoName + ".part");
+                    MessageDigest digest = sha256();
+                    videoSize = copy(partIn, tempVideo, props.getMaxVideoSizeBytes(),
+                            "Video max size is " + props.getMaxVideoSizeBytes() + " bytes.",
+                            (b, off, len) -> {
+                                digest.update(b, off, len);
+                                scanner.update(b, off, len);
+                            });
+                    sha256 = HexFormat.of().formatHex(digest.digest());
+
+                } else if ("thumbnail".equals(part.name()) && part.isFile()) {
+                    if (tempThumb != null) throw new IllegalArgumentException("Only one thumbnail is allowed.");
+                    if (part.contentType() == null || !part.contentType().startsWith("image/")) {
+                        throw new IllegalArgumentException("Thumbnail must be an image.");
+                    }
+
+                    thumbName = id + storage.safeImageExt(part.fileName());
+                    tempThumb = tmp.resolve(thumbName + ".part");
+                    copy(partIn, tempThumb, MAX_THUMB_BYTES, "Thumbnail is too large.", (b, off, len) -> { });
+
+                } else if (!part.isFile() && part.name() != null) {
+                    byte[] value = partIn.readNBytes(MAX_FIELD_BYTES + 1);
+                    if (value.length > MAX_FIELD_BYTES) {
+                        throw new IllegalArgumentException("Field '" + part.name() + "' is too large.");
+                    }
+                    fields.put(part.name(), new String(value, StandardCharsets.UTF_8));
+                }
+                // unknown file parts are skipped by nextPart()
+            }
+
+            if (tempVideo == null || videoSize == 0) throw new IllegalArgumentException("Video is required.");
+            if (tempThumb == null || Files.size(tempThumb) == 0) throw new IllegalArgumentException("Thumbnail is required.");
+
+        } catch (Exception e) {
+            storage.deleteIfExists(tempVideo);
+            storage.deleteIfExists(tempThumb);
+            throw e;
+        }
+
+        VideoMetadataDto metadata;
+        try {
+            metadata = scanner.result(mp4BoxParser, videoSize);
+        } catch (IOException e) {
+            System.err.println("WARNING: MP4 scan of upload failed (" + e.getMessage() + "), probing file");
+            metadata = videoMetadataService.extract(tempVideo);
+        }
+
+        System.out.println("STREAMED UPLOAD: video=" + videoName + " size=" + videoSize + " sha256=" + sha256
+                + " duration=" + (metadata != null ? metadata.durationSeconds() : null));
+
+        return new IngestedUpload(
+                fields,
+                new LocalUploadStorageService.TempFiles(tempVideo, tempThumb, videoName, thumbName),
+                videoSize,
+                sha256,
+                metadata
+        );
+    }
+
+    public void discard(IngestedUpload upload) {
+        storage.deleteIfExists(upload.temp().tempVideo());
+        storage.deleteIfExists(upload.temp().tempThumb());
+    }
+
+    @FunctionalInterface
+    private interface ChunkListener {
+        void onChunk(byte[] b, int off, int len);
+    }
+
+    private long copy(InputStream in, Path target, long maxBytes, String tooLargeMessage,
+                      ChunkListener listener) throws IOException {
+        Instant start = Instant.now();
+        long total = 0;
+
+        try (OutputStream out = Files.newOutputStream(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] buf = new byte[COPY_BUFFER];
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                total += r;
+                if (total > maxBytes) throw new IllegalArgumentException(tooLargeMessage);
+
+                out.write(buf, 0, r);
+                listener.onChunk(buf, 0, r);
+
+                if (Duration.between(start, Instant.now()).getSeconds() > props.getTimeoutSeconds()) {
+                    throw new IOException("Upload exceeded timeout of " + props.getTimeoutSeconds() + " seconds.");
+                }
+            }
+        }
+        return total;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -28,6 +28,23 @@ public class ThumbnailService {
         System.out.println("🔥 CACHE MISS - Loading thumbnail from disk for postId: " + postId
                 + " (useCompressed=" + useCompressed + ")");
 
+        Path filePath = resolveThumbnailPath(postId);
+
+        try {
+            byte[] bytes = Files.readAllBytes(filePath);
+            System.out.println("✅ Thumbnail loaded successfully: " + bytes.length + " bytes"
+                    + " (" + (useCompressed ? "COMPRESSED" : "ORIGINAL") + ")");
+            return bytes;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading thumbnail", e);
+        }
+    }
+
+    /**
+     * File served for the thumbnail: the compressed copy if it exists, otherwise the original.
+     * Also used to derive the ETag/Last-Modified validators.
+     */
+    public Path resolveThumbnailPath(Long postId) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("Post not found"));
 
@@ -37,12 +54,7 @@ public class ThumbnailService {
         }
 
         String thumbFileName = Paths.get(thumbnailUrl).getFileName().toString();
-
-        Path baseDir = Paths.get(uploadProperties.getDir());
-        if (!baseDir.isAbsolute()) {
-            baseDir = Paths.get(System.getProperty("user.dir")).resolve(baseDir);
-        }
-        baseDir = baseDir.toAbsolutePath().normalize();
+        Path baseDir = thumbsBaseDir();
 
         Path originalPath = baseDir
                 .resolve(uploadProperties.getThumbsDir())
@@ -61,15 +73,7 @@ public class ThumbnailService {
         if (!Files.exists(filePath)) {
             throw new RuntimeException("Thumbnail file not found: " + filePath);
         }
-
-        try {
-            byte[] bytes = Files.readAllBytes(filePath);
-            System.out.println("✅ Thumbnail loaded successfully: " + bytes.length + " bytes"
-                    + " (" + (filePath.equals(compressedPath) ? "COMPRESSED" : "ORIGINAL") + ")");
-            return bytes;
-        } catch (IOException e) {
-            throw new RuntimeException("Error reading thumbnail", e);
-        }
+        return filePath;
     }
 
     public boolean isCompressedAvailable(Long postId) {
@@ -95,4 +99,12 @@ public class ThumbnailService {
 
         return Files.exists(compressedPath);
     }
+
+    private Path thumbsBaseDir() {
+        Path baseDir = Paths.get(uploadProperties.getDir());
+        if (!baseDir.isAbsolute()) {
+            baseDir = Paths.get(System.getProperty("user.dir")).resolve(baseDir);
+        }
+        return baseDir.toAbsolutePath().normalize();
+    }
 }
@@ -2,8 +2,10 @@ package com.jutjubic.service;
 
 import com.jutjubic.config.TranscodingProps;
 import com.jutjubic.domain.Post;
+import com.jutjubic.domain.PostRendition;
 import com.jutjubic.domain.TranscodingJob;
 import com.jutjubic.dto.TranscodeJobMessageDto;
+import com.jutjubic.repository.PostRenditionRepository;
 import com.jutjubic.repository.PostRepository;
 import com.jutjubic.repository.TranscodingJobRepository;
 import com.rabbitmq.client.Channel;
@@ -18,6 +20,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
 
 //za pokretanje komanda u terminalu:
 //docker run -it --rm -p 5672:5672 -p 15672:15672 rabbitmq:3-management
@@ -26,22 +31,40 @@ public class TranscodeConsumerService {
 
     private final TranscodingJobRepository jobRepo;
     private final PostRepository postRepo;
+    private final PostRenditionRepository renditionRepo;
     private final TranscodingProps props;
     private final FfmpegTranscodingService ffmpeg;
+    private final HlsPackagingService hlsPackaging;
+    private final TranscodePublisher transcodePublisher;
+    private final KeyframeIndexService keyframeIndexService;
+    private final RenditionSharingService renditionSharing;
+
+    private static final String SOURCE_CHUNK_PATTERN = "src_%04d.mp4";
+    private static final String ENCODED_CHUNK_PATTERN = "enc_%04d.mp4";
 
     public TranscodeConsumerService(
             TranscodingJobRepository jobRepo,
             PostRepository postRepo,
+            PostRenditionRepository renditionRepo,
             TranscodingProps props,
-            FfmpegTranscodingService ffmpeg
+            FfmpegTranscodingService ffmpeg,
+            HlsPackagingService hlsPackaging,
+            TranscodePublisher transcodePublisher,
+            KeyframeIndexService keyframeIndexService,
+            RenditionSharingService renditionSharing
     ) {
         this.jobRepo = jobRepo;
         this.postRepo = postRepo;
+        this.renditionRepo = renditionRepo;
         this.props = props;
         this.ffmpeg = ffmpeg;
+        this.hlsPackaging = hlsPackaging;
+        this.transcodePublisher = transcodePublisher;
+        this.keyframeIndexService = keyframeIndexService;
+        this.renditionSharing = renditionSharing;
     }
 
-    @RabbitListener(queues = "${app.transcoding.queue}", concurrency = "2")
+    @RabbitListener(queues = "${app.transcoding.queue}", concurrency = "${app.transcoding.concurrency:2}")
     public void handle(
             @Payload TranscodeJobMessageDto msg,
             Channel channel,
@@ -55,33 +78,22 @@ public class TranscodeConsumerService {
                 return;
             }
 
-            System.out.println("CONSUMER START JOB: jobId=" + msg.jobId() + ", postId=" + msg.postId());
-            setStatus(msg.jobId(), "PROCESSING", null);
-
-            Path input = Paths.get(msg.inputAbsolutePath());
-            if (!Files.exists(input)) throw new IllegalStateException("Input not found: " + input);
-
-            Path outDir = input.getParent().resolve(props.getOutputDir());
-            Files.createDirectories(outDir);
+            TranscodingProps.Rendition rendition = resolveRendition(msg.preset());
 
-            String base = input.getFileName().toString();
-            if (base.toLowerCase().endsWith(".mp4")) {
-                base = base.substring(0, base.length() - 4);
+            if (msg.isChunk()) {
+                handleChunk(msg, rendition);
+            } else {
+                handleRendition(msg, rendition);
             }
-            String outName = base + "_720p.mp4";
-            Path output = outDir.resolve(outName);
 
-            ffmpeg.transcode720p(input, output);
-            System.out.println("FFMPEG DONE: output=" + output);
-
-            updatePostVideoUrl(msg.postId(), "/media/videos/" + props.getOutputDir() + "/" + outName);
-
-            markDone(msg.jobId());
             channel.basicAck(tag, false);
 
         } catch (Exception e) {
             try {
                 setStatus(msg.jobId(), "FAILED", e.getMessage());
+                if (msg.isChunk()) {
+                    setStatus(msg.parentJobId(), "FAILED", "Chunk " + msg.chunkIndex() + " failed: " + e.getMessage());
+                }
             } catch (Exception ignored) {}
 
             System.err.println("TRANSCODE FAILED jobId=" + msg.jobId() + " err=" + e.getMessage());
@@ -89,6 +101,203 @@ public class TranscodeConsumerService {
         }
     }
 
+    private void handleRendition(TranscodeJobMessageDto msg, TranscodingProps.Rendition rendition) throws Exception {
+        System.out.println("CONSUMER START JOB: jobId=" + msg.jobId() + ", postId=" + msg.postId()
+                + ", rendition=" + rendition.getName());
+        setStatus(msg.jobId(), "PROCESSING", null);
+
+        Path input = Paths.get(msg.inputAbsolutePath());
+        if (!Files.exists(input)) throw new IllegalStateException("Input not found: " + input);
+
+        Path outDir = outputDir(input);
+        Files.createDirectories(outDir);
+
+        // outputs are keyed by source digest + rendition - a duplicate upload may already have this one
+        String digest = sourceDigest(msg.postId());
+        var shared = renditionSharing.findShared(msg.postId(), digest, rendition.getName());
+        if (shared.isPresent() && Files.exists(outDir.resolve(outputName(input, rendition)))) {
+            renditionSharing.link(msg.postId(), shared.get());
+            markDone(msg.jobId());
+            System.out.println("DEDUP: jobId=" + msg.jobId() + " reused " + rendition.getName()
+                    + " of identical source, ffmpeg skipped");
+            return;
+        }
+
+        if (shouldSplit(msg.postId())) {
+            splitAndFanOut(msg, rendition, input, outDir);
+            return;
+        }
+
+        Path output = outDir.resolve(outputName(input, rendition));
+
+        ffmpeg.transcode(input, output, rendition);
+        System.out.println("FFMPEG DONE: output=" + output);
+
+        finishRendition(msg.jobId(), msg.postId(), rendition, input, output);
+    }
+
+    /**
+     * Long upload: cut the source on keyframes and publish one sub-job per chunk,
+     * so every idle worker can pick up part of the same video.
+     */
+    private void splitAndFanOut(TranscodeJobMessageDto msg, TranscodingProps.Rendition rendition,
+                                Path input, Path outDir) throws Exception {
+        Path chunkDir = chunkDir(outDir, input, rendition);
+        Files.createDirectories(chunkDir);
+
+        boolean published = false;
+        try {
+            List<Double> starts = ffmpeg.splitKeyframeChunks(input, chunkDir, SOURCE_CHUNK_PATTERN, props.getChunkSeconds());
+            int chunkCount = starts.size();
+            if (chunkCount == 0) throw new IllegalStateException("Splitting produced no chunks: " + input);
+
+            // parent state must be CHUNKED before any chunk can finish and try to claim concatenation
+            markChunked(msg.jobId(), chunkCount);
+
+            for (int i = 0; i < chunkCount; i++) {
+                transcodePublisher.publish(new TranscodeJobMessageDto(
+                        UUID.randomUUID().toString(),
+                        msg.postId(),
+                        chunkDir.resolve(String.format(SOURCE_CHUNK_PATTERN, i)).toString(),
+                        msg.preset(),
+                        msg.jobId(),
+                        i,
+                        chunkCount,
+                        starts.get(i)
+                ));
+            }
+            published = true;
+
+            System.out.println("SPLIT INTO CHUNKS: jobId=" + msg.jobId() + ", chunks=" + chunkCount
+                    + ", rendition=" + rendition.getName());
+        } finally {
+            // nobody will ever encode or concatenate a half-published split
+            if (!published) deleteQuietly(chunkDir);
+        }
+    }
+
+    private void handleChunk(TranscodeJobMessageDto msg, TranscodingProps.Rendition rendition) throws Exception {
+        setStatus(msg.jobId(), "PROCESSING", null);
+
+        Path chunk = Paths.get(msg.inputAbsolutePath());
+        Path chunkDir = chunk.getParent();
+
+        // the directory goes away once this worker concatenated, or the whole split is lost after a failure
+        boolean finished = true;
+        try {
+            if (!Files.exists(chunk)) throw new IllegalStateException("Chunk not found: " + chunk);
+
+            Path encoded = chunk.resolveSibling(String.format(ENCODED_CHUNK_PATTERN, msg.chunkIndex()));
+            double start = msg.chunkStartSeconds() != null ? msg.chunkStartSeconds() : 0;
+            ffmpeg.transcodeVideoChunk(chunk, encoded, rendition, start);
+            markDone(msg.jobId());
+
+            jobRepo.incrementChunksDone(msg.parentJobId());
+            System.out.println("CHUNK DONE: parent=" + msg.parentJobId() + ", chunk=" + (msg.chunkIndex() + 1)
+                    + "/" + msg.chunkCount());
+
+            if (jobRepo.claimConcatenation(msg.parentJobId()) == 0) {
+                finished = false;
+                return;
+            }
+
+            // this worker encoded the last outstanding chunk - join everything and finish the rendition
+            TranscodingJob parent = jobRepo.findByJobId(msg.parentJobId()).orElseThrow();
+            Path input = Paths.get(parent.getInputPath());
+
+            Path listFile = chunkDir.resolve("concat.txt");
+            StringBuilder list = new StringBuilder();
+            for (int i = 0; i < msg.chunkCount(); i++) {
+                list.append("file '")
+                        .append(chunkDir.resolve(String.format(ENCODED_CHUNK_PATTERN, i)).toAbsolutePath())
+                        .append("'\n");
+            }
+            Files.writeString(listFile, list.toString());
+
+            Path output = outputDir(input).resolve(outputName(input, rendition));
+            ffmpeg.concatChunks(listFile, input, output, rendition);
+            System.out.println("CHUNKS CONCATENATED: output=" + output);
+
+            finishRendition(parent.getJobId(), msg.postId(), rendition, input, output);
+        } finally {
+            if (finished) deleteQuietly(chunkDir);
+        }
+    }
+
+    private void finishRendition(String jobId, Long postId, TranscodingProps.Rendition rendition,
+                                 Path input, Path output) throws Exception {
+        String base = baseName(input);
+        String mediaPrefix = "/media/videos/" + props.getOutputDir() + "/";
+        String videoUrl = mediaPrefix + output.getFileName();
+
+        keyframeIndexService.build(output);
+
+        if (rendition.getName().equals(props.getDefaultRendition())) {
+            updatePostVideoUrl(postId, videoUrl);
+        }
+
+        setStatus(jobId, "PACKAGING", null);
+        Path hlsRoot = outputDir(input).resolve(props.getHlsDir()).resolve(base);
+        HlsPackagingService.Variant variant = hlsPackaging.packageRendition(output, hlsRoot, rendition.getName());
+        System.out.println("HLS PACKAGED: dir=" + hlsRoot.resolve(rendition.getName()));
+
+        String hlsPrefix = mediaPrefix + props.getHlsDir() + "/" + base + "/";
+        PostRendition saved = saveRendition(postId, rendition, variant, videoUrl,
+                hlsPrefix + rendition.getName() + "/" + HlsPackagingService.MEDIA_PLAYLIST);
+        updatePostHlsUrl(postId, hlsPrefix + HlsPackagingService.MASTER_PLAYLIST);
+        renditionSharing.propagate(postId, sourceDigest(postId), saved);
+
+        markDone(jobId);
+    }
+
+    private boolean shouldSplit(Long postId) {
+        Double duration = postRepo.findById(postId).map(Post::getDurationSeconds).orElse(null);
+        return duration != null && duration > props.getChunkThresholdSeconds();
+    }
+
+    private String sourceDigest(Long postId) {
+        return postRepo.findById(postId).map(Post::getVideoSha256).orElse(null);
+    }
+
+    private Path outputDir(Path input) {
+        return input.getParent().resolve(props.getOutputDir());
+    }
+
+    private Path chunkDir(Path outDir, Path input, TranscodingProps.Rendition rendition) {
+        return outDir.resolve("chunks").resolve(baseName(input) + "_" + rendition.getName());
+    }
+
+    private String outputName(Path input, TranscodingProps.Rendition rendition) {
+        return baseName(input) + "_" + rendition.getName() + ".mp4";
+    }
+
+    private String baseName(Path input) {
+        String base = input.getFileName().toString();
+        if (base.toLowerCase().endsWith(".mp4")) {
+            base = base.substring(0, base.length() - 4);
+        }
+        return base;
+    }
+
+    private void deleteQuietly(Path dir) {
+        try (var files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> {
+                try {
+                    Files.deleteIfExists(f);
+                } catch (Exception ignored) {}
+            });
+        } catch (Exception ignored) {}
+    }
+
+    private TranscodingProps.Rendition resolveRendition(String preset) {
+        String name = preset != null && preset.startsWith(TranscodePublisher.PRESET_PREFIX)
+                ? preset.substring(TranscodePublisher.PRESET_PREFIX.length())
+                : preset;
+
+        return props.findRendition(name)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown transcode preset: " + preset));
+    }
+
     @Transactional
     protected boolean tryInsertJob(TranscodeJobMessageDto msg) {
         try {
@@ -97,6 +306,9 @@ public class TranscodeConsumerService {
             job.setPostId(msg.postId());
             job.setStatus("RECEIVED");
             job.setCreatedAt(Instant.now());
+            job.setInputPath(msg.inputAbsolutePath());
+            job.setParentJobId(msg.parentJobId());
+            job.setChunkIndex(msg.chunkIndex());
 
             jobRepo.saveAndFlush(job);
             return true;
@@ -115,6 +327,15 @@ public class TranscodeConsumerService {
         jobRepo.save(job);
     }
 
+    @Transactional
+    protected void markChunked(String jobId, int chunkCount) {
+        TranscodingJob job = jobRepo.findByJobId(jobId).orElseThrow();
+        job.setStatus("CHUNKED");
+        job.setChunkCount(chunkCount);
+        job.setChunksDone(0);
+        jobRepo.save(job);
+    }
+
     @Transactional
     protected void markDone(String jobId) {
         TranscodingJob job = jobRepo.findByJobId(jobId).orElseThrow();
@@ -129,4 +350,26 @@ public class TranscodeConsumerService {
         p.setVideoUrl(newUrl);
         postRepo.save(p);
     }
+
+    @Transactional
+    protected void updatePostHlsUrl(Long postId, String hlsUrl) {
+        Post p = postRepo.findById(postId).orElseThrow();
+        p.setHlsMasterUrl(hlsUrl);
+        postRepo.save(p);
+    }
+
+    @Transactional
+    protected PostRendition saveRendition(Long postId, TranscodingProps.Rendition rendition,
+                                 HlsPackagingService.Variant variant, String videoUrl, String playlistUrl) {
+        PostRendition r = renditionRepo.findByPostIdAndRendition(postId, rendition.getName())
+                .orElseGet(PostRendition::new);
+        r.setPostId(postId);
+        r.setRendition(rendition.getName());
+        r.setHeight(rendition.getHeight());
+        r.setBandwidth(variant.bandwidth());
+        r.setAverageBandwidth(variant.averageBandwidth());
+        r.setVideoUrl(videoUrl);
+        r.setPlaylistUrl(playlistUrl);
+        return renditionRepo.save(r);
+    }
 }
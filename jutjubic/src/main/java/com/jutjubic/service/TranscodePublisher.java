@@ -5,9 +5,13 @@ import com.jutjubic.dto.TranscodeJobMessageDto;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.UUID;
+
 @Service
 public class TranscodePublisher {
 
+    public static final String PRESET_PREFIX = "mp4_";
+
     private final RabbitTemplate rabbitTemplate;
     private final TranscodingProps props;
 
@@ -19,4 +23,20 @@ public class TranscodePublisher {
     public void publish(TranscodeJobMessageDto msg) {
         rabbitTemplate.convertAndSend(props.getExchange(), props.getRoutingKey(), msg);
     }
+
+    /**
+     * Fans out one job per rendition of the configured ladder, so the renditions
+     * of a single upload are transcoded in parallel by all available workers.
+     */
+    public int publishRenditions(Long postId, String inputAbsPath) {
+        for (TranscodingProps.Rendition r : props.getRenditions()) {
+            publish(new TranscodeJobMessageDto(
+                    UUID.randomUUID().toString(),
+                    postId,
+                    inputAbsPath,
+                    PRESET_PREFIX + r.getName()
+            ));
+        }
+        return props.getRenditions().size();
+    }
 }
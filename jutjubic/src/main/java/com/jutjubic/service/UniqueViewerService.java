@@ -0,0 +1,203 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.VideoViewerSketch;
+import com.jutjubic.dto.ViewerSketchDto;
+import com.jutjubic.repository.VideoViewerSketchRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Distinct viewers per video, estimated with {@link HyperLogLog} sketches - one
+ * per (video, day) plus an all-time one, 4 KB each however many people watch.
+ *
+ * Viewers are added to in-memory sketches; {@link ViewCountFlushService} merges
+ * them into video_viewer_sketch_* on every flush and hands the merged sketches to
+ * {@link CrdtDeltaSyncService}. Sketches from peers are merged the same way, so
+ * every replica converges on the union of everyone's viewers; sketches a peer
+ * missed are found and re-sent by {@link CrdtAntiEntropyService}.
+ */
+@Service
+public class UniqueViewerService {
+
+    private final VideoViewerSketchRepository repository;
+    private final CrdtMerkleTreeCache merkleTree;
+
+    private final Map<ViewCountBuffer.DayKey, HyperLogLog> pending = new ConcurrentHashMap<>();
+    // drained by the running flush, still counted by estimates until it commits
+    private volatile Map<ViewCountBuffer.DayKey, HyperLogLog> inFlight = Map.of();
+
+    public UniqueViewerService(VideoViewerSketchRepository repository, CrdtMerkleTreeCache merkleTree) {
+        this.repository = repository;
+        this.merkleTree = merkleTree;
+    }
+
+    /**
+     * @param viewerKey stable identity of the viewer (user name or client address); only its hash is kept
+     */
+    public void record(Long videoId, LocalDate day, String viewerKey) {
+        long hash = HyperLogLog.hash(viewerKey);
+        add(new ViewCountBuffer.DayKey(videoId, day), hash);
+        add(new ViewCountBuffer.DayKey(videoId, VideoViewerSketch.ALL_TIME), hash);
+    }
+
+    @Transactional(readOnly = true)
+    public long estimate(Long videoId) {
+        return estimate(videoId, VideoViewerSketch.ALL_TIME);
+    }
+
+    @Transactional(readOnly = true)
+    public long estimate(Long videoId, LocalDate day) {
+        ViewCountBuffer.DayKey key = new ViewCountBuffer.DayKey(videoId, day);
+        HyperLogLog sketch = repository.findByVideoIdAndViewDate(videoId, day)
+                .map(s -> HyperLogLog.fromBytes(s.getRegisters()))
+                .orElseGet(HyperLogLog::new);
+
+        HyperLogLog unflushed = inFlight.get(key);
+        if (unflushed != null) sketch.merge(unflushed);
+        pending.computeIfPresent(key, (k, h) -> {
+            sketch.merge(h);
+            return h;
+        });
+        return sketch.estimate();
+    }
+
+    /**
+     * Takes the sketches recorded since the last call; pass them to {@link #merge}
+     * and then {@link #committed} - or {@link #restore} if that failed.
+     */
+    public Map<ViewCountBuffer.DayKey, HyperLogLog> drain() {
+        Map<ViewCountBuffer.DayKey, HyperLogLog> drained = new HashMap<>();
+        for (ViewCountBuffer.DayKey key : new ArrayList<>(pending.keySet())) {
+            HyperLogLog sketch = pending.remove(key);
+            if (sketch != null) drained.put(key, sketch);
+        }
+        inFlight = drained;
+        return drained;
+    }
+
+    public void committed() {
+        inFlight = Map.of();
+    }
+
+    public void restore(Map<ViewCountBuffer.DayKey, HyperLogLog> drained) {
+        drained.forEach((key, sketch) -> pending.merge(key, sketch, (current, old) -> {
+            current.merge(old);
+            return current;
+        }));
+        inFlight = Map.of();
+    }
+
+    /**
+     * Merges the sketches into their rows (locked, so concurrent merges into a shared
+     * table cannot lose registers).
+     *
+     * @return the merged sketch of every row that changed
+     */
+    @Transactional
+    public Map<ViewCountBuffer.DayKey, HyperLogLog> merge(Map<ViewCountBuffer.DayKey, HyperLogLog> sketches) {
+        Map<ViewCountBuffer.DayKey, HyperLogLog> changed = new HashMap<>();
+        if (sketches.isEmpty()) return changed;
+
+        Set<Long> videoIds = new HashSet<>();
+        Set<LocalDate> days = new HashSet<>();
+        sketches.keySet().forEach(k -> {
+            videoIds.add(k.videoId());
+            days.add(k.day());
+        });
+
+        Map<ViewCountBuffer.DayKey, VideoViewerSketch> rows = new HashMap<>();
+        for (VideoViewerSketch row : repository.findAllForUpdate(videoIds, days)) {
+            rows.put(new ViewCountBuffer.DayKey(row.getId().getVideoId(), row.getId().getViewDate()), row);
+        }
+
+        long now = System.currentTimeMillis();
+        List<VideoViewerSketch> toSave = new ArrayList<>();
+        sketches.forEach((key, sketch) -> {
+            VideoViewerSketch row = rows.get(key);
+            HyperLogLog merged;
+            if (row == null) {
+                merged = sketch.copy();
+                row = new VideoViewerSketch(key.videoId(), key.day(), merged.toBytes());
+            } else {
+                merged = HyperLogLog.fromBytes(row.getRegisters());
+                if (!merged.merge(sketch)) return;
+                row.setRegisters(merged.toBytes());
+                row.setLastUpdated(now);
+            }
+            toSave.add(row);
+            changed.put(key, merged);
+        });
+        repository.saveAll(toSave);
+        merkleTree.changed(changed.keySet().stream().map(ViewCountBuffer.DayKey::videoId).collect(Collectors.toSet()));
+        return changed;
+    }
+
+    /**
+     * Stored sketches of the videos, every day and all-time.
+     */
+    @Transactional(readOnly = true)
+    public Map<ViewCountBuffer.DayKey, HyperLogLog> sketchesOf(Collection<Long> videoIds) {
+        Map<ViewCountBuffer.DayKey, HyperLogLog> sketches = new HashMap<>();
+        if (videoIds.isEmpty()) return sketches;
+        for (VideoViewerSketch row : repository.findAllByVideoIds(videoIds)) {
+            sketches.put(new ViewCountBuffer.DayKey(row.getId().getVideoId(), row.getId().getViewDate()),
+                    HyperLogLog.fromBytes(row.getRegisters()));
+        }
+        return sketches;
+    }
+
+    @Transactional(readOnly = true)
+    public List<ViewerSketchDto> sketchesInBuckets(List<Integer> buckets) {
+        if (buckets == null || buckets.isEmpty()) return List.of();
+        List<Long> indexes = buckets.stream().map(Integer::longValue).toList();
+        return repository.findAllInBuckets(CrdtMerkleTree.LEAVES, indexes).stream()
+                .map(s -> new ViewerSketchDto(s.getId().getVideoId(), s.getId().getViewDate().toEpochDay(),
+                        s.getRegisters()))
+                .toList();
+    }
+
+    /**
+     * Sketches received from a peer.
+     */
+    @Transactional
+    public int mergeReplicated(Collection<ViewerSketchDto> sketches) {
+        if (sketches == null || sketches.isEmpty()) return 0;
+
+        Map<ViewCountBuffer.DayKey, HyperLogLog> received = new HashMap<>();
+        for (ViewerSketchDto dto : sketches) {
+            HyperLogLog sketch;
+            try {
+                sketch = HyperLogLog.fromBytes(dto.registers());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            received.merge(new ViewCountBuffer.DayKey(dto.videoId(), LocalDate.ofEpochDay(dto.epochDay())), sketch,
+                    (a, b) -> {
+                        a.merge(b);
+                        return a;
+                    });
+        }
+        return merge(received).size();
+    }
+
+    private void add(ViewCountBuffer.DayKey key, long hash) {
+        pending.compute(key, (k, sketch) -> {
+            if (sketch == null) sketch = new HyperLogLog();
+            sketch.add(hash);
+            return sketch;
+        });
+    }
+}
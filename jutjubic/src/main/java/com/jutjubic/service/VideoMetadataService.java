@@ -1,45 +1,131 @@
 package com.jutjubic.service;
 
+import com.jutjubic.dto.VideoMetadataDto;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
+import java.util.List;
 
 @Service
 public class VideoMetadataService {
 
+    private final Mp4BoxParser mp4BoxParser;
+
+    public VideoMetadataService(Mp4BoxParser mp4BoxParser) {
+        this.mp4BoxParser = mp4BoxParser;
+    }
+
     /**
-     * Extract video duration in seconds using ffprobe
+     * Extract video duration in seconds
      * Returns null if duration cannot be determined
      */
     public Double extractDuration(Path videoPath) {
+        VideoMetadataDto metadata = extract(videoPath);
+        return metadata != null ? metadata.durationSeconds() : null;
+    }
+
+    /**
+     * Reads metadata straight from the MP4 boxes (no process fork).
+     * Falls back to ffprobe only when the container can't be parsed in-process.
+     * Returns null if neither works.
+     */
+    public VideoMetadataDto extract(Path videoPath) {
+        try {
+            return mp4BoxParser.parse(videoPath);
+        } catch (IOException e) {
+            System.err.println("WARNING: MP4 parse failed (" + e.getMessage() + "), falling back to ffprobe");
+        }
+        return probe(videoPath);
+    }
+
+    /**
+     * ffprobe fallback - key=value lines, streams first (codec_name precedes codec_type
+     * and width/height within a stream), then format duration/bit_rate. No keyframe table.
+     */
+    VideoMetadataDto probe(Path videoPath) {
         try {
             ProcessBuilder pb = new ProcessBuilder(
                     "ffprobe",
                     "-v", "error",
-                    "-show_entries", "format=duration",
-                    "-of", "default=noprint_wrappers=1:nokey=1",
+                    "-show_entries", "format=duration,bit_rate:stream=codec_type,codec_name,width,height",
+                    "-of", "default=noprint_wrappers=1",
                     videoPath.toAbsolutePath().toString()
             );
 
             Process process = pb.start();
 
+            Double duration = null;
+            Long bitrate = null;
+            String videoCodec = null;
+            String audioCodec = null;
+            Integer width = null;
+            Integer height = null;
+            String codecName = null;
+            String codecType = null;
+
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line = reader.readLine();
-                if (line != null && !line.trim().isEmpty()) {
-                    return Double.parseDouble(line.trim());
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int eq = line.indexOf('=');
+                    if (eq < 0) continue;
+                    String key = line.substring(0, eq).trim();
+                    String value = line.substring(eq + 1).trim();
+
+                    switch (key) {
+                        case "codec_name" -> {
+                            codecName = value;
+                            codecType = null;
+                        }
+                        case "codec_type" -> {
+                            codecType = value;
+                            if (value.equals("video") && videoCodec == null) videoCodec = codecName;
+                            if (value.equals("audio") && audioCodec == null) audioCodec = codecName;
+                        }
+                        case "width" -> {
+                            if ("video".equals(codecType) && width == null) width = parseIntOrNull(value);
+                        }
+                        case "height" -> {
+                            if ("video".equals(codecType) && height == null) height = parseIntOrNull(value);
+                        }
+                        case "duration" -> duration = parseDoubleOrNull(value);
+                        case "bit_rate" -> {
+                            Double br = parseDoubleOrNull(value);
+                            bitrate = br != null ? br.longValue() : null;
+                        }
+                        default -> { }
+                    }
                 }
             }
 
             process.waitFor();
 
-        } catch (IOException | InterruptedException | NumberFormatException e) {
-            System.err.println("WARNING: Could not extract video duration: " + e.getMessage());
+            if (duration == null) return null;
+            return new VideoMetadataDto(duration, width, height, videoCodec, audioCodec, bitrate, List.of(), null);
+
+        } catch (IOException | InterruptedException e) {
+            System.err.println("WARNING: Could not extract video metadata: " + e.getMessage());
             System.err.println("Make sure ffprobe is installed and accessible in PATH");
         }
 
         return null;
     }
+
+    private static Integer parseIntOrNull(String s) {
+        try {
+            return Integer.parseInt(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Double parseDoubleOrNull(String s) {
+        try {
+            return Double.parseDouble(s.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
@@ -1,87 +1,171 @@
 package com.jutjubic.service;
 
-import com.jutjubic.domain.VideoDailyView;
+import com.jutjubic.config.ViewCounterProps;
 import com.jutjubic.domain.VideoViewCrdt;
-import com.jutjubic.repository.VideoDailyViewRepository;
+import com.jutjubic.domain.VideoViewTotal;
 import com.jutjubic.repository.VideoViewCrdtRepository;
+import com.jutjubic.repository.VideoViewTotalRepository;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import com.jutjubic.dto.CrdtSyncMessageDto;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.jutjubic.dto.CrdtCounterDto;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.jutjubic.dto.PostViewDto;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class VideoViewCrdtService {
 
     private final VideoViewCrdtRepository repository;
-    private final VideoDailyViewRepository dailyViewRepository;
+    private final VideoViewTotalRepository totalRepository;
+    private final ViewCountWriter writer;
+    private final ViewCountBuffer viewCountBuffer;
+    private final CrdtDeltaSyncService deltaSync;
+    private final UniqueViewerService uniqueViewers;
+    private final RecentViewerFilter recentViewers;
+    private final CrdtMerkleTreeCache merkleTree;
+    private final int totalsCacheSize;
+
+    // video_view_total rows per video (without views still in the buffer); entries
+    // are dropped whenever a merge or a flush changes one of the video's counters
+    private final Map<Long, Long> totals = new ConcurrentHashMap<>();
+    // bumped on every invalidation so a load that raced with one is not cached
+    private final AtomicLong totalsGeneration = new AtomicLong();
 
     @Value("${replica.id}")
     private String replicaId;
 
-    public VideoViewCrdtService(VideoViewCrdtRepository repository, VideoDailyViewRepository dailyViewRepository) {
+    public VideoViewCrdtService(VideoViewCrdtRepository repository, VideoViewTotalRepository totalRepository,
+                                ViewCountWriter writer, ViewCountBuffer viewCountBuffer,
+                                CrdtDeltaSyncService deltaSync, UniqueViewerService uniqueViewers,
+                                RecentViewerFilter recentViewers, CrdtMerkleTreeCache merkleTree,
+                                ViewCounterProps props) {
         this.repository = repository;
-        this.dailyViewRepository = dailyViewRepository;
+        this.totalRepository = totalRepository;
+        this.writer = writer;
+        this.viewCountBuffer = viewCountBuffer;
+        this.deltaSync = deltaSync;
+        this.uniqueViewers = uniqueViewers;
+        this.recentViewers = recentViewers;
+        this.merkleTree = merkleTree;
+        this.totalsCacheSize = props.getTotalsCacheSize();
     }
 
 
-    @Transactional
+    /**
+     * Counted in memory only - {@link ViewCountFlushService} writes the accumulated
+     * views to this replica's CRDT counter and to video_daily_views in batches.
+     */
     public void incrementViewForReplica(Long videoId) {
-        VideoViewCrdt.VideoViewCrdtId id = new VideoViewCrdt.VideoViewCrdtId(videoId, replicaId);
-        VideoViewCrdt entry = repository.findById(id).orElse(null);
-
-        long currentLocalCount;
-
-        if (entry == null) {
-            VideoViewCrdt newEntry = new VideoViewCrdt(videoId, replicaId);
-            newEntry.setViewCount(1L);
-            newEntry.setLastUpdated(System.currentTimeMillis());
-            repository.save(newEntry);
-            currentLocalCount = 1L;
-        } else {
-            repository.incrementViewCount(videoId, replicaId, System.currentTimeMillis());
-            VideoViewCrdt updated = repository.findById(id).orElse(entry);
-            currentLocalCount = updated.getViewCount();
+        viewCountBuffer.record(videoId, LocalDate.now());
+    }
+
+    /**
+     * Counts the view and adds the viewer to the video's unique-viewer sketches -
+     * unless dedup is on and the viewer already viewed the video within the window.
+     *
+     * @return false if the view was dropped as a repeat
+     */
+    public boolean incrementViewForReplica(Long videoId, String viewerKey) {
+        if (recentViewers.seenRecently(videoId, viewerKey)) return false;
+
+        LocalDate today = LocalDate.now();
+        viewCountBuffer.record(videoId, today);
+        uniqueViewers.record(videoId, today, viewerKey);
+        return true;
+    }
+
+    public long getUniqueViewerCount(Long videoId) {
+        return uniqueViewers.estimate(videoId);
+    }
+
+    @Transactional(readOnly = true)
+    public Long getTotalViewCount(Long videoId) {
+        return getTotalViewCounts(List.of(videoId)).get(videoId);
+    }
+
+    /**
+     * Totals for many videos at once, read from the materialized video_view_total
+     * rows (cached, one primary-key lookup for the rest). Every requested id is in
+     * the result (0 for videos without views).
+     */
+    public Map<Long, Long> getTotalViewCounts(Collection<Long> videoIds) {
+        return viewCountBuffer.readConsistent(() -> readTotals(videoIds));
+    }
+
+    private Map<Long, Long> readTotals(Collection<Long> videoIds) {
+        Map<Long, Long> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long id : videoIds) {
+            Long cached = totals.get(id);
+            if (cached != null) result.put(id, cached);
+            else missing.add(id);
         }
 
-        if (currentLocalCount <= 50) {
-            // 1. Faza: Video je u usponu - BRZI SYNC na svakih 5 pregleda
-            if (currentLocalCount % 5 == 0) {
-                System.out.println("[CRDT] Fast-track sync (Small video) for ID: " + videoId);
-                broadcastToOtherReplicas(videoId);
+        if (!missing.isEmpty()) {
+            long generation = totalsGeneration.get();
+            Map<Long, Long> loaded = new HashMap<>();
+            for (Long id : missing) loaded.put(id, 0L);
+            for (VideoViewTotal total : totalRepository.findAllById(missing)) {
+                loaded.put(total.getVideoId(), total.getTotalViews());
             }
-        } else {
-            // 2. Faza: Video je popularan - SPORIJI SYNC na svakih 100 pregleda
-            if (currentLocalCount % 100 == 0) {
-                System.out.println("[CRDT] Batch sync (Popular video) for ID: " + videoId);
-                broadcastToOtherReplicas(videoId);
-            }
-        }
+            result.putAll(loaded);
 
-        // Increment dailyView table
-        LocalDate today = LocalDate.now();
+            if (totals.size() + loaded.size() > totalsCacheSize) totals.clear();
+            if (totalsGeneration.get() == generation) totals.putAll(loaded);
+        }
 
-        VideoDailyView dailyView = dailyViewRepository
-                .findByVideoIdAndViewDate(videoId, today)
-                .orElseGet(() -> {
-                    VideoDailyView v = new VideoDailyView();
-                    v.setVideoId(videoId);
-                    v.setViewDate(today);
-                    v.setViewCount(0L);
-                    return v;
-                });
+        result.replaceAll((id, total) -> total + viewCountBuffer.unflushed(id));
+        return result;
+    }
 
-        dailyView.setViewCount(dailyView.getViewCount() + 1);
-        dailyViewRepository.save(dailyView);
+    /**
+     * Sets the merged view count on every post, resolved with one {@link #getTotalViewCounts} call.
+     */
+    public List<PostViewDto> withViewCounts(List<PostViewDto> posts) {
+        if (posts.isEmpty()) return posts;
+        Map<Long, Long> counts = getTotalViewCounts(posts.stream().map(PostViewDto::getId).toList());
+        for (PostViewDto dto : posts) {
+            dto.setViewCount(counts.getOrDefault(dto.getId(), 0L));
+        }
+        return posts;
+    }
 
+    /**
+     * Called when counters of the videos change in the DB. Inside a transaction the
+     * entries are dropped again after commit, so a read of the old rows in between
+     * cannot stay cached.
+     */
+    public void invalidateTotals(Collection<Long> videoIds) {
+        if (videoIds.isEmpty()) return;
+        dropTotals(videoIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dropTotals(videoIds);
+                }
+            });
+        }
     }
 
-    @Transactional(readOnly = true)
-    public Long getTotalViewCount(Long videoId) {
-        return repository.getTotalViewCount(videoId);
+    private void dropTotals(Collection<Long> videoIds) {
+        totalsGeneration.incrementAndGet();
+        videoIds.forEach(totals::remove);
     }
 
     @Transactional(readOnly = true)
@@ -91,91 +175,135 @@ public class VideoViewCrdtService {
 
     @Transactional
     public void mergeFromOtherReplica(Long videoId, String sourceReplicaId, Long receivedCount) {
-        VideoViewCrdt.VideoViewCrdtId id = new VideoViewCrdt.VideoViewCrdtId(videoId, sourceReplicaId);
-
-        VideoViewCrdt entry = repository.findById(id).orElse(null);
-
-        if (entry == null) {
-            VideoViewCrdt newEntry = new VideoViewCrdt(videoId, sourceReplicaId);
-            newEntry.setViewCount(receivedCount);
-            newEntry.setLastUpdated(System.currentTimeMillis());
-            repository.save(newEntry);
-        } else {
-            if (receivedCount > entry.getViewCount()) {
-                entry.setViewCount(receivedCount);
-                entry.setLastUpdated(System.currentTimeMillis());
-                repository.save(entry);
-            }
-        }
+        if (replicaId.equals(sourceReplicaId)) return; // own counter is incremented, never overwritten
+
+        Map<VideoViewCrdt.VideoViewCrdtId, Long> received = new HashMap<>();
+        received.put(new VideoViewCrdt.VideoViewCrdtId(videoId, sourceReplicaId), receivedCount);
+        mergeCounters(received);
 
         System.out.println("[CRDT Sync] Merged replica " + sourceReplicaId +
                 " for video " + videoId + ". New count: " + receivedCount);
     }
 
-    @Value("${replicas.urls:}")
-    private String[] otherReplicaUrls;
-
-    private final RestTemplate restTemplate = new RestTemplate();
-
-    public void broadcastToOtherReplicas(Long videoId) {
-        VideoViewCrdt.VideoViewCrdtId id = new VideoViewCrdt.VideoViewCrdtId(videoId, replicaId);
-        Long myLocalCount = repository.findById(id)
-                .map(VideoViewCrdt::getViewCount)
-                .orElse(0L);
+    /**
+     * Applies a whole delta batch from one replica in a single transaction:
+     * one lookup for all its counters, max-merge, one batched write.
+     */
+    @Transactional
+    public int mergeBatch(CrdtDeltaBatchDto batch) {
+        if (batch.videoIds().size() != batch.counts().size()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "videoIds and counts must have the same length");
+        }
 
-        CrdtSyncMessageDto message = new CrdtSyncMessageDto();
-        message.setSourceReplicaId(this.replicaId);
-        message.setVideoId(videoId);
-        message.setCount(myLocalCount);
-
-        if (otherReplicaUrls != null) {
-            for (String url : otherReplicaUrls) {
-                if (url.isEmpty()) continue;
-                try {
-                    restTemplate.postForEntity(url + "/api/crdt/sync", message, Void.class);
-                    System.out.println("[CRDT] Sent sync from " + replicaId + " to " + url + " for video " + videoId);
-                } catch (Exception e) {
-                    System.err.println("[CRDT] Failed sync to " + url + ": " + e.getMessage());
-                }
-            }
+        Map<VideoViewCrdt.VideoViewCrdtId, Long> received = new HashMap<>();
+        for (int i = 0; i < batch.videoIds().size(); i++) {
+            received.merge(new VideoViewCrdt.VideoViewCrdtId(batch.videoIds().get(i), batch.sourceReplicaId()),
+                    batch.counts().get(i), Math::max);
         }
+        int changed = mergeCounters(received);
+        int sketchesChanged = uniqueViewers.mergeReplicated(batch.sketches());
+
+        System.out.println("[CRDT Sync] Merged delta from replica " + batch.sourceReplicaId() + ": "
+                + batch.videoIds().size() + " counter(s), " + changed + " changed, "
+                + sketchesChanged + " sketch(es) changed");
+        return changed;
     }
 
+    /**
+     * Counters of any replicas (anti-entropy repair), merged in one transaction.
+     */
     @Transactional
-    public void hardSyncAllReplicas(Long videoId) {
-        if (otherReplicaUrls == null) return;
-
-        for (String url : otherReplicaUrls) {
-            if (url == null || url.isBlank()) continue;
-
-            try {
-                restTemplate.postForEntity(url + "/api/crdt/broadcast/" + videoId, null, Void.class);
-                System.out.println("Triggered broadcast on " + url + " for video " + videoId);
-            } catch (Exception e) {
-                System.err.println("Failed to trigger broadcast on " + url + ": " + e.getMessage());
-            }
+    public int mergeCounters(List<CrdtCounterDto> counters) {
+        Map<VideoViewCrdt.VideoViewCrdtId, Long> received = new HashMap<>();
+        for (CrdtCounterDto c : counters) {
+            received.merge(new VideoViewCrdt.VideoViewCrdtId(c.videoId(), c.replicaId()), c.count(), Math::max);
         }
-
-        broadcastToOtherReplicas(videoId);
+        return mergeCounters(received);
     }
 
+    // G-counter join: keep the max per (video, replica). This replica's own counters are
+    // only ever incremented by ViewCountWriter, never overwritten from a peer's copy.
+    // The rows are locked while merging, so each increase is added to video_view_total
+    // exactly once even when several replicas merge into a shared table.
+    private int mergeCounters(Map<VideoViewCrdt.VideoViewCrdtId, Long> received) {
+        received.keySet().removeIf(id -> replicaId.equals(id.getReplicaId()));
+        if (received.isEmpty()) return 0;
+
+        Map<String, List<Long>> videosByReplica = new HashMap<>();
+        received.keySet().forEach(id ->
+                videosByReplica.computeIfAbsent(id.getReplicaId(), r -> new ArrayList<>()).add(id.getVideoId()));
+
+        Map<VideoViewCrdt.VideoViewCrdtId, VideoViewCrdt> existing = new HashMap<>();
+        videosByReplica.forEach((source, videoIds) -> {
+            for (VideoViewCrdt entry : repository.findAllForUpdate(source, videoIds)) {
+                existing.put(entry.getId(), entry);
+            }
+        });
+
+        long now = System.currentTimeMillis();
+        List<VideoViewCrdt> changed = new ArrayList<>();
+        Map<Long, Long> increases = new HashMap<>();
+        received.forEach((id, count) -> {
+            VideoViewCrdt entry = existing.get(id);
+            long previous = entry != null ? entry.getViewCount() : 0L;
+            if (count <= previous) return;
+
+            if (entry == null) {
+                entry = new VideoViewCrdt(id.getVideoId(), id.getReplicaId());
+            }
+            entry.setViewCount(count);
+            entry.setLastUpdated(now);
+            changed.add(entry);
+            increases.merge(id.getVideoId(), count - previous, Long::sum);
+        });
+        repository.saveAll(changed);
+        writer.addToTotals(increases);
+        invalidateTotals(increases.keySet());
+        merkleTree.changed(increases.keySet());
+        return changed.size();
+    }
 
-    @org.springframework.scheduling.annotation.Scheduled(fixedRate = 120000) // 2 minuta
-    public void periodicSync() {
-        System.out.println("[CRDT] Starting periodic batch sync for replica: " + replicaId);
-
-        List<VideoViewCrdt> myLocalCounters = repository.findAllByReplicaId(replicaId);
+    /**
+     * Pushes this replica's counter for the video to every peer right away,
+     * through the same delta batch the scheduled sync sends.
+     */
+    public void broadcastToOtherReplicas(Long videoId) {
+        VideoViewCrdt.VideoViewCrdtId id = new VideoViewCrdt.VideoViewCrdtId(videoId, replicaId);
+        Long myLocalCount = repository.findById(id)
+                .map(VideoViewCrdt::getViewCount)
+                .orElse(0L);
 
-        if (myLocalCounters.isEmpty()) {
-            System.out.println("[CRDT] No local data to sync.");
-            return;
-        }
+        deltaSync.markDirty(videoId, myLocalCount);
+        deltaSync.shipDeltas();
+    }
 
-        for (VideoViewCrdt counter : myLocalCounters) {
-            broadcastToOtherReplicas(counter.getId().getVideoId());
+    /**
+     * Queues this replica's counters for the videos (all of them if empty) for
+     * every peer - the answer to a peer's resend request. Named videos also get
+     * their viewer sketches; for a replica asking for everything, anti-entropy
+     * brings the sketches over bucket by bucket instead of all in one batch.
+     */
+    @Transactional(readOnly = true)
+    public void resendOwnCounters(List<Long> videoIds) {
+        List<VideoViewCrdt> own = videoIds.isEmpty()
+                ? repository.findAllByReplicaId(replicaId)
+                : repository.findAllById(videoIds.stream()
+                        .map(id -> new VideoViewCrdt.VideoViewCrdtId(id, replicaId))
+                        .toList());
+        for (VideoViewCrdt entry : own) {
+            deltaSync.markDirty(entry.getId().getVideoId(), entry.getViewCount());
         }
+        deltaSync.markSketchesDirty(uniqueViewers.sketchesOf(videoIds));
+        deltaSync.shipDeltas();
+    }
 
-        System.out.println("[CRDT] Batch sync completed for " + myLocalCounters.size() + " videos.");
+    /**
+     * Asks every peer to push its counter for the video and pushes ours. Both go
+     * through the async replication pipeline - the caller never waits on a peer.
+     */
+    public void hardSyncAllReplicas(Long videoId) {
+        deltaSync.requestResend(videoId);
+        broadcastToOtherReplicas(videoId);
     }
 
     public String getReplicaId() {
@@ -0,0 +1,189 @@
+package com.jutjubic.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory view counters for this replica, per video and per (video, day).
+ *
+ * Each key holds a LongAdder - internally striped across cells, so concurrent
+ * views of the same hot video do not contend on one memory location. Adders
+ * are cumulative and never reset; {@link #drain()} hands out the difference
+ * to what was drained before, which keeps the hot path free of any locking
+ * and loses no increment that races with a flush.
+ */
+@Component
+public class ViewCountBuffer {
+
+    public record DayKey(Long videoId, LocalDate day) {}
+
+    public record Batch(Map<Long, Long> videoDeltas, Map<DayKey, Long> dailyDeltas) {
+        public boolean isEmpty() {
+            return videoDeltas.isEmpty() && dailyDeltas.isEmpty();
+        }
+    }
+
+    private final Map<Long, LongAdder> videoViews = new ConcurrentHashMap<>();
+    private final Map<DayKey, LongAdder> dailyViews = new ConcurrentHashMap<>();
+
+    // drained so far, per key - written by the flushing thread only
+    private final Map<Long, Long> videoDrained = new ConcurrentHashMap<>();
+    private final Map<DayKey, Long> dailyDrained = new ConcurrentHashMap<>();
+
+    // drained but not committed to the DB yet
+    private final Map<Long, Long> videoInFlight = new ConcurrentHashMap<>();
+
+    // videos found fully flushed by the last pruneIdleVideos, with the count they had then
+    private final Map<Long, Long> videoIdleAt = new HashMap<>();
+
+    // held exclusively while views move between the buffer and the DB, so a
+    // reader never sees a batch in both (or in neither) - see readConsistent
+    private final StampedLock moveLock = new StampedLock();
+
+    public void record(Long videoId, LocalDate day) {
+        videoViews.computeIfAbsent(videoId, k -> new LongAdder()).increment();
+        dailyViews.computeIfAbsent(new DayKey(videoId, day), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Views counted since the last drain. Must be called by one thread at a time.
+     */
+    public synchronized Batch drain() {
+        long stamp = moveLock.writeLock();
+        try {
+            Batch batch = new Batch(drainAll(videoViews, videoDrained), drainAll(dailyViews, dailyDrained));
+            batch.videoDeltas().forEach((videoId, delta) -> videoInFlight.merge(videoId, delta, Long::sum));
+            return batch;
+        } finally {
+            moveLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Blocks {@link #readConsistent} readers until {@link #endCommit}; wraps only the
+     * COMMIT of a batch whose statements already ran, and its {@link #committed} call.
+     * Readers may hold DB connections while they wait, so nothing inside may need one.
+     */
+    public long beginCommit() {
+        return moveLock.writeLock();
+    }
+
+    public void endCommit(long stamp) {
+        moveLock.unlockWrite(stamp);
+    }
+
+    /**
+     * Runs a read that combines DB totals with {@link #unflushed} so that it sees
+     * no batch twice: optimistically first, again under the read lock if a
+     * drain or commit happened meanwhile.
+     */
+    public <T> T readConsistent(Supplier<T> read) {
+        long stamp = moveLock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = read.get();
+            if (moveLock.validate(stamp)) return result;
+        }
+        stamp = moveLock.readLock();
+        try {
+            return read.get();
+        } finally {
+            moveLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * A batch returned by {@link #drain()} reached the DB.
+     */
+    public void committed(Batch batch) {
+        batch.videoDeltas().forEach((videoId, delta) ->
+                videoInFlight.computeIfPresent(videoId, (k, v) -> v > delta ? v - delta : null));
+    }
+
+    /**
+     * Views of the video counted here that are not in the DB yet - drained or not.
+     */
+    public long unflushed(Long videoId) {
+        LongAdder adder = videoViews.get(videoId);
+        if (adder == null) return 0;
+        return adder.sum() - videoDrained.getOrDefault(videoId, 0L) + videoInFlight.getOrDefault(videoId, 0L);
+    }
+
+    /**
+     * Forgets fully drained day counters older than the given day - no view is recorded for past days.
+     */
+    public synchronized void pruneDaysBefore(LocalDate cutoff) {
+        List<DayKey> stale = new ArrayList<>();
+        for (Map.Entry<DayKey, LongAdder> e : dailyViews.entrySet()) {
+            DayKey key = e.getKey();
+            if (key.day().isBefore(cutoff) && e.getValue().sum() == dailyDrained.getOrDefault(key, 0L)) {
+                stale.add(key);
+            }
+        }
+        for (DayKey key : stale) {
+            dailyViews.remove(key);
+            dailyDrained.remove(key);
+        }
+    }
+
+    /**
+     * Forgets the counters of videos that were fully drained and committed at the
+     * previous call and have not been viewed since, so the maps only hold videos
+     * watched recently. A view racing with the removal lands on the removed adder
+     * and is carried over to a fresh one.
+     */
+    public synchronized void pruneIdleVideos() {
+        List<Long> idle = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> e : videoViews.entrySet()) {
+            Long videoId = e.getKey();
+            long sum = e.getValue().sum();
+            if (sum != videoDrained.getOrDefault(videoId, 0L) || videoInFlight.containsKey(videoId)) {
+                videoIdleAt.remove(videoId);
+            } else if (Long.valueOf(sum).equals(videoIdleAt.put(videoId, sum))) {
+                idle.add(videoId);
+            }
+        }
+        if (idle.isEmpty()) return;
+
+        long stamp = moveLock.writeLock();
+        try {
+            for (Long videoId : idle) {
+                LongAdder adder = videoViews.get(videoId);
+                if (adder == null || !videoViews.remove(videoId, adder)) continue;
+                long drained = videoDrained.getOrDefault(videoId, 0L);
+                videoDrained.remove(videoId);
+                videoIdleAt.remove(videoId);
+                long late = adder.sum() - drained;
+                if (late > 0) videoViews.computeIfAbsent(videoId, k -> new LongAdder()).add(late);
+            }
+        } finally {
+            moveLock.unlockWrite(stamp);
+        }
+    }
+
+    // for tests
+    int trackedVideos() {
+        return videoViews.size();
+    }
+
+    private static <K> Map<K, Long> drainAll(Map<K, LongAdder> counters, Map<K, Long> drained) {
+        Map<K, Long> deltas = new HashMap<>();
+        for (Map.Entry<K, LongAdder> e : counters.entrySet()) {
+            long total = e.getValue().sum();
+            long before = drained.getOrDefault(e.getKey(), 0L);
+            if (total > before) {
+                deltas.put(e.getKey(), total - before);
+                drained.put(e.getKey(), total);
+            }
+        }
+        return deltas;
+    }
+}
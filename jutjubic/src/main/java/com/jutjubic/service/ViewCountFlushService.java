@@ -0,0 +1,197 @@
+package com.jutjubic.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write-behind for {@link ViewCountBuffer}: every flush interval the views counted
+ * in memory are drained into one batch, journaled locally, and written to the DB
+ * by {@link ViewCountWriter} in a single transaction.
+ *
+ * Batches that fail to commit stay in the journal and are retried, in order,
+ * before the next one; after a restart the journal is replayed and the DB
+ * checkpoint filters out batches that did commit before the crash.
+ *
+ * A batch whose journal append fails is still written to the DB and kept in
+ * memory until it commits; its append is retried every tick, in order, until
+ * it either succeeds or the batch reaches the DB.
+ */
+@Service
+public class ViewCountFlushService {
+
+    private final ViewCountBuffer buffer;
+    private final ViewCountJournal journal;
+    private final ViewCountWriter writer;
+    private final CrdtDeltaSyncService deltaSync;
+    private final VideoViewCrdtService crdtService;
+    private final UniqueViewerService uniqueViewers;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${replica.id}")
+    private String replicaId;
+
+    // drained but not yet committed, oldest first
+    private final List<ViewCountJournal.Entry> pending = new ArrayList<>();
+    // the part of pending whose journal append has not succeeded yet, oldest first
+    private final List<ViewCountJournal.Entry> unjournaled = new ArrayList<>();
+    private long lastSeq;
+    private long firstSeqOfThisRun;
+    private boolean recovered;
+
+    public ViewCountFlushService(
+            ViewCountBuffer buffer,
+            ViewCountJournal journal,
+            ViewCountWriter writer,
+            CrdtDeltaSyncService deltaSync,
+            VideoViewCrdtService crdtService,
+            UniqueViewerService uniqueViewers,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.buffer = buffer;
+        this.journal = journal;
+        this.writer = writer;
+        this.deltaSync = deltaSync;
+        this.crdtService = crdtService;
+        this.uniqueViewers = uniqueViewers;
+        this.transactionManager = transactionManager;
+    }
+
+    @Scheduled(fixedDelayString = "${app.views.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        try {
+            recoverOnce();
+
+            ViewCountBuffer.Batch batch = buffer.drain();
+            if (!batch.isEmpty()) {
+                ViewCountJournal.Entry entry = new ViewCountJournal.Entry(++lastSeq, batch);
+                pending.add(entry);
+                unjournaled.add(entry);
+            }
+
+            journalPending();
+            applyPending();
+            buffer.pruneDaysBefore(LocalDate.now().minusDays(1));
+            buffer.pruneIdleVideos();
+            flushSketches();
+
+        } catch (Exception e) {
+            System.err.println("[VIEWS] Flush failed, " + pending.size() + " batch(es) kept for retry: "
+                    + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void recoverOnce() throws Exception {
+        if (recovered) return;
+
+        long applied = writer.lastAppliedSeq(replicaId);
+        lastSeq = applied;
+        for (ViewCountJournal.Entry e : journal.readAll()) {
+            lastSeq = Math.max(lastSeq, e.seq());
+            if (e.seq() > applied) {
+                pending.add(e);
+            }
+        }
+        firstSeqOfThisRun = lastSeq + 1;
+        if (!pending.isEmpty()) {
+            System.out.println("[VIEWS] Replaying " + pending.size() + " journaled batch(es) after restart");
+        }
+        recovered = true;
+    }
+
+    /**
+     * Appends batches that are not in the journal yet, in seq order. Stops at the
+     * first failure so a later batch never lands in the journal before an earlier
+     * one (replay relies on the order). The batches stay in pending either way.
+     */
+    private void journalPending() {
+        while (!unjournaled.isEmpty()) {
+            ViewCountJournal.Entry e = unjournaled.get(0);
+            try {
+                journal.append(e.seq(), e.batch());
+            } catch (IOException ex) {
+                System.err.println("[VIEWS] Journal append failed, " + unjournaled.size()
+                        + " batch(es) held in memory only: " + ex.getMessage());
+                return;
+            }
+            unjournaled.remove(0);
+        }
+    }
+
+    private void applyPending() throws Exception {
+        if (pending.isEmpty()) return;
+
+        Map<Long, Long> flushed = new HashMap<>();
+        while (!pending.isEmpty()) {
+            ViewCountJournal.Entry e = pending.get(0);
+            boolean applied;
+
+            // the batch is written before the buffer lock is taken: readers blocked on
+            // that lock can hold pooled connections, so it must never wait for one
+            TransactionStatus tx = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+            try {
+                applied = writer.apply(replicaId, e.seq(), e.batch());
+                crdtService.invalidateTotals(e.batch().videoDeltas().keySet());
+            } catch (RuntimeException ex) {
+                transactionManager.rollback(tx);
+                throw ex;
+            }
+
+            long stamp = buffer.beginCommit();
+            try {
+                transactionManager.commit(tx);
+
+                // replayed batches were never counted by this process's buffer
+                if (e.seq() >= firstSeqOfThisRun) buffer.committed(e.batch());
+            } finally {
+                buffer.endCommit(stamp);
+            }
+            pending.remove(0);
+            unjournaled.remove(e);
+            if (applied) e.batch().videoDeltas().forEach((videoId, delta) -> flushed.merge(videoId, delta, Long::sum));
+        }
+        journal.clear();
+
+        markForSync(flushed);
+    }
+
+    /**
+     * Unique-viewer sketches are not journaled - a crash loses at most one interval
+     * of viewers from an estimate, never a counted view.
+     */
+    private void flushSketches() {
+        Map<ViewCountBuffer.DayKey, HyperLogLog> sketches = uniqueViewers.drain();
+        if (sketches.isEmpty()) return;
+        try {
+            deltaSync.markSketchesDirty(uniqueViewers.merge(sketches));
+            uniqueViewers.committed();
+        } catch (Exception e) {
+            uniqueViewers.restore(sketches);
+            throw e;
+        }
+    }
+
+    /**
+     * New local totals go into the next delta batch for every peer.
+     */
+    private void markForSync(Map<Long, Long> flushed) {
+        if (flushed.isEmpty()) return;
+        deltaSync.markDirty(writer.localCounts(replicaId, flushed.keySet()));
+    }
+}
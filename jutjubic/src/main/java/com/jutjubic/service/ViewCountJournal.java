@@ -0,0 +1,117 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.ViewCounterProps;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of view-count batches that were drained from memory
+ * but are not committed to the DB yet. A batch is fsynced here before its DB
+ * transaction starts and the journal is truncated once everything in it has
+ * been applied, so a crash or a DB outage mid-flush loses no views.
+ *
+ * Record layout (big-endian):
+ *   int length | long seq | int videoCount | (long videoId, long delta)*
+ *   | int dayCount | (long videoId, long epochDay, long delta)* | int crc32
+ * A torn record at the end (crash during append) fails its CRC and is ignored.
+ */
+@Component
+public class ViewCountJournal {
+
+    public record Entry(long seq, ViewCountBuffer.Batch batch) {}
+
+    private final Path file;
+
+    public ViewCountJournal(ViewCounterProps props, @Value("${replica.id}") String replicaId) {
+        this.file = Paths.get(props.getJournalDir()).toAbsolutePath().normalize()
+                .resolve("views-" + replicaId + ".journal");
+    }
+
+    public synchronized void append(long seq, ViewCountBuffer.Batch batch) throws IOException {
+        Map<Long, Long> videos = batch.videoDeltas();
+        Map<ViewCountBuffer.DayKey, Long> days = batch.dailyDeltas();
+
+        int bodyLength = 8 + 4 + videos.size() * 16 + 4 + days.size() * 24;
+        ByteBuffer buf = ByteBuffer.allocate(4 + bodyLength + 4);
+        buf.putInt(bodyLength);
+        buf.putLong(seq);
+        buf.putInt(videos.size());
+        videos.forEach((videoId, delta) -> buf.putLong(videoId).putLong(delta));
+        buf.putInt(days.size());
+        days.forEach((key, delta) -> buf.putLong(key.videoId()).putLong(key.day().toEpochDay()).putLong(delta));
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 4, bodyLength);
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        Files.createDirectories(file.getParent());
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(false);
+        }
+    }
+
+    public synchronized List<Entry> readAll() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.exists(file)) return entries;
+
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (buf.remaining() >= 4) {
+            int start = buf.position();
+            int bodyLength = buf.getInt();
+            if (bodyLength < 16 || buf.remaining() < bodyLength + 4) break;
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), start + 4, bodyLength);
+            int expected = buf.getInt(start + 4 + bodyLength);
+            if ((int) crc.getValue() != expected) {
+                System.err.println("[VIEWS] Journal record at " + start + " is corrupt, ignoring the rest");
+                break;
+            }
+
+            long seq = buf.getLong();
+            Map<Long, Long> videos = new HashMap<>();
+            int videoCount = buf.getInt();
+            for (int i = 0; i < videoCount; i++) {
+                videos.put(buf.getLong(), buf.getLong());
+            }
+            Map<ViewCountBuffer.DayKey, Long> days = new HashMap<>();
+            int dayCount = buf.getInt();
+            for (int i = 0; i < dayCount; i++) {
+                long videoId = buf.getLong();
+                LocalDate day = LocalDate.ofEpochDay(buf.getLong());
+                days.put(new ViewCountBuffer.DayKey(videoId, day), buf.getLong());
+            }
+            buf.getInt(); // crc
+
+            entries.add(new Entry(seq, new ViewCountBuffer.Batch(videos, days)));
+        }
+        return entries;
+    }
+
+    public synchronized void clear() throws IOException {
+        if (!Files.exists(file)) return;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(0);
+            ch.force(false);
+        }
+    }
+}
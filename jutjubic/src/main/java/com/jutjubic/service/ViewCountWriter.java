@@ -0,0 +1,139 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.ViewFlushCheckpoint;
+import com.jutjubic.repository.ViewFlushCheckpointRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one drained view-count batch to video_view_crdt_*, video_view_total_* and
+ * video_daily_views with multi-row upserts ({@link CounterUpserter}) - no read
+ * before write, no race between two inserts of a new key. The replica's checkpoint
+ * moves in the same transaction, so each journaled batch is applied at most once.
+ */
+@Service
+public class ViewCountWriter {
+
+    private static final CounterUpserter.Target DAILY_TARGET = new CounterUpserter.Target(
+            "daily", "video_daily_views", List.of("video_id", "view_date"), "view_count", List.of());
+
+    private final JdbcTemplate jdbc;
+    private final ViewFlushCheckpointRepository checkpointRepo;
+    private final CounterUpserter upserter;
+    private final CrdtMerkleTreeCache merkleTree;
+    private final String crdtTable;
+    private final CounterUpserter.Target crdtTarget;
+    private final CounterUpserter.Target totalTarget;
+
+    public ViewCountWriter(
+            JdbcTemplate jdbc,
+            ViewFlushCheckpointRepository checkpointRepo,
+            CounterUpserter upserter,
+            CrdtMerkleTreeCache merkleTree,
+            @Value("${replica.table.suffix:default}") String tableSuffix
+    ) {
+        this.jdbc = jdbc;
+        this.checkpointRepo = checkpointRepo;
+        this.upserter = upserter;
+        this.merkleTree = merkleTree;
+        // same physical names ReplicaPhysicalNamingStrategy gives VideoViewCrdt and VideoViewTotal
+        this.crdtTable = "video_view_crdt_" + tableSuffix;
+        this.crdtTarget = new CounterUpserter.Target("crdt", crdtTable,
+                List.of("video_id", "replica_id"), "view_count", List.of("last_updated"));
+        this.totalTarget = new CounterUpserter.Target("total", "video_view_total_" + tableSuffix,
+                List.of("video_id"), "total_views", List.of("last_updated"));
+    }
+
+    public long lastAppliedSeq(String replicaId) {
+        return checkpointRepo.findById(replicaId).map(ViewFlushCheckpoint::getLastSeq).orElse(0L);
+    }
+
+    /**
+     * @return false when the batch was already applied by an earlier run
+     */
+    @Transactional
+    public boolean apply(String replicaId, long seq, ViewCountBuffer.Batch batch) {
+        ViewFlushCheckpoint checkpoint = checkpointRepo.findById(replicaId).orElseGet(() -> {
+            ViewFlushCheckpoint c = new ViewFlushCheckpoint();
+            c.setReplicaId(replicaId);
+            return c;
+        });
+        if (checkpoint.getLastSeq() >= seq) {
+            return false;
+        }
+
+        addVideoViews(replicaId, batch.videoDeltas());
+        addToTotals(batch.videoDeltas());
+        addDailyViews(batch.dailyDeltas());
+        merkleTree.changed(batch.videoDeltas().keySet());
+
+        checkpoint.setLastSeq(seq);
+        checkpoint.setUpdatedAt(Instant.now());
+        checkpointRepo.save(checkpoint);
+        return true;
+    }
+
+    /**
+     * Current counters of this replica for the given videos.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Long> localCounts(String replicaId, Collection<Long> videoIds) {
+        Map<Long, Long> counts = new HashMap<>();
+        if (videoIds.isEmpty()) return counts;
+
+        String placeholders = String.join(",", Collections.nCopies(videoIds.size(), "?"));
+        List<Object> args = new ArrayList<>();
+        args.add(replicaId);
+        args.addAll(videoIds);
+
+        jdbc.query("SELECT video_id, view_count FROM " + crdtTable
+                        + " WHERE replica_id = ? AND video_id IN (" + placeholders + ")",
+                rs -> {
+                    counts.put(rs.getLong(1), rs.getLong(2));
+                },
+                args.toArray());
+        return counts;
+    }
+
+    private void addVideoViews(String replicaId, Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((videoId, delta) -> rows.add(new Object[]{videoId, replicaId, delta, now}));
+        upserter.upsertAdd(crdtTarget, rows);
+    }
+
+    /**
+     * Adds per-video increases to the materialized totals. Joins the caller's
+     * transaction, so a total moves together with the counter row that changed.
+     */
+    @Transactional
+    public void addToTotals(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((videoId, delta) -> rows.add(new Object[]{videoId, delta, now}));
+        upserter.upsertAdd(totalTarget, rows);
+    }
+
+    private void addDailyViews(Map<ViewCountBuffer.DayKey, Long> deltas) {
+        if (deltas.isEmpty()) return;
+
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> rows.add(new Object[]{key.videoId(), Date.valueOf(key.day()), delta}));
+        upserter.upsertAdd(DAILY_TARGET, rows);
+    }
+}
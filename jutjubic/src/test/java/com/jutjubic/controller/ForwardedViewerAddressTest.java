@@ -0,0 +1,98 @@
+package com.jutjubic.controller;
+
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.User;
+import com.jutjubic.repository.PostRepository;
+import com.jutjubic.repository.UserRepository;
+import com.jutjubic.service.VideoViewCrdtService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Anonymous views arriving through nginx: the request comes from the proxy's
+ * address, so the viewer has to be taken from X-Forwarded-For. Runs on a real
+ * port because the header is resolved by Tomcat, which MockMvc bypasses.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "app.views.dedup.enabled=true")
+@ActiveProfiles("test")
+class ForwardedViewerAddressTest {
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Autowired
+    private VideoViewCrdtService viewService;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long postId;
+
+    @BeforeEach
+    void setUp() {
+        User author = new User();
+        author.setUsername("viewed");
+        author.setEmailAdress("viewed@example.com");
+        author.setPassword("password");
+        author.setName("View");
+        author.setSurname("Ed");
+        author = userRepository.save(author);
+
+        Post post = new Post();
+        post.setAuthor(author);
+        post.setTitle("Viewed");
+        post.setVideoUrl("video.mp4");
+        post.setThumbnailUrl("thumb.jpg");
+        postId = postRepository.save(post).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        postRepository.deleteById(postId);
+        userRepository.findByEmailAdress("viewed@example.com").ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void viewersBehindTheProxy_areKeptApart() {
+        double suppressedBefore = registry.counter("views_dedup_suppressed_total").count();
+
+        assertEquals(200, viewFrom(postId, "203.0.113.1").getStatusCode().value());
+        assertEquals(200, viewFrom(postId, "203.0.113.2").getStatusCode().value());
+        assertEquals(200, viewFrom(postId, "203.0.113.1").getStatusCode().value());
+
+        assertEquals(2, viewService.getUniqueViewerCount(postId));
+        // only the second view of 203.0.113.1 is a repeat
+        assertEquals(suppressedBefore + 1, registry.counter("views_dedup_suppressed_total").count());
+    }
+
+    @Test
+    void viewOfUnknownPost_isRejected() {
+        assertEquals(404, viewFrom(postId + 1000, "203.0.113.3").getStatusCode().value());
+        assertEquals(0L, viewService.getTotalViewCount(postId + 1000));
+    }
+
+    private ResponseEntity<Void> viewFrom(long videoId, String clientAddress) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Forwarded-For", clientAddress);
+        return rest.exchange("/api/posts/" + videoId + "/view", HttpMethod.POST, new HttpEntity<>(headers), Void.class);
+    }
+}
@@ -0,0 +1,217 @@
+package com.jutjubic.controller;
+
+import com.jutjubic.config.UploadProperties;
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.User;
+import com.jutjubic.repository.PostRepository;
+import com.jutjubic.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Video responses through the full MVC stack (message conversion included), not just the service.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class VideoStreamingControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UploadProperties uploadProperties;
+
+    private final byte[] content = new byte[1000];
+    private Path file;
+    private Long postId;
+    private String etag;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        for (int i = 0; i < content.length; i++) content[i] = (byte) i;
+
+        Path dir = Paths.get(uploadProperties.getDir()).toAbsolutePath().resolve("videos");
+        Files.createDirectories(dir);
+        file = Files.write(dir.resolve("streaming-test.mp4"), content);
+
+        User author = new User();
+        author.setUsername("streamer");
+        author.setEmailAdress("streamer@example.com");
+        author.setPassword("password");
+        author.setName("Stream");
+        author.setSurname("Er");
+        author = userRepository.save(author);
+
+        Post post = new Post();
+        post.setAuthor(author);
+        post.setTitle("Streaming");
+        post.setVideoUrl("/media/videos/streaming-test.mp4");
+        post.setThumbnailUrl("/media/thumbs/none.jpg");
+        postId = postRepository.save(post).getId();
+
+        etag = mockMvc.perform(get(videoUrl())).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        postRepository.deleteById(postId);
+        userRepository.findByEmailAdress("streamer@example.com").ifPresent(userRepository::delete);
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void noRange_returnsWholeFile() throws Exception {
+        MockHttpServletResponse res = perform(new HttpHeaders());
+
+        assertEquals(200, res.getStatus());
+        assertEquals("bytes", res.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertNotNull(etag);
+        assertArrayEquals(content, res.getContentAsByteArray());
+    }
+
+    @Test
+    void singleRange_returnsPartialContent() throws Exception {
+        HttpHeaders req = new HttpHeaders();
+        req.set(HttpHeaders.RANGE, "bytes=0-99");
+
+        MockHttpServletResponse res = perform(req);
+
+        assertEquals(206, res.getStatus());
+        assertEquals("bytes 0-99/1000", res.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("video/mp4", res.getContentType());
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 100), res.getContentAsByteArray());
+    }
+
+    @Test
+    void multiRange_returnsMultipartByteranges() throws Exception {
+        HttpHeaders req = new HttpHeaders();
+        req.set(HttpHeaders.RANGE, "bytes=0-9,500-509");
+
+        MockHttpServletResponse res = perform(req);
+
+        assertEquals(206, res.getStatus());
+        assertTrue(res.getContentType().startsWith("multipart/byteranges"));
+        String body = new String(res.getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(body.contains("Content-Range: bytes 0-9/1000"));
+        assertTrue(body.contains("Content-Range: bytes 500-509/1000"));
+    }
+
+    @Test
+    void matchingIfRange_returnsPartialContent() throws Exception {
+        HttpHeaders req = new HttpHeaders();
+        req.set(HttpHeaders.RANGE, "bytes=100-199");
+        req.set(HttpHeaders.IF_RANGE, etag);
+
+        MockHttpServletResponse res = perform(req);
+
+        assertEquals(206, res.getStatus());
+        assertEquals("bytes 100-199/1000", res.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), res.getContentAsByteArray());
+    }
+
+    @Test
+    void staleIfRange_returnsWholeFileIgnoringRange() throws Exception {
+        HttpHeaders req = new HttpHeaders();
+        req.set(HttpHeaders.RANGE, "bytes=100-199");
+        req.set(HttpHeaders.IF_RANGE, "\"stale-etag\"");
+
+        MockHttpServletResponse res = perform(req);
+
+        assertEquals(200, res.getStatus());
+        assertNull(res.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(content, res.getContentAsByteArray());
+    }
+
+    @Test
+    void matchingIfNoneMatch_returns304() throws Exception {
+        HttpHeaders req = new HttpHeaders();
+        req.setIfNoneMatch(etag);
+
+        MockHttpServletResponse res = perform(req);
+
+        assertEquals(304, res.getStatus());
+        assertEquals(0, res.getContentAsByteArray().length);
+    }
+
+    @Test
+    void unsatisfiableRange_returns416() throws Exception {
+        HttpHeaders req = new HttpHeaders();
+        req.set(HttpHeaders.RANGE, "bytes=5000-6000");
+
+        MockHttpServletResponse res = perform(req);
+
+        assertEquals(416, res.getStatus());
+        assertEquals("bytes */1000", res.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void premiereInProgress_plainGetIsServedWhole() throws Exception {
+        startPremiere(120);
+
+        MockHttpServletResponse res = perform(new HttpHeaders());
+
+        assertEquals(200, res.getStatus());
+        assertArrayEquals(content, res.getContentAsByteArray());
+    }
+
+    @Test
+    void premiereJoin_reportsOffsetForTheUnindexedFile() throws Exception {
+        startPremiere(120);
+
+        mockMvc.perform(get("/api/posts/" + postId + "/premiere"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.offsetSeconds").value(greaterThanOrEqualTo(120)))
+                .andExpect(jsonPath("$.keyframeSeconds").value(nullValue()))
+                .andExpect(jsonPath("$.videoUrl").value(videoUrl()));
+    }
+
+    @Test
+    void premiereJoin_withoutPremiere_returns404() throws Exception {
+        mockMvc.perform(get("/api/posts/" + postId + "/premiere"))
+                .andExpect(status().isNotFound());
+    }
+
+    private void startPremiere(long secondsAgo) {
+        Post post = postRepository.findById(postId).orElseThrow();
+        post.setScheduledAt(Instant.now().minusSeconds(secondsAgo));
+        post.setDurationSeconds(3600.0);
+        postRepository.save(post);
+    }
+
+    private MockHttpServletResponse perform(HttpHeaders headers) throws Exception {
+        return mockMvc.perform(get(videoUrl()).headers(headers)).andReturn().getResponse();
+    }
+
+    private String videoUrl() {
+        return "/api/posts/" + postId + "/video";
+    }
+}
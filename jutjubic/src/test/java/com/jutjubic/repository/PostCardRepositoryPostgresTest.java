@@ -0,0 +1,19 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.PostgresTestDatabase;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * {@link PostCardRepositoryTest} against a real PostgreSQL; with -Dbenchmark=true
+ * this is where the production plans come from.
+ */
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "initdb refuses to run as root")
+class PostCardRepositoryPostgresTest extends PostCardRepositoryTest {
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        PostgresTestDatabase.register(registry);
+    }
+}
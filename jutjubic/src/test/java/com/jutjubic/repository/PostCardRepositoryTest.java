@@ -0,0 +1,286 @@
+package com.jutjubic.repository;
+
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.PostLike;
+import com.jutjubic.domain.User;
+import com.jutjubic.dto.PostViewDto;
+import com.jutjubic.service.DatabaseDialect;
+import com.jutjubic.service.LikedPostsService;
+import com.jutjubic.service.PostLikeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PostCardRepositoryTest {
+
+    // the PostViewDto projection as it was before the read model: comment and like
+    // counts per row, plus a LEFT JOIN on comments that the GROUP BY folds back
+    private static final String LEGACY_CARD_SQL = """
+            SELECT p.id, p.title, p.description, p.tags_text, p.video_url, p.created_at,
+                   a.id, a.username, a.name, a.surname, a.profile_image_url,
+                   (SELECT COUNT(*) FROM comments c2 WHERE c2.post_id = p.id),
+                   (SELECT COUNT(*) FROM post_likes l WHERE l.post_id = p.id),
+                   (SELECT COUNT(*) > 0 FROM post_likes l JOIN users u ON u.id = l.user_id
+                    WHERE l.post_id = p.id AND u.username = :viewer),
+                   p.view_count, p.scheduled_at, p.duration_seconds
+            FROM posts p
+            JOIN users a ON a.id = p.author_id
+            LEFT JOIN comments c ON c.post_id = p.id
+            WHERE %s (p.scheduled_at IS NULL OR p.scheduled_at <= CURRENT_TIMESTAMP)
+            GROUP BY p.id, p.title, p.description, p.tags_text, p.video_url, p.created_at,
+                     a.id, a.username, a.name, a.surname, a.profile_image_url,
+                     p.view_count, p.scheduled_at, p.duration_seconds
+            ORDER BY p.created_at DESC, p.id DESC
+            LIMIT 20
+            """;
+
+    @Autowired
+    private PostCardRepository postCardRepository;
+
+    @Autowired
+    private LikedPostsService likedPostsService;
+
+    @Autowired
+    private PostLikeService postLikeService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostLikeRepository postLikeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbc;
+
+    @Autowired
+    private DatabaseDialect dialect;
+
+    @BeforeEach
+    void setUp() {
+        postLikeRepository.deleteAll();
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    // other test classes clear posts without knowing about likes
+    @AfterEach
+    void tearDown() {
+        postLikeRepository.deleteAll();
+    }
+
+    @Test
+    void cardsCarryCountersAndViewerLike() {
+        User author = saveUser("cardauthor");
+        User viewer = saveUser("cardviewer");
+        Post first = savePost(author, "first", 4L);
+        Post second = savePost(author, "second", 0L);
+        postLikeRepository.save(new PostLike(second, viewer));
+
+        List<PostViewDto> cards = postCardRepository.findAllByIdsInOrder(List.of(second.getId(), first.getId()));
+        assertEquals(List.of(second.getId(), first.getId()), cards.stream().map(PostViewDto::getId).toList());
+        assertEquals(4L, cards.get(1).getCommentCount());
+        assertEquals("cardauthor", cards.get(0).getAuthor().getUsername());
+
+        assertEquals(2, postCardRepository.findByAuthorNewestFirst("cardauthor").size());
+        assertTrue(postCardRepository.findById(first.getId()).isPresent());
+    }
+
+    @Test
+    void likedByMeComesFromViewerBitmap() {
+        User author = saveUser("bitmapauthor");
+        User viewer = saveUser("bitmapviewer");
+        Post liked = savePost(author, "liked", 0L);
+        Post other = savePost(author, "other", 0L);
+        postLikeRepository.save(new PostLike(liked, viewer));
+
+        List<PostViewDto> cards = likedPostsService.withLikedByMe(
+                postCardRepository.findByAuthorNewestFirst("bitmapauthor"), "bitmapviewer@example.com");
+        assertEquals(List.of(other.getId(), liked.getId()), cards.stream().map(PostViewDto::getId).toList());
+        assertEquals(List.of(false, true), cards.stream().map(PostViewDto::getLikedByMe).toList());
+
+        // a toggle updates the cached bitmap without a reload
+        postLikeService.toggle(other.getId(), "bitmapviewer@example.com");
+        assertTrue(likedPostsService.isLiked(viewer.getId(), other.getId()));
+
+        likedPostsService.withLikedByMe(cards, null);
+        assertTrue(cards.stream().noneMatch(PostViewDto::getLikedByMe));
+    }
+
+    /**
+     * Plan and latency of the legacy projection vs the read model on a seeded dataset.
+     * Run with: mvn test -Dtest=PostCardRepositoryPostgresTest -Dbenchmark=true
+     * (sizes: -Dbenchmark.posts=100000 -Dbenchmark.comments=5000000 -Dbenchmark.likes=10000000;
+     * PostCardRepositoryTest runs the same on the in-memory H2, which needs a few GB of heap
+     * at full size and does not give production plans)
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark_legacyProjectionVsReadModel() {
+        long posts = Long.getLong("benchmark.posts", 100_000);
+        long comments = Long.getLong("benchmark.comments", 5_000_000);
+        long likes = Long.getLong("benchmark.likes", 10_000_000);
+        long users = Math.max(1_000, likes / posts + 1); // enough for distinct (post, user) likes
+
+        try {
+            runBenchmark(users, posts, comments, likes);
+        } finally {
+            for (String table : List.of("comments", "post_likes", "posts", "users")) {
+                jdbcTemplate.update("DELETE FROM " + table);
+            }
+        }
+    }
+
+    private void runBenchmark(long users, long posts, long comments, long likes) {
+        long t0 = System.nanoTime();
+        seed(users, posts, comments, likes);
+        System.out.printf("Seeded %d users, %d posts, %d comments, %d likes in %d s%n",
+                users, posts, comments, likes, (System.nanoTime() - t0) / 1_000_000_000);
+
+        String viewer = "bench1";
+        String viewerEmail = "bench1@example.com";
+        String author = "bench7";
+        MapSqlParameterSource legacyFeed = new MapSqlParameterSource("viewer", viewer);
+        MapSqlParameterSource legacyAuthor = new MapSqlParameterSource("viewer", viewer).addValue("author", author);
+        String legacyFeedSql = LEGACY_CARD_SQL.formatted("");
+        String legacyAuthorSql = LEGACY_CARD_SQL.formatted("a.username = :author AND");
+
+        printPlan("legacy feed page", legacyFeedSql, legacyFeed);
+        printPlan("read-model feed page", PostCardRepository.SELECT_CARD + " WHERE " + PostCardRepository.VISIBLE
+                + " ORDER BY p.created_at DESC, p.id DESC LIMIT 21", new MapSqlParameterSource());
+        printPlan("legacy author page", legacyAuthorSql, legacyAuthor);
+        printPlan("read-model author page", PostCardRepository.SELECT_CARD + " WHERE a.username = :author AND "
+                + PostCardRepository.VISIBLE + " ORDER BY p.created_at DESC", new MapSqlParameterSource("author", author));
+
+        report("feed page (20)",
+                time(() -> namedJdbc.queryForList(legacyFeedSql, legacyFeed)),
+                time(() -> likedPostsService.withLikedByMe(postCardRepository.findFeedFirstPage(21), viewerEmail)));
+        report("author page",
+                time(() -> namedJdbc.queryForList(legacyAuthorSql, legacyAuthor)),
+                time(() -> likedPostsService.withLikedByMe(postCardRepository.findByAuthorNewestFirst(author), viewerEmail)));
+
+        // a cursor near the end of the feed: keyset paging should cost the same at any depth
+        Map<String, Object> deep = jdbcTemplate.queryForMap(
+                "SELECT created_at, id FROM posts ORDER BY created_at DESC, id DESC OFFSET ? LIMIT 1", posts * 99 / 100);
+        Timestamp deepCreatedAt = (Timestamp) deep.get("created_at");
+        long deepId = ((Number) deep.get("id")).longValue();
+        MapSqlParameterSource cursor = new MapSqlParameterSource("createdAt", deepCreatedAt).addValue("id", deepId);
+        String orCursorSql = PostCardRepository.SELECT_CARD
+                + " WHERE (p.created_at < :createdAt OR (p.created_at = :createdAt AND p.id < :id)) AND "
+                + PostCardRepository.VISIBLE + " ORDER BY p.created_at DESC, p.id DESC LIMIT 21";
+        printPlan("deep cursor, OR predicate", orCursorSql, cursor);
+        printPlan("deep cursor, row value", PostCardRepository.SELECT_CARD
+                + " WHERE (p.created_at, p.id) < (:createdAt, :id) AND " + PostCardRepository.VISIBLE
+                + " ORDER BY p.created_at DESC, p.id DESC LIMIT 21", cursor);
+        report("deep cursor page (OR vs row value)",
+                time(() -> namedJdbc.queryForList(orCursorSql, cursor)),
+                time(() -> postCardRepository.findFeedPageAfter(deepCreatedAt.toInstant(), deepId, 21)));
+    }
+
+    private void seed(long users, long posts, long comments, long likes) {
+        jdbcTemplate.update("INSERT INTO users (username, password, email_adress, name, surname, active) "
+                + "SELECT CONCAT('bench', t.x), 'x', CONCAT('bench', t.x, '@example.com'), 'Bench', 'User', TRUE FROM "
+                + range(users));
+        Long firstUser = jdbcTemplate.queryForObject("SELECT MIN(id) FROM users", Long.class);
+        Instant base = Instant.now().minusSeconds(posts);
+        // comments and likes below go round-robin over the posts, so the counters are known up front
+        jdbcTemplate.update("INSERT INTO posts (author_id, title, video_url, thumbnail_url, created_at, view_count, "
+                + "like_count, comment_count) SELECT ? + MOD(t.x, ?), CONCAT('Post ', t.x), 'v.mp4', 't.jpg', "
+                + plusSeconds("CAST(? AS TIMESTAMP WITH TIME ZONE)", "t.x") + ", 0, "
+                + "? + CASE WHEN t.x < ? THEN 1 ELSE 0 END, ? + CASE WHEN t.x < ? THEN 1 ELSE 0 END FROM " + range(posts),
+                firstUser, users, Timestamp.from(base),
+                likes / posts, likes % posts, comments / posts, comments % posts);
+        Long firstPost = jdbcTemplate.queryForObject("SELECT MIN(id) FROM posts", Long.class);
+        jdbcTemplate.update("INSERT INTO comments (post_id, author_id, text, created_at) "
+                + "SELECT ? + MOD(t.x, ?), ? + MOD(t.x, ?), 'comment', CURRENT_TIMESTAMP FROM " + range(comments),
+                firstPost, posts, firstUser, users);
+        // likes t.x and t.x + posts land on the same post, never with the same user
+        jdbcTemplate.update("INSERT INTO post_likes (post_id, user_id) "
+                + "SELECT ? + MOD(t.x, ?), ? + MOD(t.x / ?, ?) FROM " + range(likes),
+                firstPost, posts, firstUser, posts, users);
+        if (isPostgres()) jdbcTemplate.execute("ANALYZE");
+    }
+
+    private String range(long n) {
+        return isPostgres() ? "generate_series(0, " + (n - 1) + ") AS t(x)" : "SYSTEM_RANGE(0, " + (n - 1) + ") t";
+    }
+
+    private String plusSeconds(String timestamp, String seconds) {
+        return isPostgres() ? timestamp + " + " + seconds + " * INTERVAL '1 second'"
+                : "DATEADD(SECOND, " + seconds + ", " + timestamp + ")";
+    }
+
+    private boolean isPostgres() {
+        return dialect.isPostgres();
+    }
+
+    private void printPlan(String label, String sql, MapSqlParameterSource params) {
+        String explain = isPostgres() ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ";
+        List<String> plan = namedJdbc.queryForList(explain + sql, params, String.class);
+        System.out.println("--- plan: " + label + " ---");
+        plan.forEach(System.out::println);
+    }
+
+    private static long[] time(Supplier<List<?>> query) {
+        for (int i = 0; i < 3; i++) query.get();   // warm-up
+        long[] nanos = new long[10];
+        for (int i = 0; i < nanos.length; i++) {
+            long t = System.nanoTime();
+            query.get();
+            nanos[i] = System.nanoTime() - t;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String label, long[] legacy, long[] readModel) {
+        System.out.printf("%s: legacy p50 %.1f ms / max %.1f ms, read model p50 %.1f ms / max %.1f ms (%.0fx)%n",
+                label,
+                legacy[legacy.length / 2] / 1e6, legacy[legacy.length - 1] / 1e6,
+                readModel[readModel.length / 2] / 1e6, readModel[readModel.length - 1] / 1e6,
+                (double) legacy[legacy.length / 2] / readModel[readModel.length / 2]);
+    }
+
+    private User saveUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmailAdress(username + "@example.com");
+        user.setPassword("password");
+        user.setName("Card");
+        user.setSurname("User");
+        return userRepository.save(user);
+    }
+
+    private Post savePost(User author, String title, long commentCount) {
+        Post post = new Post();
+        post.setAuthor(author);
+        post.setTitle(title);
+        post.setVideoUrl("video.mp4");
+        post.setThumbnailUrl("thumb.jpg");
+        post.setCommentCount(commentCount);
+        return postRepository.save(post);
+    }
+}
@@ -0,0 +1,133 @@
+package com.jutjubic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.jutjubic.dto.MerkleNodesDto;
+import com.jutjubic.dto.ViewerSketchDto;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One anti-entropy round against a fake peer: a JDK HttpServer that serves the
+ * Merkle nodes and bucket contents of its own tree and records the delta
+ * batches pushed to it.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CrdtAntiEntropyServiceTest {
+
+    private static final long VIDEO = 9_200_001L;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final List<CrdtDeltaBatchDto> received = new CopyOnWriteArrayList<>();
+    private static volatile CrdtMerkleTree peerTree = new CrdtMerkleTree.Builder().build();
+    private static volatile List<ViewerSketchDto> peerSketches = List.of();
+    private static HttpServer peer;
+
+    @Autowired
+    private CrdtAntiEntropyService antiEntropy;
+
+    @Autowired
+    private UniqueViewerService uniqueViewers;
+
+    @DynamicPropertySource
+    static void peerProperties(DynamicPropertyRegistry registry) throws IOException {
+        peer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        peer.createContext("/api/crdt/merkle", CrdtAntiEntropyServiceTest::serveNodes);
+        peer.createContext("/api/crdt/merkle/buckets", ex -> respond(ex, List.of()));
+        peer.createContext("/api/crdt/merkle/sketches", ex -> respond(ex, peerSketches));
+        peer.createContext("/api/crdt/sync/batch", ex -> {
+            received.add(JSON.readValue(ex.getRequestBody(), CrdtDeltaBatchDto.class));
+            ex.sendResponseHeaders(200, -1);
+            ex.close();
+        });
+        peer.start();
+        registry.add("replicas.urls", () -> "http://localhost:" + peer.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopPeer() {
+        peer.stop(0);
+    }
+
+    @Test
+    void round_pullsThePeersSketch_andPushesTheViewersItLacks() throws Exception {
+        LocalDate day = LocalDate.of(2026, 10, 1);
+        HyperLogLog ours = new HyperLogLog();
+        ours.add(HyperLogLog.hash("user:local"));
+        uniqueViewers.merge(Map.of(new ViewCountBuffer.DayKey(VIDEO, day), ours));
+
+        HyperLogLog theirs = new HyperLogLog();
+        theirs.add(HyperLogLog.hash("user:remote"));
+        peerSketches = List.of(new ViewerSketchDto(VIDEO, day.toEpochDay(), theirs.toBytes()));
+        peerTree = new CrdtMerkleTree.Builder().addSketch(VIDEO, day.toEpochDay(), theirs.toBytes()).build();
+
+        antiEntropy.reconcileAll();
+
+        assertEquals(2, uniqueViewers.estimate(VIDEO, day));
+        HyperLogLog both = theirs.copy();
+        both.merge(ours);
+        assertArrayEquals(both.toBytes(), awaitPushed(VIDEO, day).registers());
+    }
+
+    private static ViewerSketchDto awaitPushed(long videoId, LocalDate day) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            for (CrdtDeltaBatchDto batch : received) {
+                for (ViewerSketchDto s : batch.sketches()) {
+                    if (s.videoId() == videoId && s.epochDay() == day.toEpochDay()) return s;
+                }
+            }
+            Thread.sleep(50);
+        }
+        return fail("no sketch for video " + videoId + " was pushed to the peer");
+    }
+
+    private static void serveNodes(HttpExchange ex) throws IOException {
+        int level = 0;
+        String parents = "";
+        for (String param : ex.getRequestURI().getQuery().split("&")) {
+            String[] kv = param.split("=", 2);
+            if (kv[0].equals("level")) level = Integer.parseInt(kv[1]);
+            if (kv[0].equals("parents")) parents = kv[1];
+        }
+        List<Integer> indexes = new ArrayList<>();
+        if (level == 0) {
+            indexes.add(0);
+        } else {
+            for (String parent : parents.split(",")) {
+                for (int c = 0; c < CrdtMerkleTree.FANOUT; c++) {
+                    indexes.add(Integer.parseInt(parent) * CrdtMerkleTree.FANOUT + c);
+                }
+            }
+        }
+        int nodeLevel = level;
+        respond(ex, new MerkleNodesDto(level, indexes,
+                indexes.stream().map(i -> peerTree.node(nodeLevel, i)).toList()));
+    }
+
+    private static void respond(HttpExchange ex, Object body) throws IOException {
+        byte[] bytes = JSON.writeValueAsBytes(body);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, bytes.length);
+        ex.getResponseBody().write(bytes);
+        ex.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.jutjubic.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrdtDeltaSyncServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer peer;
+    private CrdtDeltaSyncService sync;
+
+    @AfterEach
+    void tearDown() {
+        if (sync != null) sync.stop();
+        if (peer != null) peer.stop(0);
+    }
+
+    @Test
+    void coalescesPerVideo_dropsWhenFull_andRetriesAfterFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        BlockingQueue<CrdtDeltaBatchDto> received = new LinkedBlockingQueue<>();
+
+        peer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        peer.createContext("/api/crdt/sync/batch", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            // the first delivery fails - the batch must come back on retry
+            int status = calls.incrementAndGet() == 1 ? 500 : 200;
+            if (status == 200) received.add(objectMapper.readValue(body, CrdtDeltaBatchDto.class));
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        peer.start();
+        String url = "http://127.0.0.1:" + peer.getAddress().getPort();
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sync = new CrdtDeltaSyncService("r1", new String[]{url}, 200, 1000, 2, 100, objectMapper, registry, null);
+        sync.start();
+
+        sync.markDirty(1L, 5L);
+        sync.markDirty(1L, 7L);
+        sync.markDirty(1L, 6L);  // stale, ignored
+        sync.markDirty(2L, 3L);
+        sync.markDirty(3L, 1L);  // channel holds 2 videos -> dropped
+
+        CrdtDeltaBatchDto batch = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(batch, "delta was not delivered");
+        assertEquals("r1", batch.sourceReplicaId());
+        assertEquals(List.of(7L, 3L), List.of(
+                batch.counts().get(batch.videoIds().indexOf(1L)),
+                batch.counts().get(batch.videoIds().indexOf(2L))));
+        assertEquals(2, batch.videoIds().size());
+
+        assertEquals(1.0, registry.counter("crdt_sync_send_failures_total", "peer", url).count());
+        assertEquals(1.0, registry.counter("crdt_sync_dropped_total").count());
+        assertEquals(0, sync.pendingFor(url));
+        // the sender records latency after the response, which can land after the body above
+        long deadline = System.currentTimeMillis() + 2000;
+        while (registry.find("crdt_sync_send_latency").timer().count() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, registry.find("crdt_sync_send_latency").timer().count());
+    }
+}
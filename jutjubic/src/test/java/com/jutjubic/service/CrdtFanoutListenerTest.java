@@ -0,0 +1,49 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.CrdtSyncConfig;
+import com.jutjubic.config.ViewCounterProps;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.jutjubic.proto.CrdtSyncProto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrdtFanoutListenerTest {
+
+    @Test
+    void failedMerge_isDroppedInsteadOfRequeued_andMemberUrlIsLearned() {
+        AtomicInteger merges = new AtomicInteger();
+        VideoViewCrdtService crdt = new VideoViewCrdtService(null, null, null, null, null, null, null, null,
+                new ViewCounterProps()) {
+            @Override
+            public int mergeBatch(CrdtDeltaBatchDto batch) {
+                merges.incrementAndGet();
+                throw new DataAccessResourceFailureException("database is down");
+            }
+        };
+        CrdtFanoutListener listener = new CrdtFanoutListener(crdt, new CrdtSyncConfig(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(listener, "replicaId", "r1");
+
+        CrdtSyncProto.CrdtSync delta = CrdtSyncProto.CrdtSync.newBuilder()
+                .setKind(CrdtSyncProto.CrdtSync.Kind.DELTA)
+                .setSourceReplicaId("r2")
+                .setSourceUrl("http://replica-2:8080")
+                .setSentAt(System.currentTimeMillis())
+                .addVideoIds(1L)
+                .addCounts(5L)
+                .build();
+
+        // an exception escaping the listener would make the container requeue the message
+        assertDoesNotThrow(() -> listener.onMessage(new Message(delta.toByteArray(), new MessageProperties())));
+        assertEquals(1, merges.get());
+        assertEquals(List.of("http://replica-2:8080"), listener.memberUrls());
+    }
+}
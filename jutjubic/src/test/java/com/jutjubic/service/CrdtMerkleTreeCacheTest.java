@@ -0,0 +1,106 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.VideoViewCrdt;
+import com.jutjubic.dto.CrdtCounterDto;
+import com.jutjubic.dto.ViewerSketchDto;
+import com.jutjubic.repository.VideoViewCrdtRepository;
+import com.jutjubic.repository.VideoViewerSketchRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Only the buckets of leaves reported as changed are compared: other test
+ * classes write counters and sketches straight through the repositories, which a cached tree
+ * does not see until its full rebuild.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CrdtMerkleTreeCacheTest {
+
+    private static final int LEAF = CrdtMerkleTree.DEPTH;
+
+    @Autowired
+    private CrdtMerkleTreeCache treeCache;
+
+    @Autowired
+    private VideoViewCrdtService crdtService;
+
+    @Autowired
+    private ViewCountWriter writer;
+
+    @Autowired
+    private UniqueViewerService uniqueViewers;
+
+    @Autowired
+    private VideoViewCrdtRepository repository;
+
+    @Autowired
+    private VideoViewerSketchRepository sketchRepository;
+
+    @Test
+    void mergedAndFlushedCounters_refreshTheirBuckets() {
+        long merged = 9_100_001L;
+        long flushed = 9_100_002L;
+        CrdtMerkleTree before = treeCache.tree();
+
+        crdtService.mergeCounters(List.of(new CrdtCounterDto(merged, "replica_tree", 7L)));
+        writer.apply("replica_tree_own", 1, new ViewCountBuffer.Batch(Map.of(flushed, 4L), Map.of()));
+
+        CrdtMerkleTree after = treeCache.tree();
+        CrdtMerkleTree full = fullBuild();
+        for (long videoId : List.of(merged, flushed)) {
+            int bucket = CrdtMerkleTree.bucketOf(videoId);
+            assertNotEquals(before.node(LEAF, bucket), after.node(LEAF, bucket));
+            assertEquals(full.node(LEAF, bucket), after.node(LEAF, bucket));
+        }
+    }
+
+    @Test
+    void unchangedBuckets_areNotReadAgain() {
+        long videoId = 9_100_003L;
+        int bucket = CrdtMerkleTree.bucketOf(videoId);
+        long before = treeCache.tree().node(LEAF, bucket);
+
+        VideoViewCrdt row = new VideoViewCrdt(videoId, "replica_tree");
+        row.setViewCount(3L);
+        repository.save(row);
+        assertEquals(before, treeCache.tree().node(LEAF, bucket));
+
+        treeCache.changed(List.of(videoId));
+        assertEquals(fullBuild().node(LEAF, bucket), treeCache.tree().node(LEAF, bucket));
+        assertNotEquals(before, treeCache.tree().node(LEAF, bucket));
+    }
+
+    @Test
+    void mergedSketch_refreshesItsBucket() {
+        long videoId = 9_100_004L;
+        int bucket = CrdtMerkleTree.bucketOf(videoId);
+        long before = treeCache.tree().node(LEAF, bucket);
+
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add(HyperLogLog.hash("user:tree"));
+        uniqueViewers.mergeReplicated(List.of(new ViewerSketchDto(videoId, 20000, sketch.toBytes())));
+
+        assertNotEquals(before, treeCache.tree().node(LEAF, bucket));
+        assertEquals(fullBuild().node(LEAF, bucket), treeCache.tree().node(LEAF, bucket));
+    }
+
+    private CrdtMerkleTree fullBuild() {
+        CrdtMerkleTree.Builder builder = new CrdtMerkleTree.Builder();
+        for (Object[] row : repository.findAllCounterValues()) {
+            builder.add((Long) row[0], (String) row[1], (Long) row[2]);
+        }
+        for (Object[] row : sketchRepository.findAllSketchValues()) {
+            builder.addSketch((Long) row[0], ((LocalDate) row[1]).toEpochDay(), (byte[]) row[2]);
+        }
+        return builder.build();
+    }
+}
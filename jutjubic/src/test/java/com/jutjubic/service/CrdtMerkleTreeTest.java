@@ -0,0 +1,55 @@
+package com.jutjubic.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrdtMerkleTreeTest {
+
+    @Test
+    void sameCounters_inAnyOrder_giveSameRoot() {
+        CrdtMerkleTree a = new CrdtMerkleTree.Builder()
+                .add(1, "replica_1", 10).add(2, "replica_2", 5).add(4097, "replica_1", 3).build();
+        CrdtMerkleTree b = new CrdtMerkleTree.Builder()
+                .add(4097, "replica_1", 3).add(1, "replica_1", 10).add(2, "replica_2", 5).build();
+
+        assertEquals(a.root(), b.root());
+    }
+
+    @Test
+    void differentCount_differsOnlyAlongItsBucketsPath() {
+        CrdtMerkleTree a = new CrdtMerkleTree.Builder().add(1, "replica_1", 10).add(300, "replica_2", 5).build();
+        CrdtMerkleTree b = new CrdtMerkleTree.Builder().add(1, "replica_1", 10).add(300, "replica_2", 6).build();
+
+        assertNotEquals(a.root(), b.root());
+
+        int bucket = CrdtMerkleTree.bucketOf(300);
+        for (int level = CrdtMerkleTree.DEPTH, index = bucket; level >= 1; level--, index /= CrdtMerkleTree.FANOUT) {
+            int nodes = (int) Math.pow(CrdtMerkleTree.FANOUT, level);
+            for (int i = 0; i < nodes; i++) {
+                if (i == index) {
+                    assertNotEquals(a.node(level, i), b.node(level, i));
+                } else {
+                    assertEquals(a.node(level, i), b.node(level, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void sketchWithAnotherViewer_changesItsBucket_andIsNotACounter() {
+        HyperLogLog one = new HyperLogLog();
+        one.add(HyperLogLog.hash("user:a"));
+        HyperLogLog two = one.copy();
+        two.add(HyperLogLog.hash("user:b"));
+
+        CrdtMerkleTree a = new CrdtMerkleTree.Builder().addSketch(300, 20000, one.toBytes()).build();
+        CrdtMerkleTree b = new CrdtMerkleTree.Builder().addSketch(300, 20000, two.toBytes()).build();
+        CrdtMerkleTree same = new CrdtMerkleTree.Builder().addSketch(300, 20000, one.copy().toBytes()).build();
+
+        int bucket = CrdtMerkleTree.bucketOf(300);
+        assertNotEquals(a.node(CrdtMerkleTree.DEPTH, bucket), b.node(CrdtMerkleTree.DEPTH, bucket));
+        assertEquals(a.root(), same.root());
+        assertNotEquals(new CrdtMerkleTree.Builder().build().root(), a.root());
+    }
+}
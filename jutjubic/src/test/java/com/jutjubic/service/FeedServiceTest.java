@@ -0,0 +1,116 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.User;
+import com.jutjubic.dto.FeedPageDto;
+import com.jutjubic.dto.PostViewDto;
+import com.jutjubic.repository.PostRepository;
+import com.jutjubic.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class FeedServiceTest {
+
+    @Autowired
+    private FeedService feedService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<Long> expectedOrder = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User author = new User();
+        author.setUsername("feeduser");
+        author.setEmailAdress("feed@example.com");
+        author.setPassword("password");
+        author.setName("Feed");
+        author.setSurname("User");
+        author = userRepository.save(author);
+
+        Instant base = Instant.now().minus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+        // two posts share a timestamp, so the id has to break the tie
+        List<Long> ids = new ArrayList<>();
+        ids.add(save(author, base, null));
+        ids.add(save(author, base.plusSeconds(10), null));
+        ids.add(save(author, base.plusSeconds(10), null));
+        ids.add(save(author, base.plusSeconds(20), null));
+        ids.add(save(author, base.plusSeconds(30), null));
+        save(author, base.plusSeconds(40), Instant.now().plus(1, ChronoUnit.DAYS)); // not premiered yet
+
+        expectedOrder.clear();
+        expectedOrder.addAll(List.of(ids.get(4), ids.get(3), ids.get(2), ids.get(1), ids.get(0)));
+    }
+
+    @Test
+    void walksFeedNewestFirstWithoutGapsOrDuplicates() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            FeedPageDto page = feedService.page(cursor, 2, null);
+            assertTrue(page.items().size() <= 2);
+            page.items().stream().map(PostViewDto::getId).forEach(seen::add);
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expectedOrder, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(ResponseStatusException.class, () -> feedService.page("not-a-cursor", 2, null));
+    }
+
+    @Test
+    void rejectsCursorWithOutOfRangeTime() {
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ByteBuffer.allocate(20).putLong(Long.MAX_VALUE).putInt(0).putLong(1L).array());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> feedService.page(forged, 2, null));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    @Test
+    void cursorRoundTrips() {
+        FeedCursor cursor = new FeedCursor(Instant.ofEpochSecond(1_700_000_000L, 123_456_000), 42L);
+        assertEquals(cursor, FeedCursor.decode(cursor.encode()));
+    }
+
+    private Long save(User author, Instant createdAt, Instant scheduledAt) {
+        Post post = new Post();
+        post.setAuthor(author);
+        post.setTitle("Post " + createdAt);
+        post.setVideoUrl("video.mp4");
+        post.setThumbnailUrl("thumb.jpg");
+        post.setCreatedAt(createdAt);
+        post.setScheduledAt(scheduledAt);
+        return postRepository.save(post).getId();
+    }
+}
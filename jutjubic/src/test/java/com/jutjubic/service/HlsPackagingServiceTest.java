@@ -0,0 +1,73 @@
+package com.jutjubic.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HlsPackagingServiceTest {
+
+    @TempDir
+    Path hlsRoot;
+
+    private final HlsPackagingService service = new HlsPackagingService(null, null);
+
+    @Test
+    void masterListsFinishedRenditionsWithResolutionAndCodecs() throws Exception {
+        rendition("720p", 6_000, "resolution=1280x720\ncodecs=avc1.4d4028,mp4a.40.2\n");
+        rendition("240p", 1_500, "resolution=426x240\ncodecs=avc1.4d4028\n");
+        // still being segmented - no ENDLIST yet
+        Files.createDirectories(hlsRoot.resolve("1080p"));
+        Files.writeString(hlsRoot.resolve("1080p").resolve(HlsPackagingService.MEDIA_PLAYLIST), "#EXTM3U\n");
+
+        service.writeMasterPlaylist(hlsRoot);
+
+        List<String> master = Files.readAllLines(hlsRoot.resolve(HlsPackagingService.MASTER_PLAYLIST));
+        assertEquals(List.of(
+                "#EXTM3U",
+                "#EXT-X-VERSION:3",
+                "#EXT-X-INDEPENDENT-SEGMENTS",
+                "#EXT-X-STREAM-INF:BANDWIDTH=2000,AVERAGE-BANDWIDTH=2000,RESOLUTION=426x240,CODECS=\"avc1.4d4028\"",
+                "240p/index.m3u8",
+                "#EXT-X-STREAM-INF:BANDWIDTH=8000,AVERAGE-BANDWIDTH=8000,RESOLUTION=1280x720,CODECS=\"avc1.4d4028,mp4a.40.2\"",
+                "720p/index.m3u8"
+        ), master);
+    }
+
+    @Test
+    void renditionWithoutVariantInfo_isListedWithBandwidthOnly() throws Exception {
+        rendition("360p", 3_000, null);
+
+        service.writeMasterPlaylist(hlsRoot);
+
+        String master = Files.readString(hlsRoot.resolve(HlsPackagingService.MASTER_PLAYLIST));
+        assertTrue(master.contains("#EXT-X-STREAM-INF:BANDWIDTH=4000,AVERAGE-BANDWIDTH=4000\n360p/index.m3u8\n"), master);
+    }
+
+    @Test
+    void rewritingLeavesNoTempFiles() throws Exception {
+        rendition("240p", 1_500, null);
+        service.writeMasterPlaylist(hlsRoot);
+        rendition("480p", 4_500, null);
+        service.writeMasterPlaylist(hlsRoot);
+
+        try (var files = Files.list(hlsRoot)) {
+            assertEquals(List.of("240p", "480p", HlsPackagingService.MASTER_PLAYLIST),
+                    files.map(f -> f.getFileName().toString()).sorted().toList());
+        }
+        assertTrue(Files.readString(hlsRoot.resolve(HlsPackagingService.MASTER_PLAYLIST)).contains("480p/index.m3u8"));
+    }
+
+    // one finished 6 s segment of the given size
+    private void rendition(String name, int segmentBytes, String variantInfo) throws Exception {
+        Path dir = Files.createDirectories(hlsRoot.resolve(name));
+        Files.write(dir.resolve("seg_00000.ts"), new byte[segmentBytes]);
+        Files.writeString(dir.resolve(HlsPackagingService.MEDIA_PLAYLIST),
+                "#EXTM3U\n#EXTINF:6.000000,\nseg_00000.ts\n#EXT-X-ENDLIST\n");
+        if (variantInfo != null) Files.writeString(dir.resolve("variant.properties"), variantInfo);
+    }
+}
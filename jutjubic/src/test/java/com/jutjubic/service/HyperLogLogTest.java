@@ -0,0 +1,41 @@
+package com.jutjubic.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimate_isWithinErrorBound_andIgnoresRepeats() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100_000; i++) {
+            sketch.add(HyperLogLog.hash("user:" + i));
+            sketch.add(HyperLogLog.hash("user:" + i));  // repeat view
+        }
+        assertEquals(100_000, sketch.estimate(), 100_000 * 0.05);
+
+        HyperLogLog small = new HyperLogLog();
+        for (int i = 0; i < 50; i++) small.add(HyperLogLog.hash("ip:10.0.0." + i));
+        assertEquals(50, small.estimate(), 2);
+    }
+
+    @Test
+    void merge_isUnion_andSurvivesSerialization() {
+        HyperLogLog a = new HyperLogLog();
+        HyperLogLog b = new HyperLogLog();
+        HyperLogLog both = new HyperLogLog();
+        for (int i = 0; i < 20_000; i++) {
+            long h = HyperLogLog.hash("viewer-" + i);
+            (i % 2 == 0 ? a : b).add(h);
+            if (i % 3 == 0) a.add(h);  // overlap
+            both.add(h);
+        }
+
+        HyperLogLog merged = HyperLogLog.fromBytes(a.toBytes());
+        assertTrue(merged.merge(b));
+        assertFalse(merged.merge(b));  // idempotent
+        assertEquals(both, merged);
+        assertEquals(HyperLogLog.REGISTERS, merged.toBytes().length);
+    }
+}
@@ -0,0 +1,48 @@
+package com.jutjubic.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyframeIndexServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void floorReturnsPrecedingKeyframe() throws Exception {
+        Path video = Mp4BoxParserTest.writeMp4(dir.resolve("clip.mp4"));
+        KeyframeIndexService service = new KeyframeIndexService(new Mp4BoxParser());
+
+        var index = service.build(video).orElseThrow();
+        long firstOffset = index.offsets()[0];
+
+        // keyframes at 0s and 5 * 3000/90000 s
+        assertEquals(0, index.floor(0).orElseThrow().timeMicros());
+        assertEquals(0, index.floor(100_000).orElseThrow().timeMicros());
+        assertEquals(166_666, index.floor(166_666).orElseThrow().timeMicros());
+        assertEquals(firstOffset + Mp4BoxParserTest.chunkBytes(0), index.floor(9_000_000).orElseThrow().byteOffset());
+        assertFalse(index.isFaststart());
+    }
+
+    @Test
+    void sidecarIsReusedAndRebuiltWhenStale() throws Exception {
+        Path video = Mp4BoxParserTest.writeMp4(dir.resolve("clip.mp4"));
+        new KeyframeIndexService(new Mp4BoxParser()).build(video);
+        Path sidecar = KeyframeIndexService.sidecar(video.toAbsolutePath());
+        assertTrue(Files.exists(sidecar));
+
+        // fresh service instance (empty cache) reads the sidecar
+        var loaded = new KeyframeIndexService(new Mp4BoxParser()).get(video).orElseThrow();
+        assertEquals(2, loaded.timesMicros().length);
+
+        // touching the video invalidates the sidecar
+        Files.setLastModifiedTime(video, java.nio.file.attribute.FileTime.fromMillis(loaded.videoModified() + 5_000));
+        var rebuilt = new KeyframeIndexService(new Mp4BoxParser()).get(video).orElseThrow();
+        assertEquals(loaded.videoModified() + 5_000, rebuilt.videoModified());
+    }
+}
@@ -0,0 +1,97 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.UploadProperties;
+import com.jutjubic.domain.MediaBlob;
+import com.jutjubic.repository.MediaBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class MediaBlobServiceTest {
+
+    private static final String DIGEST = "ab".repeat(32);
+
+    @Autowired
+    private MediaBlobService mediaBlobService;
+
+    @Autowired
+    private MediaBlobRepository blobRepo;
+
+    @Autowired
+    private UploadProperties uploadProperties;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    @AfterEach
+    void tearDown() {
+        blobRepo.deleteAll();
+    }
+
+    @Test
+    void concurrentFirstUploads_bothBecomeReferences() throws Exception {
+        int uploads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(uploads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < uploads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                tx.executeWithoutResult(s -> mediaBlobService.acquire(DIGEST, MediaBlobService.KIND_VIDEO,
+                        DIGEST + ".mp4", 1000));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : results) f.get();
+        pool.shutdown();
+
+        assertEquals(uploads, blobRepo.findById(DIGEST).orElseThrow().getRefCount());
+    }
+
+    @Test
+    void lastRelease_deletesBlobAndFile() throws Exception {
+        Path videos = Paths.get(uploadProperties.getDir()).toAbsolutePath().normalize()
+                .resolve(uploadProperties.getVideosDir());
+        Files.createDirectories(videos);
+        Path file = Files.write(videos.resolve(DIGEST + ".mp4"), new byte[10]);
+
+        tx.executeWithoutResult(s -> mediaBlobService.acquire(DIGEST, MediaBlobService.KIND_VIDEO, DIGEST + ".mp4", 10));
+        tx.executeWithoutResult(s -> mediaBlobService.acquire(DIGEST, MediaBlobService.KIND_VIDEO, DIGEST + ".mp4", 10));
+
+        tx.executeWithoutResult(s -> mediaBlobService.release(DIGEST));
+        MediaBlob blob = blobRepo.findById(DIGEST).orElseThrow();
+        assertEquals(1, blob.getRefCount());
+        assertTrue(Files.exists(file));
+
+        tx.executeWithoutResult(s -> mediaBlobService.release(DIGEST));
+        assertTrue(blobRepo.findById(DIGEST).isEmpty());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void onlyFirstUploadClaimsTheTranscode() {
+        tx.executeWithoutResult(s -> mediaBlobService.acquire(DIGEST, MediaBlobService.KIND_VIDEO, DIGEST + ".mp4", 10));
+        tx.executeWithoutResult(s -> mediaBlobService.acquire(DIGEST, MediaBlobService.KIND_VIDEO, DIGEST + ".mp4", 10));
+
+        assertTrue(mediaBlobService.claimTranscode(DIGEST));
+        assertFalse(mediaBlobService.claimTranscode(DIGEST));
+    }
+}
@@ -0,0 +1,125 @@
+package com.jutjubic.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaStreamingServiceTest {
+
+    private static final MediaType VIDEO_MP4 = MediaType.parseMediaType("video/mp4");
+
+    @TempDir
+    Path dir;
+
+    private final MediaStreamingService service = new MediaStreamingService();
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = dir.resolve("video.mp4");
+        Files.write(file, new byte[1000]);
+    }
+
+    @Test
+    void noRange_returnsWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse res = stream(new MockHttpServletRequest());
+
+        assertEquals(200, res.getStatus());
+        assertEquals(1000, res.getContentAsByteArray().length);
+        assertEquals("1000", res.getHeader(HttpHeaders.CONTENT_LENGTH));
+        assertNotNull(res.getHeader(HttpHeaders.ETAG));
+        assertNotNull(res.getHeader(HttpHeaders.LAST_MODIFIED));
+    }
+
+    @Test
+    void singleRange_returnsPartialRegion() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+
+        MockHttpServletResponse res = stream(req);
+
+        assertEquals(206, res.getStatus());
+        assertEquals("bytes 100-199/1000", res.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, res.getContentAsByteArray().length);
+    }
+
+    @Test
+    void multiRange_returnsMultipartByteranges() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader(HttpHeaders.RANGE, "bytes=0-9,500-509");
+
+        MockHttpServletResponse res = stream(req);
+
+        assertEquals(206, res.getStatus());
+        assertTrue(res.getContentType().startsWith("multipart/byteranges"));
+    }
+
+    @Test
+    void unsatisfiableRange_returns416() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader(HttpHeaders.RANGE, "bytes=5000-6000");
+
+        MockHttpServletResponse res = stream(req);
+
+        assertEquals(416, res.getStatus());
+        assertEquals("bytes */1000", res.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void matchingIfNoneMatch_returns304() throws Exception {
+        String etag = service.validators(file).etag();
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader(HttpHeaders.IF_NONE_MATCH, "W/" + etag);
+
+        MockHttpServletResponse res = stream(req);
+
+        assertEquals(304, res.getStatus());
+        assertEquals(0, res.getContentAsByteArray().length);
+    }
+
+    @Test
+    void ifModifiedSince_notNewer_returns304() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfModifiedSince(service.validators(file).lastModified() + 5000);
+        req.addHeader(HttpHeaders.IF_MODIFIED_SINCE, conditional.getFirst(HttpHeaders.IF_MODIFIED_SINCE));
+
+        assertEquals(304, stream(req).getStatus());
+    }
+
+    @Test
+    void staleIfRange_ignoresRangeAndReturnsWholeFile() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        req.addHeader(HttpHeaders.IF_RANGE, "\"stale-etag\"");
+
+        MockHttpServletResponse res = stream(req);
+
+        assertEquals(200, res.getStatus());
+        assertEquals(1000, res.getContentAsByteArray().length);
+    }
+
+    @Test
+    void matchingIfRange_honoursRange() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        req.addHeader(HttpHeaders.IF_RANGE, service.validators(file).etag());
+
+        assertEquals(206, stream(req).getStatus());
+    }
+
+    private MockHttpServletResponse stream(MockHttpServletRequest req) throws Exception {
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        service.stream(file, VIDEO_MP4, req, res);
+        return res;
+    }
+}
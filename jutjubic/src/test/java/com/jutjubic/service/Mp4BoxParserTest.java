@@ -0,0 +1,199 @@
+package com.jutjubic.service;
+
+import com.jutjubic.dto.VideoMetadataDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Mp4BoxParserTest {
+
+    private static final int TIMESCALE = 90_000;
+    private static final int SAMPLE_DELTA = 3_000;   // 30 fps
+    private static final int SAMPLES = 10;
+
+    private final Mp4BoxParser parser = new Mp4BoxParser();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesHeaderAndKeyframeTable_withMoovAfterMdat() throws Exception {
+        Path file = writeMp4(dir.resolve("clip.mp4"));
+
+        VideoMetadataDto meta = parser.parse(file);
+
+        assertEquals(10.0, meta.durationSeconds(), 1e-9);
+        assertEquals(1280, meta.width());
+        assertEquals(720, meta.height());
+        assertEquals("h264", meta.videoCodec());
+        assertEquals("aac", meta.audioCodec());
+        assertEquals(Math.round(Files.size(file) * 8 / 10.0), meta.bitrate());
+        assertNull(meta.headerBytes(), "moov after mdat is not faststart");
+
+        // sync samples 1 and 6 -> chunk 1 start, chunk 2 start
+        long mdatPayload = 8 + 16 + 8;
+        assertEquals(List.of(
+                new VideoMetadataDto.Keyframe(0, mdatPayload),
+                new VideoMetadataDto.Keyframe(5L * SAMPLE_DELTA * 1_000_000 / TIMESCALE, mdatPayload + chunkBytes(0))
+        ), meta.keyframes());
+    }
+
+    @Test
+    void rejectsFileWithoutMoov() throws Exception {
+        Path file = dir.resolve("broken.mp4");
+        Files.write(file, box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1)));
+
+        assertThrows(IOException.class, () -> parser.parse(file));
+    }
+
+    @Test
+    void rejectsTruncatedBox() throws Exception {
+        Path file = dir.resolve("truncated.mp4");
+        byte[] full = Files.readAllBytes(writeMp4(dir.resolve("full.mp4")));
+        Files.write(file, java.util.Arrays.copyOf(full, full.length - 20));
+
+        assertThrows(IOException.class, () -> parser.parse(file));
+    }
+
+    @Test
+    void streamScannerCapturesMoovWhileBytesPass() throws Exception {
+        Path file = writeMp4(dir.resolve("stream.mp4"));
+        byte[] bytes = Files.readAllBytes(file);
+
+        Mp4StreamScanner scanner = new Mp4StreamScanner();
+        for (int off = 0; off < bytes.length; off += 5) {
+            scanner.update(bytes, off, Math.min(5, bytes.length - off));
+        }
+
+        assertEquals(parser.parse(file), scanner.result(parser, bytes.length));
+    }
+
+    /**
+     * Compares the in-process parser against the ffprobe fork on a real file.
+     * Run with: mvn test -Dtest=Mp4BoxParserTest -Dbenchmark=true -Dbenchmark.file=/path/video.mp4
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmark_parserVsFfprobe() throws Exception {
+        String configured = System.getProperty("benchmark.file");
+        Path file = configured != null ? Path.of(configured) : writeMp4(dir.resolve("bench.mp4"));
+        VideoMetadataService service = new VideoMetadataService(parser);
+        int iterations = 200;
+
+        for (int i = 0; i < 20; i++) parser.parse(file);   // warm-up
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) parser.parse(file);
+        long parserNanos = (System.nanoTime() - t0) / iterations;
+
+        service.probe(file);
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iterations / 10; i++) service.probe(file);
+        long ffprobeNanos = (System.nanoTime() - t1) / (iterations / 10);
+
+        System.out.printf("MP4 box parser: %d us/op, ffprobe: %d us/op (%.0fx)%n",
+                parserNanos / 1_000, ffprobeNanos / 1_000, (double) ffprobeNanos / parserNanos);
+    }
+
+    // ---------- synthetic mp4: ftyp, mdat, moov (not faststart) ----------
+
+    private static int sampleSize(int i) {
+        return 100 + i;
+    }
+
+    static long chunkBytes(int chunk) {
+        long sum = 0;
+        for (int i = chunk * 5; i < chunk * 5 + 5; i++) sum += sampleSize(i);
+        return sum;
+    }
+
+    static Path writeMp4(Path file) throws IOException {
+        byte[] ftyp = box("ftyp", concat("isom".getBytes(StandardCharsets.ISO_8859_1), u32(0x200)));
+
+        int mdatPayloadSize = (int) (chunkBytes(0) + chunkBytes(1));
+        // 64-bit largesize header for mdat (size=1), exercising the 16 byte header path
+        ByteBuffer mdat = ByteBuffer.allocate(16 + mdatPayloadSize);
+        mdat.putInt(1).put("mdat".getBytes(StandardCharsets.ISO_8859_1)).putLong(16 + mdatPayloadSize);
+        long firstChunk = ftyp.length + 16;
+
+        byte[] moov = box("moov", concat(
+                fullBox("mvhd", 0, concat(u32(0), u32(0), u32(1000), u32(10_000), new byte[80])),
+                videoTrak(firstChunk, firstChunk + chunkBytes(0)),
+                audioTrak()
+        ));
+
+        Files.write(file, concat(ftyp, mdat.array(), moov));
+        return file;
+    }
+
+    private static byte[] videoTrak(long chunk1, long chunk2) {
+        byte[] tkhd = fullBox("tkhd", 0, concat(new byte[76], u32(1280 << 16), u32(720 << 16)));
+
+        byte[] avc1 = box("avc1", concat(new byte[6], u16(1), new byte[16], u16(1280), u16(720), new byte[50]));
+        byte[] stsd = fullBox("stsd", 0, concat(u32(1), avc1));
+        byte[] stts = fullBox("stts", 0, concat(u32(1), u32(SAMPLES), u32(SAMPLE_DELTA)));
+        byte[] stss = fullBox("stss", 0, concat(u32(2), u32(1), u32(6)));
+        byte[] stsc = fullBox("stsc", 0, concat(u32(1), u32(1), u32(5), u32(1)));
+        ByteArrayOutputStream sizes = new ByteArrayOutputStream();
+        for (int i = 0; i < SAMPLES; i++) sizes.writeBytes(u32(sampleSize(i)));
+        byte[] stsz = fullBox("stsz", 0, concat(u32(0), u32(SAMPLES), sizes.toByteArray()));
+        byte[] stco = fullBox("stco", 0, concat(u32(2), u32((int) chunk1), u32((int) chunk2)));
+
+        byte[] stbl = box("stbl", concat(stsd, stts, stss, stsc, stsz, stco));
+        return box("trak", concat(tkhd, mdia("vide", TIMESCALE, (long) SAMPLES * SAMPLE_DELTA, stbl)));
+    }
+
+    private static byte[] audioTrak() {
+        byte[] tkhd = fullBox("tkhd", 0, new byte[80]);
+        byte[] mp4a = box("mp4a", new byte[28]);
+        byte[] stbl = box("stbl", concat(
+                fullBox("stsd", 0, concat(u32(1), mp4a)),
+                fullBox("stts", 0, u32(0)),
+                fullBox("stsc", 0, u32(0)),
+                fullBox("stsz", 0, concat(u32(0), u32(0))),
+                fullBox("stco", 0, u32(0))
+        ));
+        return box("trak", concat(tkhd, mdia("soun", 48_000, 480_000, stbl)));
+    }
+
+    private static byte[] mdia(String handler, int timescale, long duration, byte[] stbl) {
+        byte[] mdhd = fullBox("mdhd", 0, concat(u32(0), u32(0), u32(timescale), u32((int) duration), new byte[4]));
+        byte[] hdlr = fullBox("hdlr", 0, concat(u32(0), handler.getBytes(StandardCharsets.ISO_8859_1), new byte[13]));
+        return box("mdia", concat(mdhd, hdlr, box("minf", stbl)));
+    }
+
+    private static byte[] fullBox(String type, int version, byte[] body) {
+        return box(type, concat(u32(version << 24), body));
+    }
+
+    private static byte[] box(String type, byte[] body) {
+        return ByteBuffer.allocate(8 + body.length)
+                .putInt(8 + body.length)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1))
+                .put(body)
+                .array();
+    }
+
+    private static byte[] u32(int v) {
+        return ByteBuffer.allocate(4).putInt(v).array();
+    }
+
+    private static byte[] u16(int v) {
+        return ByteBuffer.allocate(2).putShort((short) v).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] p : parts) out.writeBytes(p);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,101 @@
+package com.jutjubic.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartStreamReaderTest {
+
+    private static final String BOUNDARY = "----jutjubicBoundary42";
+
+    @Test
+    void readsFieldsAndBinaryFileParts_acrossTinyReads() throws Exception {
+        byte[] video = new byte[300_000];
+        for (int i = 0; i < video.length; i++) video[i] = (byte) (i % 251);
+        // bytes that look like the start of a delimiter inside the payload
+        byte[] tricky = ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(tricky, 0, video, 1000, tricky.length);
+
+        byte[] body = body(video);
+        MultipartStreamReader reader = new MultipartStreamReader(new TrickleInputStream(body), BOUNDARY);
+
+        var title = reader.nextPart();
+        assertEquals("title", title.name());
+        assertFalse(title.isFile());
+        assertEquals("Moj video", new String(reader.partStream().readAllBytes(), StandardCharsets.UTF_8));
+
+        var file = reader.nextPart();
+        assertEquals("video", file.name());
+        assertEquals("clip.mp4", file.fileName());
+        assertEquals("video/mp4", file.contentType());
+        assertArrayEquals(video, reader.partStream().readAllBytes());
+
+        // an unread part is skipped
+        var ignored = reader.nextPart();
+        assertEquals("thumbnail", ignored.name());
+
+        var tags = reader.nextPart();
+        assertEquals("tags", tags.name());
+        assertEquals("a,b", new String(reader.partStream().readAllBytes(), StandardCharsets.UTF_8));
+
+        assertNull(reader.nextPart());
+    }
+
+    @Test
+    void truncatedBodyFails() {
+        byte[] body = body(new byte[5000]);
+        byte[] cut = java.util.Arrays.copyOf(body, 3000);
+        MultipartStreamReader reader = new MultipartStreamReader(new ByteArrayInputStream(cut), BOUNDARY);
+
+        assertThrows(IOException.class, () -> {
+            while (reader.nextPart() != null) {
+                reader.partStream().readAllBytes();
+            }
+        });
+    }
+
+    @Test
+    void boundaryIsTakenFromContentType() {
+        assertEquals("abc", MultipartStreamReader.boundaryOf("multipart/form-data; boundary=abc"));
+        assertEquals("a b", MultipartStreamReader.boundaryOf("multipart/form-data; charset=utf-8; boundary=\"a b\""));
+        assertNull(MultipartStreamReader.boundaryOf("application/json"));
+    }
+
+    private static byte[] body(byte[] video) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, "preamble is ignored\r\n");
+        write(out, "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\nMoj video\r\n");
+        write(out, "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"video\"; filename=\"clip.mp4\"\r\n"
+                + "Content-Type: video/mp4\r\n\r\n");
+        out.writeBytes(video);
+        write(out, "\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"thumbnail\"; filename=\"t.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n");
+        out.writeBytes(new byte[]{1, 2, 3});
+        write(out, "\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"tags\"\r\n\r\na,b\r\n");
+        write(out, "--" + BOUNDARY + "--\r\n");
+        return out.toByteArray();
+    }
+
+    private static void write(ByteArrayOutputStream out, String s) {
+        out.writeBytes(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /** Returns at most 7 bytes per read so boundaries straddle buffer fills. */
+    private static final class TrickleInputStream extends FilterInputStream {
+        TrickleInputStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 7));
+        }
+    }
+}
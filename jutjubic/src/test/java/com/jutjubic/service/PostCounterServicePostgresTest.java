@@ -0,0 +1,19 @@
+package com.jutjubic.service;
+
+import com.jutjubic.PostgresTestDatabase;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * {@link PostCounterServiceTest} against a real PostgreSQL, whose READ COMMITTED
+ * re-check of locked rows is what the reconcile's row locks guard against.
+ */
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "initdb refuses to run as root")
+class PostCounterServicePostgresTest extends PostCounterServiceTest {
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        PostgresTestDatabase.register(registry);
+    }
+}
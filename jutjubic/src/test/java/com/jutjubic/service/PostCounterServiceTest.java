@@ -0,0 +1,121 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.User;
+import com.jutjubic.repository.PostLikeRepository;
+import com.jutjubic.repository.PostRepository;
+import com.jutjubic.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PostCounterServiceTest {
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    @Autowired
+    private PostLikeService postLikeService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostLikeRepository postLikeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private Long postId;
+
+    @BeforeEach
+    void setUp() {
+        postLikeRepository.deleteAll();
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("liker");
+        user.setEmailAdress("liker@example.com");
+        user.setPassword("password");
+        user.setName("Like");
+        user.setSurname("R");
+        user = userRepository.save(user);
+
+        Post post = new Post();
+        post.setAuthor(user);
+        post.setTitle("Counted");
+        post.setVideoUrl("video.mp4");
+        post.setThumbnailUrl("thumb.jpg");
+        postId = postRepository.save(post).getId();
+    }
+
+    // other test classes clear posts without knowing about likes
+    @AfterEach
+    void tearDown() {
+        postLikeRepository.deleteAll();
+    }
+
+    @Test
+    void reconcileRepairsDrift() {
+        postLikeService.toggle(postId, "liker@example.com");
+
+        Post post = postRepository.findById(postId).orElseThrow();
+        post.setLikeCount(7L);
+        post.setCommentCount(3L);
+        postRepository.save(post);
+
+        assertEquals(2, postCounterService.reconcile());
+        Post repaired = postRepository.findById(postId).orElseThrow();
+        assertEquals(1L, repaired.getLikeCount());
+        assertEquals(0L, repaired.getCommentCount());
+
+        assertEquals(0, postCounterService.reconcile());
+    }
+
+    @Test
+    void reconcileDuringALike_keepsTheLike() throws Exception {
+        // drift, so the recount has to write this post while the like holds it
+        Post post = postRepository.findById(postId).orElseThrow();
+        post.setLikeCount(7L);
+        postRepository.save(post);
+
+        CountDownLatch liked = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> like = CompletableFuture.runAsync(() -> tx.executeWithoutResult(s -> {
+            postLikeService.like(postId, "liker@example.com");
+            liked.countDown();
+            try {
+                commit.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(liked.await(5, TimeUnit.SECONDS));
+
+        // the recount starts while the like is written but not committed
+        CompletableFuture<Integer> reconcile = CompletableFuture.supplyAsync(postCounterService::reconcile);
+        Thread.sleep(500);
+        commit.countDown();
+        like.get(5, TimeUnit.SECONDS);
+        reconcile.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, postLikeRepository.count());
+        assertEquals(1L, postRepository.findById(postId).orElseThrow().getLikeCount());
+    }
+}
@@ -0,0 +1,50 @@
+package com.jutjubic.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostIdBitmapTest {
+
+    @Test
+    void matchesHashSet_acrossArrayAndBitsetContainers() {
+        PostIdBitmap bitmap = new PostIdBitmap();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(7);
+
+        // one dense block (turns into a bitset) and ids spread over many keys
+        for (long id = 0; id < 10_000; id++) {
+            assertTrue(bitmap.add(id));
+            expected.add(id);
+        }
+        for (int i = 0; i < 5_000; i++) {
+            long id = Math.abs(random.nextLong() % 1_000_000_000L);
+            assertEquals(expected.add(id), bitmap.add(id));
+        }
+        assertEquals(expected.size(), bitmap.cardinality());
+
+        // shrinking the dense block turns it back into an array
+        for (long id = 0; id < 9_000; id++) {
+            assertEquals(expected.remove(id), bitmap.remove(id));
+        }
+        for (int i = 0; i < 2_000; i++) {
+            long id = Math.abs(random.nextLong() % 1_000_000_000L);
+            assertEquals(expected.contains(id), bitmap.contains(id));
+        }
+        for (long id : expected) assertTrue(bitmap.contains(id));
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertFalse(bitmap.remove(5L));
+    }
+
+    @Test
+    void sparseLikesStayCompact() {
+        PostIdBitmap bitmap = new PostIdBitmap();
+        for (long id = 1; id <= 1_000; id++) bitmap.add(id * 37);
+        // 1000 ids in one key: ~2 bytes each instead of a HashSet<Long>'s ~50
+        assertTrue(bitmap.sizeInBytes() < 4_000, "size " + bitmap.sizeInBytes());
+    }
+}
@@ -0,0 +1,19 @@
+package com.jutjubic.service;
+
+import com.jutjubic.PostgresTestDatabase;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * {@link PostLikeServiceTest} against a real PostgreSQL, so the like/unlike/toggle
+ * CTEs run exactly as in production.
+ */
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "initdb refuses to run as root")
+class PostLikeServicePostgresTest extends PostLikeServiceTest {
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        PostgresTestDatabase.register(registry);
+    }
+}
@@ -0,0 +1,187 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.User;
+import com.jutjubic.dto.LikeStateDto;
+import com.jutjubic.repository.PostLikeRepository;
+import com.jutjubic.repository.PostRepository;
+import com.jutjubic.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs on H2 (the step-by-step path); {@link PostLikeServicePostgresTest} runs
+ * the same tests against PostgreSQL, where every operation is one CTE.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PostLikeServiceTest {
+
+    private static final String EMAIL = "liker@example.com";
+
+    @Autowired
+    private PostLikeService postLikeService;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostLikeRepository postLikeRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User author;
+    private Long postId;
+
+    @BeforeEach
+    void setUp() {
+        postLikeRepository.deleteAll();
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+
+        author = userRepository.save(user("liker", EMAIL));
+
+        Post post = new Post();
+        post.setAuthor(author);
+        post.setTitle("Liked");
+        post.setVideoUrl("video.mp4");
+        post.setThumbnailUrl("thumb.jpg");
+        postId = postRepository.save(post).getId();
+    }
+
+    // other test classes clear posts without knowing about likes
+    @AfterEach
+    void tearDown() {
+        postLikeRepository.deleteAll();
+    }
+
+    @Test
+    void toggleKeepsLikeCountInStep() {
+        LikeStateDto liked = postLikeService.toggle(postId, EMAIL);
+        assertTrue(liked.liked());
+        assertEquals(1, liked.likes());
+
+        LikeStateDto unliked = postLikeService.toggle(postId, EMAIL);
+        assertFalse(unliked.liked());
+        assertEquals(0, unliked.likes());
+        assertEquals(0, postLikeRepository.count());
+    }
+
+    @Test
+    void likeAndUnlikeAreIdempotent() {
+        assertEquals(new LikeStateDto(true, 1), postLikeService.like(postId, EMAIL));
+        assertEquals(new LikeStateDto(true, 1), postLikeService.like(postId, EMAIL));
+        assertEquals(1, postLikeRepository.count());
+
+        assertEquals(new LikeStateDto(false, 0), postLikeService.unlike(postId, EMAIL));
+        assertEquals(new LikeStateDto(false, 0), postLikeService.unlike(postId, EMAIL));
+        assertEquals(0, postLikeRepository.count());
+    }
+
+    @Test
+    void unknownPost_is404() {
+        for (Callable<LikeStateDto> op : List.<Callable<LikeStateDto>>of(
+                () -> postLikeService.like(postId + 1000, EMAIL),
+                () -> postLikeService.unlike(postId + 1000, EMAIL),
+                () -> postLikeService.toggle(postId + 1000, EMAIL))) {
+            ResponseStatusException ex = assertThrows(ResponseStatusException.class, op::call);
+            assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+            assertEquals("Post not found", ex.getReason());
+        }
+        assertEquals(0, postLikeRepository.count());
+    }
+
+    @Test
+    void unknownUser_is404() {
+        for (Callable<LikeStateDto> op : List.<Callable<LikeStateDto>>of(
+                () -> postLikeService.like(postId, "nobody@example.com"),
+                () -> postLikeService.unlike(postId, "nobody@example.com"),
+                () -> postLikeService.toggle(postId, "nobody@example.com"))) {
+            ResponseStatusException ex = assertThrows(ResponseStatusException.class, op::call);
+            assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+            assertEquals("User not found", ex.getReason());
+        }
+        assertEquals(0L, postRepository.findById(postId).orElseThrow().getLikeCount());
+    }
+
+    @Test
+    void concurrentTogglesOfOneUser_keepCountEqualToLikes() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            List<LikeStateDto> results = concurrently(2, i -> postLikeService.toggle(postId, EMAIL));
+
+            long likes = postLikeRepository.count();
+            assertEquals(likes, postRepository.findById(postId).orElseThrow().getLikeCount());
+            for (LikeStateDto result : results) {
+                assertTrue(result.likes() == 0 || result.likes() == 1, "like_count went to " + result.likes());
+            }
+        }
+    }
+
+    @Test
+    void concurrentLikesOfManyUsers_areAllCounted() throws Exception {
+        int users = 8;
+        List<String> emails = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            emails.add(userRepository.save(user("fan" + i, "fan" + i + "@example.com")).getEmailAdress());
+        }
+
+        concurrently(users, i -> postLikeService.like(postId, emails.get(i)));
+
+        assertEquals(users, postLikeRepository.count());
+        assertEquals((long) users, postRepository.findById(postId).orElseThrow().getLikeCount());
+
+        concurrently(users, i -> postLikeService.toggle(postId, emails.get(i)));
+
+        assertEquals(0, postLikeRepository.count());
+        assertEquals(0L, postRepository.findById(postId).orElseThrow().getLikeCount());
+    }
+
+    private interface Op {
+        LikeStateDto run(int i);
+    }
+
+    private List<LikeStateDto> concurrently(int threads, Op op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<LikeStateDto>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int n = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                return op.run(n);
+            }));
+        }
+        start.countDown();
+        List<LikeStateDto> results = new ArrayList<>();
+        for (Future<LikeStateDto> f : futures) results.add(f.get());
+        pool.shutdown();
+        return results;
+    }
+
+    private static User user(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmailAdress(email);
+        user.setPassword("password");
+        user.setName("Like");
+        user.setSurname("R");
+        return user;
+    }
+}
@@ -0,0 +1,78 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.ViewCounterProps;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentViewerFilterTest {
+
+    static final class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant start) { this.instant = start; }
+        void plus(Duration d) { this.instant = this.instant.plus(d); }
+
+        @Override public ZoneOffset getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return instant; }
+    }
+
+    private static ViewCounterProps props(long expected) {
+        ViewCounterProps props = new ViewCounterProps();
+        props.getDedup().setEnabled(true);
+        props.getDedup().setWindow(Duration.ofMinutes(30));
+        props.getDedup().setGenerations(4);
+        props.getDedup().setExpectedViewsPerWindow(expected);
+        props.getDedup().setFalsePositiveRate(0.01);
+        return props;
+    }
+
+    @Test
+    void repeatWithinWindow_isSuppressed_andForgottenAfterIt() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RecentViewerFilter filter = new RecentViewerFilter(props(10_000), clock, registry);
+
+        assertFalse(filter.seenRecently(1L, "user:ana"));
+        assertTrue(filter.seenRecently(1L, "user:ana"));
+        assertFalse(filter.seenRecently(2L, "user:ana"));   // other video
+        assertFalse(filter.seenRecently(1L, "user:marko")); // other viewer
+
+        clock.plus(Duration.ofMinutes(29));
+        assertTrue(filter.seenRecently(1L, "user:ana"));
+
+        clock.plus(Duration.ofMinutes(12));  // 41 min - past window + one rotation
+        assertFalse(filter.seenRecently(1L, "user:ana"));
+
+        assertEquals(2.0, registry.counter("views_dedup_suppressed_total").count());
+        assertEquals(4.0, registry.counter("views_dedup_accepted_total").count());
+    }
+
+    @Test
+    void falsePositives_stayNearTarget_atExpectedLoad() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        RecentViewerFilter filter = new RecentViewerFilter(props(30_000), clock, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 30_000; i++) {
+            filter.seenRecently((long) (i % 500), "ip:10.0." + i);
+            if (i % 10_000 == 9_999) clock.plus(Duration.ofMinutes(10));
+        }
+
+        // every probe is recorded too, so keep them few next to the expected load
+        int falsePositives = 0;
+        for (int i = 0; i < 2_000; i++) {
+            if (filter.seenRecently(7L, "never-seen-" + i)) falsePositives++;
+        }
+        assertTrue(falsePositives < 2_000 * 0.02, "false positives: " + falsePositives);
+        assertTrue(filter.estimatedFalsePositiveRate() < 0.02);
+        assertTrue(filter.memoryBytes() < 4 * 30_000);  // ~3.5 bytes per expected pair
+    }
+}
@@ -0,0 +1,188 @@
+package com.jutjubic.service;
+
+import com.jutjubic.domain.Post;
+import com.jutjubic.domain.User;
+import com.jutjubic.dto.CreateUploadSessionRequestDto;
+import com.jutjubic.dto.UploadSessionDto;
+import com.jutjubic.repository.PostRepository;
+import com.jutjubic.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ResumableUploadServiceTest {
+
+    private static final String OWNER = "uploader@example.com";
+
+    @Autowired
+    private ResumableUploadService uploadService;
+
+    @Autowired
+    private LocalUploadStorageService storage;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void setUp() {
+        User owner = new User();
+        owner.setUsername("uploader");
+        owner.setEmailAdress(OWNER);
+        owner.setPassword("password");
+        owner.setName("Up");
+        owner.setSurname("Loader");
+        userRepository.save(owner);
+    }
+
+    @AfterEach
+    void tearDown() {
+        postRepository.deleteAll(postsTitled("Resumed"));
+        userRepository.findByEmailAdress(OWNER).ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void chunksArriveOutOfOrder_andFileIsAssembledInPlace() throws Exception {
+        byte[] video = new byte[2500]; // chunk size 1024 in the test profile -> 3 chunks
+        for (int i = 0; i < video.length; i++) video[i] = (byte) (i * 31);
+
+        UploadSessionDto session = uploadService.create(OWNER,
+                new CreateUploadSessionRequestDto("clip.mp4", (long) video.length, "video/mp4"));
+        assertEquals(3, session.totalChunks());
+
+        put(session.uploadId(), video, 2048);
+        UploadSessionDto afterLast = put(session.uploadId(), video, 0);
+        assertEquals(1024, afterLast.receivedOffset());
+        assertEquals(List.of(1), afterLast.missingChunks());
+
+        UploadSessionDto done = put(session.uploadId(), video, 1024);
+        assertEquals(video.length, done.receivedOffset());
+        assertTrue(done.missingChunks().isEmpty());
+
+        // re-sending a received chunk is a no-op
+        assertEquals(3, put(session.uploadId(), video, 1024).receivedChunks());
+
+        assertArrayEquals(video, Files.readAllBytes(storage.uploadSessionFile(session.uploadId())));
+    }
+
+    @Test
+    void rejectsChecksumMismatch_andOtherOwners() throws Exception {
+        UploadSessionDto session = uploadService.create(OWNER,
+                new CreateUploadSessionRequestDto("clip.mp4", 100L, "video/mp4"));
+
+        byte[] chunk = new byte[100];
+        assertThrows(ResponseStatusException.class, () -> uploadService.writeChunk(
+                OWNER, session.uploadId(), 0, sha256(new byte[]{1}), new ByteArrayInputStream(chunk)));
+        assertEquals(0, uploadService.status(OWNER, session.uploadId()).receivedChunks());
+
+        assertThrows(ResponseStatusException.class,
+                () -> uploadService.status("someone@else.com", session.uploadId()));
+    }
+
+    @Test
+    void complete_createsThePost_andClosesTheSession() throws Exception {
+        String id = uploadAll(new byte[2500]);
+
+        Post post = complete(id);
+
+        assertEquals(OWNER, post.getAuthor().getEmailAdress());
+        UploadSessionDto status = uploadService.status(OWNER, id);
+        assertEquals("COMPLETED", status.status());
+        assertEquals(post.getId(), status.postId());
+        assertEquals(2500, status.receivedOffset());
+        assertFalse(Files.exists(storage.uploadSessionFile(id)));
+    }
+
+    @Test
+    void secondComplete_isRejected() throws Exception {
+        String id = uploadAll(new byte[2500]);
+        complete(id);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> complete(id));
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        assertEquals(1, postsTitled("Resumed").size());
+    }
+
+    @Test
+    void concurrentCompletes_createOnePost() throws Exception {
+        String id = uploadAll(new byte[2500]);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Post>> futures = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                return complete(id);
+            }));
+        }
+        start.countDown();
+
+        int completed = 0;
+        for (Future<Post> f : futures) {
+            try {
+                f.get();
+                completed++;
+            } catch (ExecutionException e) {
+                // the loser either waited for the lock and saw COMPLETED, or gave up waiting
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, completed);
+        assertEquals(1, postsTitled("Resumed").size());
+        assertEquals("COMPLETED", uploadService.status(OWNER, id).status());
+    }
+
+    private String uploadAll(byte[] video) throws Exception {
+        String id = uploadService.create(OWNER,
+                new CreateUploadSessionRequestDto("clip.mp4", (long) video.length, "video/mp4")).uploadId();
+        for (int offset = 0; offset < video.length; offset += 1024) {
+            put(id, video, offset);
+        }
+        return id;
+    }
+
+    private Post complete(String id) throws Exception {
+        return uploadService.complete(OWNER, id, "Resumed", null, null, null, null, null,
+                new MockMultipartFile("thumbnail", "thumb.png", "image/png", new byte[]{1, 2, 3}));
+    }
+
+    private List<Post> postsTitled(String title) {
+        return postRepository.findAll().stream().filter(p -> title.equals(p.getTitle())).toList();
+    }
+
+    private UploadSessionDto put(String id, byte[] video, int offset) throws Exception {
+        byte[] chunk = Arrays.copyOfRange(video, offset, Math.min(video.length, offset + 1024));
+        return uploadService.writeChunk(OWNER, id, offset, sha256(chunk), new ByteArrayInputStream(chunk));
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
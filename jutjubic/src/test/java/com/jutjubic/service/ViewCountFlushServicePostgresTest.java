@@ -0,0 +1,19 @@
+package com.jutjubic.service;
+
+import com.jutjubic.PostgresTestDatabase;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * {@link ViewCountFlushServiceTest} against a real PostgreSQL, so every flush goes
+ * through CounterUpserter's INSERT ... ON CONFLICT DO UPDATE instead of H2's MERGE.
+ */
+@DisabledIfSystemProperty(named = "user.name", matches = "root", disabledReason = "initdb refuses to run as root")
+class ViewCountFlushServicePostgresTest extends ViewCountFlushServiceTest {
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        PostgresTestDatabase.register(registry);
+    }
+}
@@ -0,0 +1,319 @@
+package com.jutjubic.service;
+
+import com.jutjubic.config.ViewCounterProps;
+import com.jutjubic.dto.CrdtDeltaBatchDto;
+import com.jutjubic.dto.ViewerSketchDto;
+import com.jutjubic.repository.VideoDailyViewRepository;
+import com.jutjubic.repository.VideoViewCrdtRepository;
+import com.jutjubic.repository.VideoViewTotalRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs on H2, where CounterUpserter writes with MERGE;
+ * {@link ViewCountFlushServicePostgresTest} runs the same tests through ON CONFLICT.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ViewCountFlushServiceTest {
+
+    @Autowired
+    private VideoViewCrdtService crdtService;
+
+    @Autowired
+    private ViewCountFlushService flushService;
+
+    @Autowired
+    private ViewCountWriter writer;
+
+    @Autowired
+    private VideoViewCrdtRepository crdtRepository;
+
+    @Autowired
+    private VideoDailyViewRepository dailyViewRepository;
+
+    @Autowired
+    private VideoViewTotalRepository totalRepository;
+
+    @Autowired
+    private UniqueViewerService uniqueViewers;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    @Autowired
+    private CrdtDeltaSyncService deltaSync;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentViews_areCountedInMemory_andFlushedExactlyOnce() throws Exception {
+        long videoId = 9_000_001L;
+        int threads = 20;
+        int viewsPerThread = 250;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < viewsPerThread; i++) {
+                    crdtService.incrementViewForReplica(videoId);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        long expected = (long) threads * viewsPerThread;
+        // visible before any flush
+        assertEquals(expected, crdtService.getTotalViewCount(videoId));
+
+        flushService.flush();
+
+        assertEquals(expected, crdtRepository.getTotalViewCount(videoId));
+        assertEquals(expected, dailyViewRepository.findByVideoIdAndViewDate(videoId, LocalDate.now())
+                .orElseThrow().getViewCount());
+        assertEquals(expected, crdtService.getTotalViewCount(videoId));
+    }
+
+    @Test
+    void replayedBatch_isAppliedOnlyOnce() {
+        String replica = "replay_test";
+        long videoId = 9_000_002L;
+        ViewCountBuffer.Batch batch = new ViewCountBuffer.Batch(
+                Map.of(videoId, 7L),
+                Map.of(new ViewCountBuffer.DayKey(videoId, LocalDate.now()), 7L));
+
+        long seq = writer.lastAppliedSeq(replica) + 1;
+        assertTrue(writer.apply(replica, seq, batch));
+        assertFalse(writer.apply(replica, seq, batch));
+
+        assertEquals(7L, writer.localCounts(replica, List.of(videoId)).get(videoId));
+    }
+
+    @Test
+    void journal_skipsTornTailRecord(@TempDir Path dir) throws Exception {
+        ViewCounterProps props = new ViewCounterProps();
+        props.setJournalDir(dir.toString());
+        ViewCountJournal journal = new ViewCountJournal(props, "r1");
+
+        journal.append(1, new ViewCountBuffer.Batch(Map.of(1L, 3L), Map.of()));
+        journal.append(2, new ViewCountBuffer.Batch(Map.of(2L, 5L),
+                Map.of(new ViewCountBuffer.DayKey(2L, LocalDate.of(2026, 1, 2)), 5L)));
+        // crash in the middle of a third append
+        Files.write(dir.resolve("views-r1.journal"), new byte[]{0, 0, 0, 40, 0, 0, 0},
+                StandardOpenOption.APPEND);
+
+        List<ViewCountJournal.Entry> entries = journal.readAll();
+        assertEquals(2, entries.size());
+        assertEquals(2L, entries.get(1).seq());
+        assertEquals(5L, entries.get(1).batch().dailyDeltas()
+                .get(new ViewCountBuffer.DayKey(2L, LocalDate.of(2026, 1, 2))));
+
+        journal.clear();
+        assertTrue(journal.readAll().isEmpty());
+    }
+
+    @Test
+    void deltaBatch_isMaxMerged() {
+        String peer = "peer_test";
+        crdtService.mergeBatch(new CrdtDeltaBatchDto(peer, 1L, List.of(9_000_003L, 9_000_004L), List.of(10L, 4L)));
+        // stale value for one counter, newer for the other - G-counter keeps the max of each
+        int changed = crdtService.mergeBatch(
+                new CrdtDeltaBatchDto(peer, 2L, List.of(9_000_003L, 9_000_004L), List.of(8L, 6L)));
+
+        assertEquals(1, changed);
+        assertEquals(10L, crdtRepository.findByVideoIdAndReplicaId(9_000_003L, peer).orElseThrow().getViewCount());
+        assertEquals(6L, crdtRepository.findByVideoIdAndReplicaId(9_000_004L, peer).orElseThrow().getViewCount());
+    }
+
+    @Test
+    void batchTotals_areCached_andRefreshedAfterMerge() {
+        long a = 9_000_005L, b = 9_000_006L, none = 9_000_007L;
+        crdtService.mergeBatch(new CrdtDeltaBatchDto("peer_totals", 1L, List.of(a, b), List.of(3L, 4L)));
+
+        assertEquals(Map.of(a, 3L, b, 4L, none, 0L), crdtService.getTotalViewCounts(List.of(a, b, none)));
+
+        crdtService.mergeBatch(new CrdtDeltaBatchDto("peer_totals", 2L, List.of(a), List.of(10L)));
+        crdtService.incrementViewForReplica(b);
+
+        assertEquals(Map.of(a, 10L, b, 5L, none, 0L), crdtService.getTotalViewCounts(List.of(a, b, none)));
+        flushService.flush();
+        assertEquals(5L, crdtService.getTotalViewCount(b));
+    }
+
+    @Test
+    void materializedTotal_tracksLocalFlushesAndMerges() {
+        long videoId = 9_000_008L;
+        for (int i = 0; i < 3; i++) crdtService.incrementViewForReplica(videoId);
+        flushService.flush();
+        crdtService.mergeBatch(new CrdtDeltaBatchDto("peer_a", 1L, List.of(videoId), List.of(4L)));
+        crdtService.mergeBatch(new CrdtDeltaBatchDto("peer_b", 1L, List.of(videoId), List.of(2L)));
+        crdtService.mergeBatch(new CrdtDeltaBatchDto("peer_a", 2L, List.of(videoId), List.of(6L)));
+        crdtService.mergeBatch(new CrdtDeltaBatchDto("peer_a", 3L, List.of(videoId), List.of(5L)));  // stale
+
+        assertEquals(11L, crdtRepository.getTotalViewCount(videoId));
+        assertEquals(11L, totalRepository.findById(videoId).orElseThrow().getTotalViews());
+        assertEquals(11L, crdtService.getTotalViewCount(videoId));
+    }
+
+    @Test
+    void uniqueViewers_areEstimated_andMergedFromPeers() {
+        long videoId = 9_000_009L;
+        for (int i = 0; i < 30; i++) {
+            crdtService.incrementViewForReplica(videoId, "user:" + (i % 10));  // 10 viewers, 3 views each
+        }
+        assertEquals(10, crdtService.getUniqueViewerCount(videoId));
+        flushService.flush();
+        assertEquals(10, crdtService.getUniqueViewerCount(videoId));
+        assertEquals(30L, crdtService.getTotalViewCount(videoId));
+
+        HyperLogLog peer = new HyperLogLog();
+        for (int i = 5; i < 25; i++) peer.add(HyperLogLog.hash("user:" + i));
+        crdtService.mergeBatch(new CrdtDeltaBatchDto("peer_hll", 1L, List.of(), List.of(),
+                List.of(new ViewerSketchDto(videoId, 0L, peer.toBytes()))));
+
+        assertEquals(25, crdtService.getUniqueViewerCount(videoId));
+        assertEquals(10, uniqueViewers.estimate(videoId, LocalDate.now()));
+    }
+
+    @Test
+    void readersHoldingEveryConnection_doNotDeadlockWithAFlush() throws Exception {
+        long videoId = 9_000_031L;
+        crdtService.incrementViewForReplica(videoId);
+
+        int readers = ((HikariDataSource) dataSource).getMaximumPoolSize();
+        ExecutorService pool = Executors.newFixedThreadPool(readers + 1);
+        CountDownLatch holding = new CountDownLatch(readers);
+        CountDownLatch read = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            // like a @Transactional(readOnly = true) feed request: connection first, view counts later
+            results.add(pool.submit(() -> tx.execute(status -> {
+                jdbc.queryForObject("SELECT 1", Integer.class);
+                holding.countDown();
+                try {
+                    read.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return crdtService.getTotalViewCount(videoId);
+            })));
+        }
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        Future<?> flush = pool.submit(() -> flushService.flush());
+        Thread.sleep(300); // the flush is now waiting for a connection
+        read.countDown();
+
+        for (Future<Long> r : results) {
+            assertEquals(1L, r.get(5, TimeUnit.SECONDS));
+        }
+        flush.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(1L, crdtRepository.getTotalViewCount(videoId));
+    }
+
+    @Test
+    void failedJournalAppend_stillReachesTheDb(@TempDir Path dir) throws Exception {
+        long videoId = 9_000_032L;
+        ViewCounterProps props = new ViewCounterProps();
+        props.setJournalDir(dir.toString());
+        int[] appends = {0};
+        ViewCountJournal journal = new ViewCountJournal(props, "journal_fail") {
+            @Override
+            public synchronized void append(long seq, ViewCountBuffer.Batch batch) throws IOException {
+                if (appends[0]++ == 0) throw new IOException("No space left on device");
+                super.append(seq, batch);
+            }
+        };
+        ViewCountBuffer buffer = new ViewCountBuffer();
+        ViewCountFlushService service = new ViewCountFlushService(buffer, journal, writer, deltaSync,
+                crdtService, uniqueViewers, transactionManager);
+        ReflectionTestUtils.setField(service, "replicaId", "journal_fail");
+
+        for (int i = 0; i < 4; i++) buffer.record(videoId, LocalDate.now());
+        service.flush();
+
+        assertEquals(4L, writer.localCounts("journal_fail", List.of(videoId)).get(videoId));
+        assertEquals(0L, buffer.unflushed(videoId));
+
+        // the journal works again for the next batch and is truncated once it commits
+        buffer.record(videoId, LocalDate.now());
+        service.flush();
+        assertEquals(2, appends[0]);
+        assertEquals(5L, writer.localCounts("journal_fail", List.of(videoId)).get(videoId));
+        assertTrue(journal.readAll().isEmpty());
+    }
+
+    @Test
+    void idleVideoCounters_areForgotten() {
+        long videoId = 9_000_033L;
+        ViewCountBuffer buffer = new ViewCountBuffer();
+        buffer.record(videoId, LocalDate.now());
+        buffer.committed(buffer.drain());
+
+        buffer.pruneIdleVideos();
+        assertEquals(1, buffer.trackedVideos());   // idle for one round only
+        buffer.pruneIdleVideos();
+        assertEquals(0, buffer.trackedVideos());
+        assertEquals(0L, buffer.unflushed(videoId));
+
+        buffer.record(videoId, LocalDate.now());
+        assertEquals(1L, buffer.unflushed(videoId));
+        assertEquals(Map.of(videoId, 1L), buffer.drain().videoDeltas());
+    }
+
+    @Test
+    void unflushedOrInFlightVideoCounters_areKept() {
+        ViewCountBuffer buffer = new ViewCountBuffer();
+        buffer.record(1L, LocalDate.now());
+        buffer.record(2L, LocalDate.now());
+        buffer.drain();                        // 2 stays in flight
+        buffer.record(1L, LocalDate.now());    // 1 has an undrained view
+
+        buffer.pruneIdleVideos();
+        buffer.pruneIdleVideos();
+
+        assertEquals(2, buffer.trackedVideos());
+        assertEquals(2L, buffer.unflushed(1L));
+        assertEquals(1L, buffer.unflushed(2L));
+    }
+}